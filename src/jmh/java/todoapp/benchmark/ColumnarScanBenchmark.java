@@ -0,0 +1,59 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.business.ToDoPage;
+import todoapp.business.ToDoQuery;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unsorted priority/flag filtering over ToDo objects versus the struct-of-arrays columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarScanBenchmark {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private MemoryImpl objects;
+    private MemoryImpl columnar;
+    // a late page, so both paths have to walk most of the matches
+    private ToDoQuery lowAndDone;
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        objects = new MemoryImpl(MemorySettings.defaults());
+        columnar = new MemoryImpl(MemorySettings.defaults().withColumnar(true));
+        for (int i = 0; i < size; i++) {
+            ToDo toDo = new ToDo("Task #" + i, PRIORITIES[i % PRIORITIES.length], LocalDate.of(2023, 1, 1).plusDays(i % 365));
+            ToDo inObjects = objects.save(toDo);
+            ToDo inColumnar = columnar.save(toDo);
+            if (i % 2 == 0) {
+                objects.markAsDone(inObjects.getId(), inObjects.getCreationDate().plusMinutes(i % 600));
+                columnar.markAsDone(inColumnar.getId(), inColumnar.getCreationDate().plusMinutes(i % 600));
+            }
+        }
+        lowAndDone = new ToDoQuery("", "Low", true, "default", "default", size / 8, 10);
+    }
+
+    @Benchmark
+    public ToDoPage filterObjects() {
+        return objects.findByQuery(lowAndDone);
+    }
+
+    @Benchmark
+    public ToDoPage filterColumns() {
+        return columnar.findByQuery(lowAndDone);
+    }
+}
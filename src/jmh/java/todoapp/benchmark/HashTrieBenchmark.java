@@ -0,0 +1,76 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.persistence.HashTrieMap;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryImpl storing its to dos in a ConcurrentHashMap or in a HashTrieMap. readHeavy is
+ * findAll walked end to end; mixed is 90% getById, 9% markAsDone and 1% findAll, which is
+ * where the trie's path copying on writes shows. Run with -t to add threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashTrieBenchmark {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"concurrent-hash-map", "hash-trie"})
+    public String table;
+
+    private MemoryImpl repository;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        repository = new MemoryImpl(MemorySettings.defaults()
+                .withStorage(table.equals("hash-trie") ? HashTrieMap::new : ConcurrentHashMap::new));
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = repository.save(new ToDo(NameSearchBenchmark.nameOf(i), PRIORITIES[i % PRIORITIES.length])).getId();
+        }
+    }
+
+    @Benchmark
+    public int readHeavy() {
+        return countDone(repository.findAll());
+    }
+
+    @Benchmark
+    public Object mixed() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int operation = random.nextInt(100);
+        String id = ids[random.nextInt(ids.length)];
+        if (operation < 90) {
+            return repository.getById(id);
+        }
+        if (operation < 99) {
+            return repository.markAsDone(id, java.time.LocalDateTime.now());
+        }
+        return countDone(repository.findAll());
+    }
+
+    private static int countDone(List<ToDo> toDos) {
+        int done = 0;
+        for (ToDo toDo : toDos) {
+            if (toDo.isDoneUndoneFlag()) {
+                done++;
+            }
+        }
+        return done;
+    }
+}
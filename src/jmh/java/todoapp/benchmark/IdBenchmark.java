@@ -0,0 +1,58 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.persistence.ToDoIds;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Random UUID ids against ToDoIds' time-ordered ones. generate is the per-insert cost, run
+ * it with -t to see SecureRandom contend; lookup finds a stored id from a fresh copy of the
+ * string, as a request path variable arrives, so its hash isn't cached yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"uuid", "time-ordered"})
+    public String generator;
+
+    private Supplier<String> ids;
+    private String[] stored;
+    private Map<String, Integer> storedIds;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        ToDoIds timeOrdered = new ToDoIds(0);
+        ids = generator.equals("uuid") ? () -> UUID.randomUUID().toString() : timeOrdered::next;
+        stored = new String[size];
+        storedIds = new ConcurrentHashMap<>();
+        for (int i = 0; i < size; i++) {
+            stored[i] = ids.get();
+            storedIds.put(stored[i], i);
+        }
+    }
+
+    @Benchmark
+    public String generate() {
+        return ids.get();
+    }
+
+    @Benchmark
+    public Integer lookup() {
+        String id = stored[ThreadLocalRandom.current().nextInt(stored.length)];
+        return storedIds.get(new String(id.toCharArray()));
+    }
+}
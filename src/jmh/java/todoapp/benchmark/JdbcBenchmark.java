@@ -0,0 +1,118 @@
+package todoapp.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import todoapp.business.ToDoOperation;
+import todoapp.business.ToDoPage;
+import todoapp.business.ToDoQuery;
+import todoapp.business.ToDoRepository;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.ToDoIds;
+import todoapp.persistence.jdbc.JdbcToDoRepository;
+import todoapp.persistence.model.ToDo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryImpl against JdbcToDoRepository over an H2 file database: a lookup by id, a
+ * filtered and sorted page, a single insert and a batch of 100 inserts. The inserted to dos
+ * are deleted again in the same invocation, so the table keeps its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcBenchmark {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+    private static final ToDoQuery PAGE = new ToDoQuery("", "High", false, "default", "asc", 0, 20);
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"memory", "jdbc"})
+    public String backend;
+
+    private ToDoRepository repository;
+    private HikariDataSource dataSource;
+    private Path directory;
+    private String[] ids;
+    private long inserted;
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        if (backend.equals("jdbc")) {
+            directory = Files.createTempDirectory("jdbc-benchmark");
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl("jdbc:h2:file:" + directory.resolve("todos"));
+            dataSource = new HikariDataSource(config);
+            repository = new JdbcToDoRepository(dataSource, new ToDoIds(0), MemoryImpl.DEFAULT_RETAINED_CHANGES);
+        } else {
+            repository = new MemoryImpl(MemorySettings.defaults());
+        }
+
+        ids = new String[size];
+        List<ToDoOperation> batch = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ToDo toDo = new ToDo(NameSearchBenchmark.nameOf(i), PRIORITIES[i % PRIORITIES.length], LocalDate.parse("2023-12-01").plusDays(i % 365));
+            batch.add(new ToDoOperation(ToDoOperation.Type.ADD, null, toDo));
+            if (batch.size() == 1000 || i == size - 1) {
+                List<ToDo> saved = repository.applyBatch(batch, null).stream().map(result -> result.getToDo()).toList();
+                for (int j = 0; j < saved.size(); j++) {
+                    ids[i - saved.size() + 1 + j] = saved.get(j).getId();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        if (dataSource != null) {
+            ((JdbcToDoRepository) repository).close();
+            dataSource.close();
+            try (var files = Files.walk(directory)) {
+                files.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public ToDo getById() throws Exception {
+        return repository.getById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public ToDoPage sortedPage() {
+        return repository.findByQuery(PAGE);
+    }
+
+    @Benchmark
+    public void insert() throws Exception {
+        ToDo toDo = repository.save(new ToDo("Inserted #" + inserted++, "Low"));
+        repository.deleteById(toDo.getId());
+    }
+
+    @Benchmark
+    public void batchInsert() {
+        List<ToDoOperation> adds = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            adds.add(new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Inserted #" + inserted++, "Low")));
+        }
+        List<ToDoOperation> deletes = new ArrayList<>(100);
+        repository.applyBatch(adds, LocalDateTime.now())
+                .forEach(result -> deletes.add(new ToDoOperation(ToDoOperation.Type.DELETE, result.getToDo().getId(), null)));
+        repository.applyBatch(deletes, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,93 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.business.ToDoOperation;
+import todoapp.business.ToDoPage;
+import todoapp.business.ToDoQuery;
+import todoapp.business.ToDoRepository;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.ToDoIds;
+import todoapp.persistence.btree.MappedToDoRepository;
+import todoapp.persistence.model.ToDo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * MemoryImpl against MappedToDoRepository with its default 1024 cached pages: a lookup by
+ * id and the first page by due date. Run with -prof gc, or compare the heap after setup,
+ * to see what stays off the heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedBenchmark {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+    private static final ToDoQuery FIRST_DUE = new ToDoQuery("", "default", null, "default", "asc", 0, 20);
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"memory", "mapped"})
+    public String backend;
+
+    private ToDoRepository repository;
+    private Path directory;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        if (backend.equals("mapped")) {
+            directory = Files.createTempDirectory("mapped-benchmark");
+            repository = new MappedToDoRepository(directory.resolve("todos.db"), 1024, new ToDoIds(0), MemoryImpl.DEFAULT_RETAINED_CHANGES);
+        } else {
+            repository = new MemoryImpl(MemorySettings.defaults());
+        }
+
+        ids = new String[size];
+        List<ToDoOperation> batch = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ToDo toDo = new ToDo(NameSearchBenchmark.nameOf(i), PRIORITIES[i % PRIORITIES.length], LocalDate.parse("2023-12-01").plusDays(i % 365));
+            batch.add(new ToDoOperation(ToDoOperation.Type.ADD, null, toDo));
+            if (batch.size() == 1000 || i == size - 1) {
+                List<ToDo> saved = repository.applyBatch(batch, null).stream().map(result -> result.getToDo()).toList();
+                for (int j = 0; j < saved.size(); j++) {
+                    ids[i - saved.size() + 1 + j] = saved.get(j).getId();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        if (directory != null) {
+            ((MappedToDoRepository) repository).close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public ToDo getById() throws Exception {
+        return repository.getById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public ToDoPage firstDuePage() {
+        return repository.findByQuery(FIRST_DUE);
+    }
+}
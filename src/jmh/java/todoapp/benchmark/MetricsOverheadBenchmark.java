@@ -0,0 +1,71 @@
+package todoapp.benchmark;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import todoapp.business.DueDateTracker;
+import todoapp.business.ToDoMetrics;
+import todoapp.business.ToDoQueryCache;
+import todoapp.business.ToDoService;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the ToDoMetrics instrumentation: the same service calls with metrics disabled
+ * and recorded into a Prometheus registry, as the application runs them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"disabled", "prometheus"})
+    public String metrics;
+
+    private ToDoService service;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        service = new ToDoService(repository, metrics.equals("disabled") ? ToDoMetrics.disabled() : new ToDoMetrics(prometheus()),
+                ToDoQueryCache.disabled(), new DueDateTracker(repository, Clock.systemDefaultZone()));
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = service.addToDo(new ToDo(NameSearchBenchmark.nameOf(i), PRIORITIES[i % PRIORITIES.length])).getId();
+        }
+    }
+
+    private static PrometheusMeterRegistry prometheus() {
+        return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    }
+
+    @Benchmark
+    public ToDo markToDoAsDone() {
+        return service.markToDoAsDone(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public List<ToDo> firstSortedPage() {
+        return service.getToDosSortedAndFilteredWithPagination("", "default", null, "desc", "asc", 1);
+    }
+
+    @Benchmark
+    public List<Long> getStatistics() {
+        return service.getStatistics();
+    }
+}
@@ -0,0 +1,10 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * The same hot paths with four threads sharing the dataset, override with -t.
+ */
+@Threads(4)
+public class MultiThreadedToDoServiceBenchmark extends ToDoServiceBenchmark {
+}
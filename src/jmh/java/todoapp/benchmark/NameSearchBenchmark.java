@@ -0,0 +1,63 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Substring search over the stored names: the regex scan filterToDosByName used to run
+ * against the trigram index behind MemoryImpl.findByNameContaining. The 10M case needs
+ * a large heap, e.g. -Djmh.args="NameSearch -jvmArgs -Xmx24g".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameSearchBenchmark {
+
+    private static final String[] WORDS = {"write", "review", "deploy", "plan", "call", "buy", "fix", "clean",
+            "report", "groceries", "backlog", "meeting", "invoice", "garden", "email", "release"};
+
+    @Param({"10000", "1000000", "10000000"})
+    public int size;
+
+    // a word shared by 1/16 of the names and a number matching a handful of them
+    @Param({"Deploy", "77777"})
+    public String query;
+
+    private MemoryImpl repository;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        repository = new MemoryImpl(MemorySettings.defaults());
+        for (int i = 0; i < size; i++) {
+            repository.save(new ToDo(nameOf(i), "Low"));
+        }
+    }
+
+    static String nameOf(int i) {
+        return WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " #" + i;
+    }
+
+    @Benchmark
+    public List<ToDo> regexScan() {
+        return repository.findAll().stream()
+                .filter(toDo -> Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE)
+                        .matcher(toDo.getName()).find())
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Benchmark
+    public List<ToDo> trigramIndex() {
+        return repository.findByNameContaining(query);
+    }
+}
@@ -0,0 +1,62 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+import todoapp.persistence.offheap.OffHeapToDoMap;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryImpl over the heap map and over OffHeapToDoMap: a lookup, which decodes a ToDo
+ * off the heap, and a done/undone change, which writes a new record and frees the old
+ * slot. Run with -prof gc to see the decoding allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OffHeapBenchmark {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"heap", "off-heap"})
+    public String storage;
+
+    private MemoryImpl repository;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        repository = new MemoryImpl(MemorySettings.defaults()
+                .withStorage(storage.equals("off-heap") ? OffHeapToDoMap::new : ConcurrentHashMap::new));
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ToDo toDo = new ToDo(NameSearchBenchmark.nameOf(i), PRIORITIES[i % PRIORITIES.length], LocalDate.parse("2023-12-01").plusDays(i % 365));
+            ids[i] = repository.save(toDo).getId();
+        }
+    }
+
+    @Benchmark
+    public ToDo getById() throws Exception {
+        return repository.getById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public ToDo toggleDone() throws Exception {
+        String id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        ToDo toDo = repository.getById(id);
+        return toDo.isDoneUndoneFlag()
+                ? repository.markAsUndone(id)
+                : repository.markAsDone(id, toDo.getCreationDate().plusMinutes(5));
+    }
+}
@@ -0,0 +1,59 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.business.DueDateTracker;
+import todoapp.business.ToDoService;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overdue to dos, one in a hundred of the dataset, from the DueDateTracker behind
+ * ToDoService against a scan of every stored to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverdueBenchmark {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+
+    @Param({"100000"})
+    public int size;
+
+    private MemoryImpl repository;
+    private ToDoService service;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        repository = new MemoryImpl(MemorySettings.defaults());
+        service = new ToDoService(repository, new DueDateTracker(repository, Clock.systemDefaultZone()));
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < size; i++) {
+            LocalDate dueDate = i % 100 == 0 ? today.minusDays(1 + i % 30) : today.plusDays(1 + i % 365);
+            service.addToDo(new ToDo(NameSearchBenchmark.nameOf(i), PRIORITIES[i % PRIORITIES.length], dueDate));
+        }
+    }
+
+    @Benchmark
+    public List<ToDo> tracker() {
+        return service.getOverdueToDos();
+    }
+
+    @Benchmark
+    public List<ToDo> scan() {
+        LocalDate today = LocalDate.now();
+        return repository.streamAll()
+                .filter(toDo -> !toDo.isDoneUndoneFlag() && toDo.getDueDate() != null && toDo.getDueDate().isBefore(today))
+                .sorted(java.util.Comparator.comparing(ToDo::getDueDate).thenComparing(ToDo::getId))
+                .toList();
+    }
+}
@@ -0,0 +1,89 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+import todoapp.persistence.wal.Durability;
+import todoapp.persistence.wal.SnapshotStore;
+import todoapp.persistence.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to rebuild the repository at startup from the whole log versus from a snapshot plus
+ * a short log tail. Every stored to do was saved, updated once and half of them marked as
+ * done, so the log holds about 2.5 records per to do. The 10M case needs a large heap,
+ * e.g. -Djmh.args="Restart -jvmArgs -Xmx24g".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class RestartBenchmark {
+
+    private static final long SEGMENT_SIZE = 64L << 20;
+    private static final int TAIL = 1000;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Path logOnly;
+    private Path snapshotted;
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        logOnly = Files.createTempDirectory("restart-log");
+        snapshotted = Files.createTempDirectory("restart-snapshot");
+        populate(logOnly, false);
+        populate(snapshotted, true);
+    }
+
+    private void populate(Path directory, boolean snapshot) throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(directory, Durability.ASYNC, SEGMENT_SIZE, 100)) {
+            MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log).withSnapshots(new SnapshotStore(directory)));
+            for (int i = 0; i < size; i++) {
+                if (snapshot && i == size - TAIL) {
+                    repository.snapshot();
+                }
+                ToDo toDo = repository.save(new ToDo("Task #" + i, "Low"));
+                repository.update(toDo.getId(), new ToDo("Task #" + i, i % 3 == 0 ? "High" : "Medium"));
+                if (i % 2 == 0) {
+                    repository.markAsDone(toDo.getId(), toDo.getCreationDate().plusMinutes(i % 120));
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectories() throws IOException {
+        for (Path directory : new Path[]{logOnly, snapshotted}) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public MemoryImpl replayWholeLog() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(logOnly, Durability.ASYNC, SEGMENT_SIZE, 100)) {
+            return new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        }
+    }
+
+    @Benchmark
+    public MemoryImpl loadSnapshotAndTail() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(snapshotted, Durability.ASYNC, SEGMENT_SIZE, 100)) {
+            return new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log).withSnapshots(new SnapshotStore(snapshotted)));
+        }
+    }
+}
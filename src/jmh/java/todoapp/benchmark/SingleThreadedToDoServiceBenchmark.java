@@ -0,0 +1,7 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+@Threads(1)
+public class SingleThreadedToDoServiceBenchmark extends ToDoServiceBenchmark {
+}
@@ -0,0 +1,89 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.persistence.LongKeyedToDoMap;
+import todoapp.persistence.ToDoIds;
+import todoapp.persistence.model.ToDo;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryImpl's storage maps keyed by ToDoIds ids: insert fills an empty map, and footprint
+ * reports the heap the filled map keeps per to do. The to dos and their ids are made
+ * before each iteration, so the bytes counted are the map's own: the used heap after a full
+ * collection with the map filled, less the used heap before filling it. JMH sums the
+ * counters over the iterations, retainedBytes / storedToDos is the bytes per to do.
+ * footprint's time includes the collections, only its counters mean anything.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+public class StorageFootprintBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"concurrent-hash-map", "long-keyed"})
+    public String storage;
+
+    private ToDo[] toDos;
+    private long usedBeforeFilling;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long retainedBytes;
+        public long storedToDos;
+    }
+
+    @Setup(Level.Iteration)
+    public void createToDos() {
+        ToDoIds ids = new ToDoIds(0);
+        toDos = new ToDo[size];
+        for (int i = 0; i < size; i++) {
+            toDos[i] = new ToDo(ids.next(), NameSearchBenchmark.nameOf(i), "High", null, null, null, false, null, null, 1);
+        }
+        usedBeforeFilling = usedHeap();
+    }
+
+    @Benchmark
+    public ConcurrentMap<String, ToDo> insert() {
+        return fill();
+    }
+
+    @Benchmark
+    public ConcurrentMap<String, ToDo> footprint(Footprint footprint) {
+        ConcurrentMap<String, ToDo> storedToDos = fill();
+        footprint.retainedBytes = usedHeap() - usedBeforeFilling;
+        footprint.storedToDos = size;
+        return storedToDos;
+    }
+
+    private ConcurrentMap<String, ToDo> fill() {
+        ConcurrentMap<String, ToDo> storedToDos = storage.equals("long-keyed") ? new LongKeyedToDoMap() : new ConcurrentHashMap<>();
+        for (ToDo toDo : toDos) {
+            storedToDos.put(toDo.getId(), toDo);
+        }
+        return storedToDos;
+    }
+
+    // Collects until the used heap stops shrinking
+    private static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        while (true) {
+            System.gc();
+            long after = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            if (after >= used) {
+                return after;
+            }
+            used = after;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.business.DueDateTracker;
+import todoapp.business.ToDoService;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ToDoService over an in-memory repository holding size to dos: names built from
+ * NameSearchBenchmark's words, priorities in rotation, a due date on two out of three
+ * and every other one done. Shared by all the threads of a benchmark.
+ */
+@State(Scope.Benchmark)
+public class ToDoDataset {
+
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    MemoryImpl repository;
+    ToDoService service;
+    List<ToDo> allToDos;
+    String[] ids;
+
+    private final AtomicLong addedCount = new AtomicLong();
+    private final Queue<String> addedIds = new ConcurrentLinkedQueue<>();
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        repository = new MemoryImpl(MemorySettings.defaults());
+        service = new ToDoService(repository, new DueDateTracker(repository, Clock.systemDefaultZone()));
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            String name = NameSearchBenchmark.nameOf(i);
+            String priority = PRIORITIES[i % PRIORITIES.length];
+            ToDo toDo = repository.save(i % 3 == 0
+                    ? new ToDo(name, priority)
+                    : new ToDo(name, priority, LocalDate.of(2023, 1, 1).plusDays(i % 365)));
+            if (i % 2 == 0) {
+                repository.markAsDone(toDo.getId(), toDo.getCreationDate().plusMinutes(i % 600));
+            }
+            ids[i] = toDo.getId();
+        }
+        allToDos = repository.findAll();
+    }
+
+    // Names that can't collide with the populated ones, so addToDo never fails
+    String nextAddedName() {
+        return "Added #" + addedCount.incrementAndGet();
+    }
+
+    void added(ToDo toDo) {
+        addedIds.add(toDo.getId());
+    }
+
+    // Keeps the dataset at its nominal size from one iteration to the next
+    @TearDown(Level.Iteration)
+    public void deleteAdded() throws Exception {
+        String id;
+        while ((id = addedIds.poll()) != null) {
+            repository.deleteById(id);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package todoapp.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import todoapp.persistence.model.ToDo;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ToDoService and repository hot paths. Run through the single and multi-threaded
+ * subclasses, e.g. -Djmh.args="SingleThreadedToDoService -p size=1000,100000". The 10M
+ * dataset needs a large heap: -jvmArgs -Xmx24g.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ToDoServiceBenchmark {
+
+    @Benchmark
+    public ToDo addToDo(ToDoDataset dataset) {
+        ToDo added = dataset.service.addToDo(new ToDo(dataset.nextAddedName(), "Medium"));
+        dataset.added(added);
+        return added;
+    }
+
+    @Benchmark
+    public ToDo getById(ToDoDataset dataset) throws Exception {
+        return dataset.repository.getById(dataset.ids[ThreadLocalRandom.current().nextInt(dataset.ids.length)]);
+    }
+
+    @Benchmark
+    public List<ToDo> filterToDosByName(ToDoDataset dataset) {
+        return dataset.service.filterToDosByName(dataset.allToDos, "Deploy");
+    }
+
+    @Benchmark
+    public List<ToDo> filterToDosByPriority(ToDoDataset dataset) {
+        return dataset.service.filterToDosByPriority(dataset.allToDos, "High");
+    }
+
+    @Benchmark
+    public List<ToDo> filterToDosByFlag(ToDoDataset dataset) {
+        return dataset.service.filterToDosByFlag(dataset.allToDos, true);
+    }
+
+    @Benchmark
+    public List<ToDo> stableSort(ToDoDataset dataset) {
+        return dataset.service.stableSort(dataset.allToDos, "desc", "asc");
+    }
+
+    // a filtered and sorted page past the first one, the list endpoint's worst common case
+    @Benchmark
+    public List<ToDo> getToDosSortedAndFilteredWithPagination(ToDoDataset dataset) {
+        return dataset.service.getToDosSortedAndFilteredWithPagination("", "Low", false, "desc", "asc", 3);
+    }
+
+    @Benchmark
+    public List<Long> getStatistics(ToDoDataset dataset) {
+        return dataset.service.getStatistics();
+    }
+}
@@ -0,0 +1,169 @@
+package todoapp.business;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import todoapp.persistence.model.ToDo;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Knows which open to dos are due today and which are overdue without scanning them. Every
+ * open to do with a due date is scheduled in a DueDateWheel, and the wheel moves on to the
+ * current day whenever it's asked, so nothing runs while nobody looks.
+ * <p>
+ * The repository's change listener only queues the change, so writers never wait for each
+ * other or for a reader here. Whoever takes the lock next applies the queued changes to the
+ * wheel in the order they were made; a writer does so itself when the queue has grown long
+ * and the lock happens to be free.
+ */
+@Component
+public class DueDateTracker {
+
+    // Past this many queued changes a writer applies them when it gets the lock without waiting
+    private static final int DRAIN_THRESHOLD = 1024;
+
+    private final Clock clock;
+    private final DueDateWheel wheel;
+    private final Queue<ToDoChange> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Ids changed while the constructor streams the repository, the stream may hold older states
+    private Set<String> changedWhileLoading = new HashSet<>();
+    private boolean clearedWhileLoading;
+
+    @Autowired
+    public DueDateTracker(ToDoRepository repository, MeterRegistry registry) {
+        this(repository, Clock.systemDefaultZone());
+        Gauge.builder("todo.due.overdue", this, DueDateTracker::overdueCount)
+                .description("Open to dos past their due date")
+                .register(registry);
+        Gauge.builder("todo.due.today", this, DueDateTracker::dueTodayCount)
+                .description("Open to dos due today")
+                .register(registry);
+    }
+
+    public DueDateTracker(ToDoRepository repository, Clock clock) {
+        this.clock = clock;
+        this.wheel = new DueDateWheel(LocalDate.now(clock).toEpochDay());
+        repository.addChangeListener(this::enqueue);
+        try (Stream<ToDo> toDos = repository.streamAll()) {
+            toDos.forEach(this::load);
+        }
+        lock.lock();
+        try {
+            applyPending();
+            changedWhileLoading = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ids of the open to dos due before today, by due date
+    public List<String> overdueIds() {
+        lock.lock();
+        try {
+            catchUp();
+            return wheel.overdue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<String> dueTodayIds() {
+        lock.lock();
+        try {
+            catchUp();
+            return wheel.dueToday();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int overdueCount() {
+        lock.lock();
+        try {
+            catchUp();
+            return wheel.overdueCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int dueTodayCount() {
+        lock.lock();
+        try {
+            catchUp();
+            return wheel.dueTodayCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called by writers once their change is visible, in change order
+    private void enqueue(ToDoChange change) {
+        pending.add(change);
+        if (pendingCount.incrementAndGet() > DRAIN_THRESHOLD && lock.tryLock()) {
+            try {
+                applyPending();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void load(ToDo toDo) {
+        lock.lock();
+        try {
+            // changes queued so far are at least as new as the streamed state
+            applyPending();
+            if (!clearedWhileLoading && !changedWhileLoading.contains(toDo.getId())) {
+                track(toDo);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void catchUp() {
+        applyPending();
+        wheel.advanceTo(LocalDate.now(clock).toEpochDay());
+    }
+
+    private void applyPending() {
+        ToDoChange change;
+        while ((change = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            if (changedWhileLoading != null) {
+                if (change.getId() != null) {
+                    changedWhileLoading.add(change.getId());
+                } else {
+                    clearedWhileLoading = true;
+                }
+            }
+            switch (change.getType()) {
+                case CREATED, UPDATED, DONE, UNDONE -> track(change.getToDo());
+                case DELETED -> wheel.cancel(change.getId());
+                case CLEARED -> wheel.clear();
+            }
+        }
+    }
+
+    private void track(ToDo toDo) {
+        if (toDo.getDueDate() == null || toDo.isDoneUndoneFlag()) {
+            wheel.cancel(toDo.getId());
+        } else {
+            wheel.schedule(toDo.getId(), toDo.getDueDate().toEpochDay());
+        }
+    }
+}
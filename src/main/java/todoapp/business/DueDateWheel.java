@@ -0,0 +1,205 @@
+package todoapp.business;
+
+import java.util.*;
+
+/**
+ * Hierarchical timing wheel over epoch days. An entry due within 64 days sits in the
+ * first level's slot for its day, one due within 64 * 64 days in the second level's slot
+ * for its 64 day block, and so on, with a last bucket for anything further out. Moving to
+ * the next day fires that day's first level slot, and at the start of a block cascades
+ * the block's slot one level down, so every entry is touched once per level it passes
+ * through and scheduling or cancelling one is O(1).
+ * <p>
+ * Fired entries are due today; when the day after comes they move on to overdue. Not
+ * thread safe, DueDateTracker locks around it.
+ */
+final class DueDateWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 3;
+
+    private static final class Entry {
+
+        private final String id;
+        private final long dueDay;
+        private Bucket bucket;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(String id, long dueDay) {
+            this.id = id;
+            this.dueDay = dueDay;
+        }
+    }
+
+    // Doubly linked through the entries, so an entry leaves its bucket in O(1)
+    private static final class Bucket {
+
+        private Entry head;
+        private int size;
+
+        private void add(Entry entry) {
+            entry.bucket = this;
+            entry.previous = null;
+            entry.next = head;
+            if (head != null) {
+                head.previous = entry;
+            }
+            head = entry;
+            size++;
+        }
+
+        private void remove(Entry entry) {
+            if (entry.previous != null) {
+                entry.previous.next = entry.next;
+            } else {
+                head = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.previous = entry.previous;
+            }
+            entry.bucket = null;
+            entry.previous = null;
+            entry.next = null;
+            size--;
+        }
+
+        private Entry takeAll() {
+            Entry first = head;
+            head = null;
+            size = 0;
+            return first;
+        }
+    }
+
+    private final Bucket[][] levels = new Bucket[LEVELS][SLOTS];
+    private final Bucket beyondLevels = new Bucket();
+    private final Bucket dueToday = new Bucket();
+    private final Bucket overdue = new Bucket();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long today;
+
+    DueDateWheel(long today) {
+        this.today = today;
+        for (Bucket[] level : levels) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                level[slot] = new Bucket();
+            }
+        }
+    }
+
+    long today() {
+        return today;
+    }
+
+    // Replaces whatever was scheduled for the id
+    void schedule(String id, long dueDay) {
+        cancel(id);
+        Entry entry = new Entry(id, dueDay);
+        entries.put(id, entry);
+        place(entry);
+    }
+
+    void cancel(String id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            entry.bucket.remove(entry);
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        for (Bucket[] level : levels) {
+            for (Bucket bucket : level) {
+                bucket.takeAll();
+            }
+        }
+        beyondLevels.takeAll();
+        dueToday.takeAll();
+        overdue.takeAll();
+    }
+
+    // A day before today is ignored, entries never move back out of overdue
+    void advanceTo(long day) {
+        while (today < day) {
+            long next = ++today;
+            for (Entry entry = dueToday.takeAll(); entry != null; ) {
+                Entry following = entry.next;
+                overdue.add(entry);
+                entry = following;
+            }
+            if ((next & MASK) == 0) {
+                if ((next >> SLOT_BITS & MASK) == 0) {
+                    if ((next >> 2 * SLOT_BITS & MASK) == 0) {
+                        cascade(beyondLevels);
+                    }
+                    cascade(levels[2][(int) (next >> 2 * SLOT_BITS & MASK)]);
+                }
+                cascade(levels[1][(int) (next >> SLOT_BITS & MASK)]);
+            }
+            cascade(levels[0][(int) (next & MASK)]);
+        }
+    }
+
+    // Ordered by due day, then id
+    List<String> overdue() {
+        return idsOf(overdue);
+    }
+
+    List<String> dueToday() {
+        return idsOf(dueToday);
+    }
+
+    int overdueCount() {
+        return overdue.size;
+    }
+
+    int dueTodayCount() {
+        return dueToday.size;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void place(Entry entry) {
+        long delay = entry.dueDay - today;
+        if (delay < 0) {
+            overdue.add(entry);
+        } else if (delay == 0) {
+            dueToday.add(entry);
+        } else if (delay < 1L << SLOT_BITS) {
+            levels[0][(int) (entry.dueDay & MASK)].add(entry);
+        } else if (delay < 1L << 2 * SLOT_BITS) {
+            levels[1][(int) (entry.dueDay >> SLOT_BITS & MASK)].add(entry);
+        } else if (delay < 1L << 3 * SLOT_BITS) {
+            levels[2][(int) (entry.dueDay >> 2 * SLOT_BITS & MASK)].add(entry);
+        } else {
+            beyondLevels.add(entry);
+        }
+    }
+
+    // Re-places a slot's entries against today, a first level slot lands in dueToday
+    private void cascade(Bucket bucket) {
+        for (Entry entry = bucket.takeAll(); entry != null; ) {
+            Entry following = entry.next;
+            place(entry);
+            entry = following;
+        }
+    }
+
+    private static List<String> idsOf(Bucket bucket) {
+        List<Entry> found = new ArrayList<>(bucket.size);
+        for (Entry entry = bucket.head; entry != null; entry = entry.next) {
+            found.add(entry);
+        }
+        found.sort(Comparator.comparingLong((Entry entry) -> entry.dueDay).thenComparing(entry -> entry.id));
+        List<String> ids = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,44 @@
+package todoapp.business;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import todoapp.persistence.model.ToDo;
+
+/**
+ * A committed mutation as seen by change feed clients: the changed to do after the change,
+ * or only its id when it was deleted. Sequences increase with every change.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ToDoChange {
+
+    public enum Type {
+        CREATED, UPDATED, DONE, UNDONE, DELETED, CLEARED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String id;
+    private final ToDo toDo;
+
+    public ToDoChange(long sequence, Type type, String id, ToDo toDo) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.toDo = toDo;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ToDo getToDo() {
+        return toDo;
+    }
+}
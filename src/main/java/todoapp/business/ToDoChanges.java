@@ -0,0 +1,41 @@
+package todoapp.business;
+
+import java.util.List;
+
+/**
+ * Answer to "what changed since sequence N": the changes after N in sequence order, or a
+ * resync marker when N is no longer retained. Either way, sequence is what to ask from
+ * next time; after a resync the client reloads everything with getAll first.
+ */
+public class ToDoChanges {
+
+    private final boolean resync;
+    private final long sequence;
+    private final List<ToDoChange> changes;
+
+    private ToDoChanges(boolean resync, long sequence, List<ToDoChange> changes) {
+        this.resync = resync;
+        this.sequence = sequence;
+        this.changes = changes;
+    }
+
+    public static ToDoChanges of(long sequence, List<ToDoChange> changes) {
+        return new ToDoChanges(false, sequence, changes);
+    }
+
+    public static ToDoChanges resync(long sequence) {
+        return new ToDoChanges(true, sequence, List.of());
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<ToDoChange> getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,84 @@
+package todoapp.business;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Timers for repository calls and service operations, the dataset size and the rows
+ * scanned versus returned by list queries. The endpoints themselves are timed by Spring
+ * MVC as http.server.requests.
+ */
+@Component
+public class ToDoMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> repositoryTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> serviceTimers = new ConcurrentHashMap<>();
+    private final DistributionSummary rowsScanned;
+    private final DistributionSummary rowsReturned;
+
+    // E is inferred from the call, so calls that can't fail with a checked exception need no catch
+    @FunctionalInterface
+    public interface RepositoryCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @Autowired
+    public ToDoMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.rowsScanned = DistributionSummary.builder("todo.query.rows.scanned")
+                .description("Stored to dos looked at to answer a list query")
+                .register(registry);
+        this.rowsReturned = DistributionSummary.builder("todo.query.rows.returned")
+                .description("To dos returned by a list query")
+                .register(registry);
+    }
+
+    /**
+     * Metrics that record nothing, for a service built outside of Spring.
+     */
+    public static ToDoMetrics disabled() {
+        return new ToDoMetrics(new CompositeMeterRegistry());
+    }
+
+    public void gaugeDatasetSize(ToDoRepository repository) {
+        Gauge.builder("todo.repository.size", repository, ToDoRepository::count)
+                .description("Stored to dos")
+                .register(registry);
+    }
+
+    public <T, E extends Exception> T timeRepository(String operation, RepositoryCall<T, E> call) throws E {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return call.call();
+        } finally {
+            sample.stop(repositoryTimers.computeIfAbsent(operation, key -> Timer.builder("todo.repository.calls")
+                    .description("Repository calls by operation")
+                    .tag("operation", key)
+                    .register(registry)));
+        }
+    }
+
+    public <T> T timeService(String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return call.get();
+        } finally {
+            sample.stop(serviceTimers.computeIfAbsent(operation, key -> Timer.builder("todo.service.operations")
+                    .description("Service operations that don't reach the repository")
+                    .tag("operation", key)
+                    .register(registry)));
+        }
+    }
+
+    public void recordQuery(ToDoPage page) {
+        rowsScanned.record(page.getScannedCount());
+        rowsReturned.record(page.getToDos().size());
+    }
+}
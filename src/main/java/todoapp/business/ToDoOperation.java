@@ -0,0 +1,60 @@
+package todoapp.business;
+
+import todoapp.persistence.model.ToDo;
+
+/**
+ * One item of a batch: ADD and UPDATE carry a to do, every type but ADD targets an id.
+ * UPDATE checks the version of its to do, DONE and UNDONE the version of the operation.
+ */
+public class ToDoOperation {
+
+    public enum Type {
+        ADD, UPDATE, DONE, UNDONE, DELETE
+    }
+
+    private Type type;
+    private String id;
+    private ToDo toDo;
+    private long version = ToDo.ANY_VERSION;
+
+    public ToDoOperation() {
+    }
+
+    public ToDoOperation(Type type, String id, ToDo toDo) {
+        this.type = type;
+        this.id = id;
+        this.toDo = toDo;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public ToDo getToDo() {
+        return toDo;
+    }
+
+    public void setToDo(ToDo toDo) {
+        this.toDo = toDo;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
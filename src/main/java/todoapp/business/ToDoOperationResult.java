@@ -0,0 +1,52 @@
+package todoapp.business;
+
+import todoapp.persistence.model.ToDo;
+
+/**
+ * Outcome of one batch item: the resulting to do when applied (null for a delete),
+ * otherwise why it wasn't.
+ */
+public class ToDoOperationResult {
+
+    public enum Status {
+        APPLIED, NOT_FOUND, REJECTED, CONFLICT
+    }
+
+    private final Status status;
+    private final ToDo toDo;
+    private final String message;
+
+    private ToDoOperationResult(Status status, ToDo toDo, String message) {
+        this.status = status;
+        this.toDo = toDo;
+        this.message = message;
+    }
+
+    public static ToDoOperationResult applied(ToDo toDo) {
+        return new ToDoOperationResult(Status.APPLIED, toDo, null);
+    }
+
+    public static ToDoOperationResult notFound(String message) {
+        return new ToDoOperationResult(Status.NOT_FOUND, null, message);
+    }
+
+    public static ToDoOperationResult rejected(String message) {
+        return new ToDoOperationResult(Status.REJECTED, null, message);
+    }
+
+    public static ToDoOperationResult conflict(String message) {
+        return new ToDoOperationResult(Status.CONFLICT, null, message);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public ToDo getToDo() {
+        return toDo;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,35 @@
+package todoapp.business;
+
+import todoapp.persistence.model.ToDo;
+
+import java.util.List;
+
+public class ToDoPage {
+
+    private final List<ToDo> toDos;
+    private final long totalCount;
+    // How many stored to dos the repository looked at to build the page
+    private final long scannedCount;
+
+    public ToDoPage(List<ToDo> toDos, long totalCount) {
+        this(toDos, totalCount, totalCount);
+    }
+
+    public ToDoPage(List<ToDo> toDos, long totalCount, long scannedCount) {
+        this.toDos = toDos;
+        this.totalCount = totalCount;
+        this.scannedCount = scannedCount;
+    }
+
+    public List<ToDo> getToDos() {
+        return toDos;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getScannedCount() {
+        return scannedCount;
+    }
+}
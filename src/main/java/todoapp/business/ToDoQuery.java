@@ -0,0 +1,142 @@
+package todoapp.business;
+
+import todoapp.persistence.index.TrigramIndex;
+import todoapp.persistence.model.ToDo;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Filter, sort and page specification for getToDosSortedAndFilteredWithPagination,
+ * executed by the repository in a single pass. "default" (or an empty name) disables
+ * the corresponding filter, as does any order other than "asc" or "desc" for a sort key.
+ */
+public class ToDoQuery {
+
+    private final String name;
+    private final String foldedName;
+    private final String priority;
+    private final Boolean doneUndoneFlag;
+    private final String priorityOrder;
+    private final String dateOrder;
+    private final int offset;
+    private final int limit;
+
+    public ToDoQuery(String name, String priority, Boolean doneUndoneFlag, String priorityOrder, String dateOrder, int offset, int limit) {
+        this.name = name == null || name.isEmpty() ? null : name;
+        this.foldedName = this.name == null ? null : TrigramIndex.fold(this.name);
+        this.priority = isDefault(priority) ? null : priority;
+        this.doneUndoneFlag = doneUndoneFlag;
+        this.priorityOrder = sortOrder(priorityOrder);
+        this.dateOrder = sortOrder(dateOrder);
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    private static boolean isDefault(String value) {
+        return value == null || value.equals("default");
+    }
+
+    private static String sortOrder(String value) {
+        return "asc".equals(value) || "desc".equals(value) ? value : null;
+    }
+
+    public static int priorityRank(String priority) {
+        if (priority == null) {
+            return -1;
+        }
+        return switch (priority) {
+            case "High" -> 0;
+            case "Medium" -> 1;
+            case "Low" -> 2;
+            default -> -1;
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFoldedName() {
+        return foldedName;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public Boolean getDoneUndoneFlag() {
+        return doneUndoneFlag;
+    }
+
+    public String getPriorityOrder() {
+        return priorityOrder;
+    }
+
+    public String getDateOrder() {
+        return dateOrder;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isSorted() {
+        return priorityOrder != null || dateOrder != null;
+    }
+
+    public boolean isFiltered() {
+        return name != null || priority != null || doneUndoneFlag != null;
+    }
+
+    public boolean matches(ToDo toDo) {
+        return (priority == null || priority.equals(toDo.getPriority()))
+                && (doneUndoneFlag == null || doneUndoneFlag == toDo.isDoneUndoneFlag())
+                && (foldedName == null || TrigramIndex.fold(toDo.getName()).contains(foldedName));
+    }
+
+    /**
+     * Priority rank first, then due date with undated to dos last. Ties are broken by id
+     * in the due date's direction so every page boundary is deterministic.
+     */
+    public Comparator<ToDo> comparator() {
+        Comparator<ToDo> byDueDateAndId = "desc".equals(dateOrder)
+                ? Comparator.comparing(ToDo::getDueDate, Comparator.nullsLast(Comparator.<LocalDate>reverseOrder()))
+                        .thenComparing(ToDo::getId, Comparator.reverseOrder())
+                : Comparator.comparing(ToDo::getDueDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder()))
+                        .thenComparing(ToDo::getId);
+        if (priorityOrder == null) {
+            return byDueDateAndId;
+        }
+        Comparator<ToDo> byPriority = Comparator.comparingInt(toDo -> priorityRank(toDo.getPriority()));
+        if (priorityOrder.equals("desc")) {
+            byPriority = byPriority.reversed();
+        }
+        return byPriority.thenComparing(byDueDateAndId);
+    }
+
+    // Equal queries ask for the same page, defaults are already folded by the constructor
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ToDoQuery query)) {
+            return false;
+        }
+        return offset == query.offset && limit == query.limit
+                && Objects.equals(name, query.name) && Objects.equals(priority, query.priority)
+                && Objects.equals(doneUndoneFlag, query.doneUndoneFlag)
+                && Objects.equals(priorityOrder, query.priorityOrder) && Objects.equals(dateOrder, query.dateOrder);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, priority, doneUndoneFlag, priorityOrder, dateOrder, offset, limit);
+    }
+}
@@ -0,0 +1,74 @@
+package todoapp.business;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pages of list queries keyed by the query and the repository version they were read at.
+ * Caffeine's W-TinyLFU policy bounds the cache by the number of to dos held, so a few big
+ * pages can't push out many small ones unnoticed. Hits, misses and evictions are exported
+ * as the cache.* meters tagged cache=todo.queries.
+ */
+@Component
+public class ToDoQueryCache {
+
+    private record Key(ToDoQuery query, long version) {
+    }
+
+    private final Cache<Key, ToDoPage> pages;
+    private final AtomicLong currentVersion = new AtomicLong();
+
+    @Autowired
+    public ToDoQueryCache(@Value("${todoapp.query-cache.max-rows:100000}") long maxRows, MeterRegistry registry) {
+        if (maxRows <= 0) {
+            pages = null;
+            return;
+        }
+        pages = Caffeine.newBuilder()
+                .maximumWeight(maxRows)
+                .weigher((Key key, ToDoPage page) -> page.getToDos().size() + 1)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, pages, "todo.queries");
+    }
+
+    /**
+     * A cache that always runs the query, for a service built outside of Spring.
+     */
+    public static ToDoQueryCache disabled() {
+        return new ToDoQueryCache(0, null);
+    }
+
+    /**
+     * Returns the page cached for the query at the given version, loading it otherwise. The
+     * version must be read before the query runs: a write racing the load then only leaves
+     * an entry under a version nobody asks for again. Pages of older versions are dropped
+     * as soon as a newer version is seen.
+     */
+    public ToDoPage get(ToDoQuery query, long version, Supplier<ToDoPage> loader) {
+        if (pages == null) {
+            return loader.get();
+        }
+        // only the caller that moves the version forward clears, a late reader of an older
+        // version can neither move it back nor clear the newer pages
+        if (currentVersion.getAndAccumulate(version, Math::max) < version) {
+            pages.invalidateAll();
+        }
+        return pages.get(new Key(query, version), key -> loader.get());
+    }
+
+    // Runs the pending evictions now instead of on Caffeine's executor
+    void cleanUp() {
+        if (pages != null) {
+            pages.cleanUp();
+        }
+    }
+}
@@ -4,13 +4,50 @@ import todoapp.persistence.exception.ToDoNotFoundException;
 import todoapp.persistence.model.ToDo;
 
 import java.awt.print.Pageable;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 //@Repository
 public interface ToDoRepository {
+    // May be an unmodifiable point-in-time view rather than a copy
     List<ToDo> findAll();
+    // Lazy, weakly consistent walk over the stored to dos that copies nothing, close it
+    // once done since it may hold a database connection
+    Stream<ToDo> streamAll();
+    long count();
+    // Increases with every committed mutation, including done/undone changes
+    long version();
+    // Case-insensitive substring match on the name
+    List<ToDo> findByNameContaining(String name);
+    // Filters, sorts and pages in one pass, returning the page and the number of matches
+    ToDoPage findByQuery(ToDoQuery query);
+    // Inserting a new to do claims its name atomically, a taken name throws ToDoAlreadyExistsException
     ToDo save(ToDo toDo) throws IllegalArgumentException;
+    // Changes publish a copy with the next version. A given version other than ToDo.ANY_VERSION
+    // must be the stored one, otherwise ToDoConflictException is thrown and nothing changes
+    ToDo update(String id, ToDo toDo) throws IllegalArgumentException, ToDoNotFoundException;
+    ToDo markAsDone(String id, LocalDateTime doneDate, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException;
+    ToDo markAsUndone(String id, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException;
+
+    default ToDo markAsDone(String id, LocalDateTime doneDate) throws IllegalArgumentException, ToDoNotFoundException {
+        return markAsDone(id, doneDate, ToDo.ANY_VERSION);
+    }
+
+    default ToDo markAsUndone(String id) throws IllegalArgumentException, ToDoNotFoundException {
+        return markAsUndone(id, ToDo.ANY_VERSION);
+    }
+
+    // Applies every operation in order with a single durable commit, one result per operation
+    List<ToDoOperationResult> applyBatch(List<ToDoOperation> operations, LocalDateTime doneDate);
+    // Floor of the average minutes to complete over done to dos, null priority means all of them
+    long averageTimeToComplete(String priority);
     ToDo getById(String id) throws IllegalArgumentException, ToDoNotFoundException;
     void deleteById(String id) throws IllegalArgumentException, ToDoNotFoundException;
     void deleteAll();
+    // The retained changes after the given sequence, or a resync marker when they're gone
+    ToDoChanges changesSince(long sequence);
+    // Called on the writing thread in the order changes to the same to do were made, so it must not block
+    void addChangeListener(Consumer<ToDoChange> listener);
 }
@@ -5,25 +5,44 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import todoapp.persistence.exception.ToDoConflictException;
 import todoapp.persistence.exception.ToDoNotFoundException;
+import todoapp.persistence.index.TrigramIndex;
 import todoapp.persistence.model.ToDo;
 
 import java.awt.print.Pageable;
-import java.time.Duration;
 
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ToDoService {
 
+    private static final int PAGE_SIZE = 10;
+    static final int MAX_BATCH_SIZE = 10_000;
+
     private final ToDoRepository toDoRepository;
+    private final ToDoMetrics metrics;
+    private final ToDoQueryCache queryCache;
+    private final DueDateTracker dueDates;
+    // Versions restart from 0 with the process, so tags from an earlier run never match
+    private final String versionTagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    // The tracker listens to the repository, share one per repository rather than one per service
+    public ToDoService(ToDoRepository toDoRepository, DueDateTracker dueDates) {
+        this(toDoRepository, ToDoMetrics.disabled(), ToDoQueryCache.disabled(), dueDates);
+    }
 
     @Autowired
-    public ToDoService(ToDoRepository toDoRepository) {
+    public ToDoService(ToDoRepository toDoRepository, ToDoMetrics metrics, ToDoQueryCache queryCache, DueDateTracker dueDates) {
         this.toDoRepository = toDoRepository;
+        this.metrics = metrics;
+        this.queryCache = queryCache;
+        this.dueDates = dueDates;
+        metrics.gaugeDatasetSize(toDoRepository);
     }
 
     public ToDo addToDo(ToDo toDo) {
@@ -31,28 +50,64 @@ public class ToDoService {
         if(toDo == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The object can't be null");
         }
-        if(toDo.getName() == null | toDo.getPriority() == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The name or the priority parameter can't be null");
+        String invalidToDo = validate(toDo);
+        if (invalidToDo != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, invalidToDo);
         }
 
-        if (toDo.getName().isEmpty() | toDo.getName().length() > 120) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The name parameter can't be empty or have more than 120 characters length");
+        try {
+            return metrics.timeRepository("save", () -> toDoRepository.save(toDo));
+        } catch (IllegalArgumentException illegalArgumentException) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, illegalArgumentException.getMessage());
         }
+    }
 
-        if(toDoRepository.findAll().stream().anyMatch(element -> element.getName().equals(toDo.getName()))) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The To Do with the name " + toDo.getName() + "is already created ");
-        }
+    public List<ToDo> findAllToDos() {
+        return metrics.timeRepository("findAll", toDoRepository::findAll);
+    }
 
-        return toDoRepository.save(toDo);
+    /**
+     * Entity tag of the current repository state, to be read before the data it tags.
+     */
+    public String getVersionTag() {
+        return versionTagPrefix + toDoRepository.version();
     }
 
-    public List<ToDo> findAllToDos() {
-        return toDoRepository.findAll();
+    /**
+     * Registers a listener for every change committed through this service or any other
+     * path to the repository, see ToDoRepository.addChangeListener.
+     */
+    public void addChangeListener(Consumer<ToDoChange> listener) {
+        toDoRepository.addChangeListener(listener);
+    }
+
+    public ToDoChanges getChangesSince(long sequence) {
+        return metrics.timeRepository("changesSince", () -> toDoRepository.changesSince(sequence));
+    }
+
+    public Stream<ToDo> streamAllToDos() {
+        return toDoRepository.streamAll();
+    }
+
+    // Open to dos due before today, by due date, from the tracker instead of a scan
+    public List<ToDo> getOverdueToDos() {
+        List<ToDo> overdue = new ArrayList<>();
+        for (String id : dueDates.overdueIds()) {
+            try {
+                overdue.add(metrics.timeRepository("getById", () -> toDoRepository.getById(id)));
+            } catch (ToDoNotFoundException deleted) {
+                // deleted after the tracker listed it
+            }
+        }
+        return overdue;
     }
 
     public void deleteToDo(String id) {
         try {
-            toDoRepository.deleteById(id);
+            metrics.timeRepository("deleteById", () -> {
+                toDoRepository.deleteById(id);
+                return null;
+            });
         } catch (ToDoNotFoundException exception) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, exception.getMessage());
         } catch (IllegalArgumentException illegalArgumentException) {
@@ -61,79 +116,143 @@ public class ToDoService {
     }
 
     public ToDo updateToDo(String id, ToDo toDo) {
-        if(toDo.getName() == null | toDo.getPriority() == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The name or the priority parameter can't be null");
-        }
-
-        if (toDo.getName().isEmpty() | toDo.getName().length() > 120) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The name parameter can't be empty or have more than 120 characters length");
+        String invalidToDo = validate(toDo);
+        if (invalidToDo != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, invalidToDo);
         }
 
         try {
-            ToDo pastToDo = toDoRepository.getById(id);
-            pastToDo.setName(toDo.getName());
-            pastToDo.setPriority(toDo.getPriority());
-            pastToDo.setDueDate(toDo.getDueDate());
-            pastToDo.setDaysToComplete(ChronoUnit.DAYS.between(pastToDo.getCreationDate(), pastToDo.getDueDate().atStartOfDay().plusDays(1)));
-            return toDoRepository.save(pastToDo);
+            ToDo pastToDo = metrics.timeRepository("getById", () -> toDoRepository.getById(id));
+            ToDo edited = toDo.withDaysToComplete(ChronoUnit.DAYS.between(pastToDo.getCreationDate(), toDo.getDueDate().atStartOfDay().plusDays(1)));
+            return metrics.timeRepository("update", () -> toDoRepository.update(id, edited));
         } catch (ToDoNotFoundException exception) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, exception.getMessage());
+        } catch (ToDoConflictException exception) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, exception.getMessage());
         } catch (IllegalArgumentException illegalArgumentException) {
             throw  new ResponseStatusException(HttpStatus.BAD_REQUEST, illegalArgumentException.getMessage());
         }
     }
 
-    public List<ToDo> getToDosSortedAndFilteredWithPagination(String name, String priority, Boolean doneUnDoneFlag, String priorityOrder, String dateOrder, int pageNumber) {
-        if (name.equals("") && priority.equals("default") && doneUnDoneFlag == null && priorityOrder.equals("default") && dateOrder.equals("default")) {
-            return this.pagination(toDoRepository.findAll(), pageNumber);
+    /**
+     * Validates the whole batch before touching anything, a single invalid operation
+     * rejects all of them. Valid operations that fail when applied, because their to do is
+     * gone or their name is taken, are reported in their result instead.
+     */
+    public List<ToDoOperationResult> applyBatch(List<ToDoOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The batch can't be empty");
+        }
+        if (operations.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The batch can't have more than " + MAX_BATCH_SIZE + " operations");
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            String invalidOperation = validate(operations.get(i));
+            if (invalidOperation != null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Operation " + i + ": " + invalidOperation);
+            }
         }
 
-        List<ToDo> initialList = this.pagination(toDoRepository.findAll(), pageNumber);
+        for (ToDoOperation operation : operations) {
+            if (operation.getType() == ToDoOperation.Type.UPDATE) {
+                operation.setToDo(withDaysToComplete(operation.getId(), operation.getToDo()));
+            }
+        }
+        return metrics.timeRepository("applyBatch", () -> toDoRepository.applyBatch(operations, java.time.LocalDateTime.now()));
+    }
 
-        List<ToDo> filteredPriority = this.filterToDosByPriority(initialList, priority);
-        List<ToDo> filteredByName = this.filterToDosByName(filteredPriority, name);
-        List<ToDo> filteredByFlag = this.filterToDosByFlag(filteredByName, doneUnDoneFlag);
+    private static String validate(ToDoOperation operation) {
+        if (operation == null || operation.getType() == null) {
+            return "The operation type can't be null";
+        }
+        if (operation.getType() != ToDoOperation.Type.ADD && operation.getId() == null) {
+            return "The id parameter can't be null";
+        }
+        if (operation.getType() == ToDoOperation.Type.ADD || operation.getType() == ToDoOperation.Type.UPDATE) {
+            return operation.getToDo() == null ? "The object can't be null" : validate(operation.getToDo());
+        }
+        return null;
+    }
 
-        List<ToDo> sortedList = this.stableSort(filteredByFlag, priorityOrder,  dateOrder);
+    private static String validate(ToDo toDo) {
+        if (toDo.getName() == null | toDo.getPriority() == null) {
+            return "The name or the priority parameter can't be null";
+        }
+        if (toDo.getName().isEmpty() | toDo.getName().length() > 120) {
+            return "The name parameter can't be empty or have more than 120 characters length";
+        }
+        return null;
+    }
 
-        return sortedList;
+    private ToDo withDaysToComplete(String id, ToDo toDo) {
+        if (toDo.getDueDate() == null) {
+            return toDo;
+        }
+        try {
+            ToDo pastToDo = toDoRepository.getById(id);
+            return toDo.withDaysToComplete(ChronoUnit.DAYS.between(pastToDo.getCreationDate(), toDo.getDueDate().atStartOfDay().plusDays(1)));
+        } catch (ToDoNotFoundException ignored) {
+            // left for the repository to report in the operation's result
+            return toDo;
+        }
+    }
+
+    public List<ToDo> getToDosSortedAndFilteredWithPagination(String name, String priority, Boolean doneUnDoneFlag, String priorityOrder, String dateOrder, int pageNumber) {
+        return this.getToDoPage(name, priority, doneUnDoneFlag, priorityOrder, dateOrder, pageNumber).getToDos();
+    }
+
+    public ToDoPage getToDoPage(String name, String priority, Boolean doneUnDoneFlag, String priorityOrder, String dateOrder, int pageNumber) {
+        if (pageNumber < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The page number must be greater than 0");
+        }
+
+        int offset = (pageNumber - 1) * PAGE_SIZE;
+        ToDoQuery query = new ToDoQuery(name, priority, doneUnDoneFlag, priorityOrder, dateOrder, offset, PAGE_SIZE);
+        return queryCache.get(query, toDoRepository.version(), () -> {
+            ToDoPage page = metrics.timeRepository("findByQuery", () -> toDoRepository.findByQuery(query));
+            metrics.recordQuery(page);
+            return page;
+        });
     }
 
     public List<ToDo> pagination(List<ToDo> listToPage, int pageNumber) {
-        int offset = (pageNumber - 1) * 10;
-        return listToPage.stream().skip(offset).limit(10).toList();
+        int offset = (pageNumber - 1) * PAGE_SIZE;
+        return listToPage.stream().skip(offset).limit(PAGE_SIZE).toList();
     }
 
     public List<ToDo> filterToDosByPriority(List<ToDo> prevList, String priority) {
         if (priority.equals("default")) {
             return prevList;
         }
-        return prevList.stream().filter(toDo -> toDo.getPriority().equals(priority))
-                .collect(Collectors.toCollection(ArrayList::new));
+        return metrics.timeService("filterByPriority", () -> prevList.stream()
+                .filter(toDo -> toDo.getPriority().equals(priority))
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
     public List<ToDo> filterToDosByName(List<ToDo> prevList, String name) {
         if (name.equals("")) {
             return prevList;
         }
-        return prevList.stream()
-                .filter(toDo -> Pattern.compile(Pattern.quote(name), Pattern.CASE_INSENSITIVE)
-                .matcher(toDo.getName()).find())
-                .collect(Collectors.toCollection(ArrayList::new));
+        String foldedName = TrigramIndex.fold(name);
+        return metrics.timeService("filterByName", () -> prevList.stream()
+                .filter(toDo -> TrigramIndex.fold(toDo.getName()).contains(foldedName))
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
     public List<ToDo> filterToDosByFlag(List<ToDo> prevList, Boolean flag) {
         if (flag == null) {
             return prevList;
         }
-        return prevList.stream()
+        return metrics.timeService("filterByFlag", () -> prevList.stream()
                 .filter(toDo -> toDo.isDoneUndoneFlag() == flag)
-                .collect(Collectors.toCollection(ArrayList::new));
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
     public List<ToDo> stableSort(List<ToDo> list, String priorityOrder, String dateOrder) {
-        List<ToDo> sortedByDate = sortToDosByDueDate(list, dateOrder);
-        return sortToDosByPriority(sortedByDate, priorityOrder);
+        return metrics.timeService("stableSort", () -> {
+            List<ToDo> sortedByDate = sortToDosByDueDate(list, dateOrder);
+            return sortToDosByPriority(sortedByDate, priorityOrder);
+        });
     }
 
     public List<ToDo> sortToDosByDueDate(List<ToDo> list, String value) {
@@ -155,74 +274,61 @@ public class ToDoService {
     }
 
     public List<ToDo> sortToDosByPriority(List<ToDo> list, String value) {
-        List<ToDo> sortedToDos = new ArrayList<>(list);
-        List<String> priorities = Arrays.asList("High", "Medium", "Low");
-
-        sortedToDos.sort((o1, o2) -> {
-            int p1 = priorities.indexOf(o1.getPriority());
-            int p2 = priorities.indexOf(o2.getPriority());
-            return switch (value) {
-                case "asc" -> Integer.compare(p1, p2);
-                case "desc" -> Integer.compare(p2, p1);
-                default -> 0;
-            };
-        });
-
-        return sortedToDos;
+        Comparator<ToDo> byPriority = Comparator.comparingInt(toDo -> ToDoQuery.priorityRank(toDo.getPriority()));
+        return switch (value) {
+            case "asc" -> list.stream().sorted(byPriority).collect(Collectors.toCollection(ArrayList::new));
+            case "desc" -> list.stream().sorted(byPriority.reversed()).collect(Collectors.toCollection(ArrayList::new));
+            default -> new ArrayList<>(list);
+        };
     }
 
     public ToDo markToDoAsUndone(String id) {
-        try {
-            ToDo toDo = toDoRepository.getById(id);
-
-            toDo.setDoneDate(null);
-            toDo.setDoneUndoneFlag(false);
-            toDo.setTimeToComplete(null);
+        return markToDoAsUndone(id, ToDo.ANY_VERSION);
+    }
 
-            return toDo;
+    public ToDo markToDoAsUndone(String id, long expectedVersion) {
+        try {
+            return metrics.timeRepository("markAsUndone", () -> toDoRepository.markAsUndone(id, expectedVersion));
 
         } catch (ToDoNotFoundException exception) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, exception.getMessage());
+        } catch (ToDoConflictException exception) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, exception.getMessage());
         } catch (IllegalArgumentException illegalArgumentException) {
             throw  new ResponseStatusException(HttpStatus.BAD_REQUEST, illegalArgumentException.getMessage());
         }
     }
 
     public ToDo markToDoAsDone(String id) {
-        try {
-            ToDo toDo = toDoRepository.getById(id);
-
-            toDo.setDoneUndoneFlag(true);
-            toDo.setDoneDate(java.time.LocalDateTime.now());
-            toDo.setTimeToComplete(Duration.between(toDo.getCreationDate(), toDo.getDoneDate()).toMinutes());
+        return markToDoAsDone(id, ToDo.ANY_VERSION);
+    }
 
-            return toDo;
+    public ToDo markToDoAsDone(String id, long expectedVersion) {
+        try {
+            return metrics.timeRepository("markAsDone", () -> toDoRepository.markAsDone(id, java.time.LocalDateTime.now(), expectedVersion));
 
         } catch (ToDoNotFoundException exception) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, exception.getMessage());
+        } catch (ToDoConflictException exception) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, exception.getMessage());
         } catch (IllegalArgumentException illegalArgumentException) {
             throw  new ResponseStatusException(HttpStatus.BAD_REQUEST, illegalArgumentException.getMessage());
         }
     }
 
+    // Not timed: the four reads are counter sums, cheaper than a timer, and /toDo/getStats is
+    // already timed by http.server.requests
     public List<Long> getStatistics() {
-        List<ToDo> allToDosDone = this.filterToDosByFlag(this.findAllToDos(), true);
-        List<ToDo> toDosWithHighPriority = this.filterToDosByPriority(allToDosDone, "High");
-        List<ToDo> toDosWithMediumPriority = this.filterToDosByPriority(allToDosDone, "Medium");
-        List<ToDo> toDosWithLowPriority = this.filterToDosByPriority(allToDosDone, "Low");
-
-        Long averageAll = Double.valueOf(Math.floor(allToDosDone.stream().mapToLong(ToDo::getTimeToComplete).average().orElse(0))).longValue();
-        Long averageHigh = Double.valueOf(Math.floor(toDosWithHighPriority.stream().mapToLong(ToDo::getTimeToComplete).average().orElse(0))).longValue();
-        Long averageMedium = Double.valueOf(Math.floor(toDosWithMediumPriority.stream().mapToLong(ToDo::getTimeToComplete).average().orElse(0))).longValue();
-        Long averageLow = Double.valueOf(Math.floor(toDosWithLowPriority.stream().mapToLong(ToDo::getTimeToComplete).average().orElse(0))).longValue();
-
-        List<Long> statistics = new ArrayList<>();
-        statistics.add(averageAll); statistics.add(averageHigh); statistics.add(averageMedium); statistics.add(averageLow);
-
-        return statistics;
+        return List.of(toDoRepository.averageTimeToComplete(null),
+                toDoRepository.averageTimeToComplete("High"),
+                toDoRepository.averageTimeToComplete("Medium"),
+                toDoRepository.averageTimeToComplete("Low"));
     }
 
     public void deleteAllToDos() {
-        toDoRepository.deleteAll();
+        metrics.timeRepository("deleteAll", () -> {
+            toDoRepository.deleteAll();
+            return null;
+        });
     }
 }
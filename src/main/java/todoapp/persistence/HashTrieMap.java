@@ -0,0 +1,511 @@
+package todoapp.persistence;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Persistent hash array mapped trie behind a ConcurrentMap. Nodes are never changed once
+ * published: a write copies the path from the root to its leaf and swaps the root with a
+ * CAS, sharing every other node with the previous root. A read takes the root once and
+ * sees a consistent point-in-time snapshot, and values() hands that snapshot out as a list
+ * without copying anything.
+ * <p>
+ * The compute family runs its function exactly once under a lock striped by key hash,
+ * since callers update indexes from inside it; only the root swap is retried.
+ */
+public class HashTrieMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // Past this shift the 32 bit hash is used up and equal hashes share a collision node
+    private static final int MAX_SHIFT = 30;
+    private static final int MAX_DEPTH = MAX_SHIFT / BITS + 3;
+    private static final int STRIPES = 64;
+
+    private static final Node EMPTY = new Node(0, new Object[0], 0, false);
+
+    private static final class Leaf<K, V> extends SimpleImmutableEntry<K, V> {
+
+        private final int hash;
+
+        private Leaf(int hash, K key, V value) {
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    // slots hold Leafs and child Nodes ordered by bit, or only Leafs in a collision node
+    private static final class Node {
+
+        private final int bitmap;
+        private final Object[] slots;
+        private final int size;
+        private final boolean collision;
+
+        private Node(int bitmap, Object[] slots, int size, boolean collision) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            this.size = size;
+            this.collision = collision;
+        }
+    }
+
+    private final AtomicReference<Node> root = new AtomicReference<>(EMPTY);
+    private final Object[] stripes = new Object[STRIPES];
+
+    public HashTrieMap() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * The values at this instant as an unmodifiable list, in O(1). Indexed access walks
+     * down the trie using subtree sizes, iteration visits each node once.
+     */
+    public List<V> valuesSnapshot() {
+        return new Values<>(root.get());
+    }
+
+    @Override
+    public int size() {
+        return root.get().size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(root.get(), key, hash(key)) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf<K, V> leaf = find(root.get(), key, hash(key));
+        return leaf == null ? null : leaf.getValue();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            V oldValue = get(key);
+            store(hash, key, value);
+            return oldValue;
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            V oldValue = get(key);
+            if (oldValue == null) {
+                store(hash, key, value);
+            }
+            return oldValue;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            V oldValue = get(key);
+            if (oldValue != null) {
+                delete(hash, key);
+            }
+            return oldValue;
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            if (value == null || !value.equals(get(key))) {
+                return false;
+            }
+            delete(hash, key);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            if (!oldValue.equals(get(key))) {
+                return false;
+            }
+            store(hash, key, newValue);
+            return true;
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            V oldValue = get(key);
+            if (oldValue != null) {
+                store(hash, key, value);
+            }
+            return oldValue;
+        }
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            V oldValue = get(key);
+            V newValue = remapping.apply(key, oldValue);
+            if (newValue != null) {
+                store(hash, key, newValue);
+            } else if (oldValue != null) {
+                delete(hash, key);
+            }
+            return newValue;
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            V oldValue = get(key);
+            return oldValue == null ? null : compute(key, (unused, value) -> remapping.apply(key, value));
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        int hash = hash(key);
+        synchronized (stripeOf(hash)) {
+            V oldValue = get(key);
+            return oldValue != null ? oldValue : compute(key, (unused, value) -> mapping.apply(key));
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        return compute(key, (unused, oldValue) -> oldValue == null ? value : remapping.apply(oldValue, value));
+    }
+
+    @Override
+    public void clear() {
+        root.set(EMPTY);
+    }
+
+    @Override
+    public Collection<V> values() {
+        return valuesSnapshot();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySnapshot();
+    }
+
+    private Object stripeOf(int hash) {
+        return stripes[hash & (STRIPES - 1)];
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private void store(int hash, K key, V value) {
+        swapRoot(current -> put(current, new Leaf<>(hash, key, value), 0));
+    }
+
+    private void delete(int hash, Object key) {
+        swapRoot(current -> remove(current, key, hash, 0));
+    }
+
+    // Writers of other stripes may swap the root in between, then the change is redone on theirs
+    private void swapRoot(UnaryOperator<Node> change) {
+        Node current;
+        Node changed;
+        do {
+            current = root.get();
+            changed = change.apply(current);
+        } while (!root.compareAndSet(current, changed));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Leaf<K, V> find(Node node, Object key, int hash) {
+        for (int shift = 0; ; shift += BITS) {
+            if (node.collision) {
+                for (Object slot : node.slots) {
+                    if (((Leaf<K, V>) slot).getKey().equals(key)) {
+                        return (Leaf<K, V>) slot;
+                    }
+                }
+                return null;
+            }
+            int bit = bitOf(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[indexOf(node.bitmap, bit)];
+            if (slot instanceof Leaf<?, ?> leaf) {
+                return leaf.hash == hash && leaf.getKey().equals(key) ? (Leaf<K, V>) leaf : null;
+            }
+            node = (Node) slot;
+        }
+    }
+
+    private static Node put(Node node, Leaf<?, ?> leaf, int shift) {
+        if (node.collision) {
+            for (int i = 0; i < node.slots.length; i++) {
+                if (((Leaf<?, ?>) node.slots[i]).getKey().equals(leaf.getKey())) {
+                    return new Node(0, replaced(node.slots, i, leaf), node.size, true);
+                }
+            }
+            return new Node(0, inserted(node.slots, node.slots.length, leaf), node.size + 1, true);
+        }
+
+        int bit = bitOf(leaf.hash, shift);
+        int index = indexOf(node.bitmap, bit);
+        if ((node.bitmap & bit) == 0) {
+            return new Node(node.bitmap | bit, inserted(node.slots, index, leaf), node.size + 1, false);
+        }
+        Object slot = node.slots[index];
+        if (slot instanceof Leaf<?, ?> existing) {
+            if (existing.hash == leaf.hash && existing.getKey().equals(leaf.getKey())) {
+                return new Node(node.bitmap, replaced(node.slots, index, leaf), node.size, false);
+            }
+            return new Node(node.bitmap, replaced(node.slots, index, pair(existing, leaf, shift + BITS)), node.size + 1, false);
+        }
+        Node child = (Node) slot;
+        Node changedChild = put(child, leaf, shift + BITS);
+        return new Node(node.bitmap, replaced(node.slots, index, changedChild), node.size - child.size + changedChild.size, false);
+    }
+
+    private static Node pair(Leaf<?, ?> first, Leaf<?, ?> second, int shift) {
+        if (shift > MAX_SHIFT) {
+            return new Node(0, new Object[]{first, second}, 2, true);
+        }
+        int firstBit = bitOf(first.hash, shift);
+        int secondBit = bitOf(second.hash, shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit, new Object[]{pair(first, second, shift + BITS)}, 2, false);
+        }
+        Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[]{first, second}
+                : new Object[]{second, first};
+        return new Node(firstBit | secondBit, slots, 2, false);
+    }
+
+    // Returns the same node when the key isn't there
+    private static Node remove(Node node, Object key, int hash, int shift) {
+        if (node.collision) {
+            for (int i = 0; i < node.slots.length; i++) {
+                if (((Leaf<?, ?>) node.slots[i]).getKey().equals(key)) {
+                    return new Node(0, removed(node.slots, i), node.size - 1, true);
+                }
+            }
+            return node;
+        }
+
+        int bit = bitOf(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = indexOf(node.bitmap, bit);
+        Object slot = node.slots[index];
+        if (slot instanceof Leaf<?, ?> leaf) {
+            if (leaf.hash != hash || !leaf.getKey().equals(key)) {
+                return node;
+            }
+            return new Node(node.bitmap & ~bit, removed(node.slots, index), node.size - 1, false);
+        }
+        Node child = (Node) slot;
+        Node changedChild = remove(child, key, hash, shift + BITS);
+        if (changedChild == child) {
+            return node;
+        }
+        if (changedChild.size == 0) {
+            return new Node(node.bitmap & ~bit, removed(node.slots, index), node.size - 1, false);
+        }
+        // a child left with one entry holds it as a leaf, so it's pulled up in its place
+        Object changedSlot = changedChild.size == 1 ? changedChild.slots[0] : changedChild;
+        return new Node(node.bitmap, replaced(node.slots, index, changedSlot), node.size - 1, false);
+    }
+
+    private static int bitOf(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int indexOf(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static Object[] replaced(Object[] slots, int index, Object slot) {
+        Object[] copy = slots.clone();
+        copy[index] = slot;
+        return copy;
+    }
+
+    private static Object[] inserted(Object[] slots, int index, Object slot) {
+        Object[] copy = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, copy, 0, index);
+        copy[index] = slot;
+        System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+        return copy;
+    }
+
+    private static Object[] removed(Object[] slots, int index) {
+        Object[] copy = new Object[slots.length - 1];
+        System.arraycopy(slots, 0, copy, 0, index);
+        System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+        return copy;
+    }
+
+    // Depth first walk over the leaves of one root
+    private static final class LeafIterator<K, V> implements Iterator<Leaf<K, V>> {
+
+        private final Object[][] stack = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Leaf<K, V> next;
+
+        private LeafIterator(Node root) {
+            stack[0] = root.slots;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                if (positions[depth] == stack[depth].length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = stack[depth][positions[depth]++];
+                if (slot instanceof Leaf<?, ?> leaf) {
+                    next = (Leaf<K, V>) leaf;
+                    return;
+                }
+                depth++;
+                stack[depth] = ((Node) slot).slots;
+                positions[depth] = 0;
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Leaf<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> leaf = next;
+            advance();
+            return leaf;
+        }
+    }
+
+    private static final class Values<V> extends AbstractList<V> {
+
+        private final Node root;
+
+        private Values(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(int index) {
+            Objects.checkIndex(index, root.size);
+            Node node = root;
+            while (true) {
+                for (Object slot : node.slots) {
+                    int slotSize = slot instanceof Node child ? child.size : 1;
+                    if (index < slotSize) {
+                        if (slot instanceof Leaf<?, ?> leaf) {
+                            return (V) leaf.getValue();
+                        }
+                        node = (Node) slot;
+                        break;
+                    }
+                    index -= slotSize;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return root.size;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            Iterator<Leaf<Object, V>> leaves = new LeafIterator<>(root);
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return leaves.hasNext();
+                }
+
+                @Override
+                public V next() {
+                    return leaves.next().getValue();
+                }
+            };
+        }
+    }
+
+    private final class EntrySnapshot extends AbstractSet<Entry<K, V>> {
+
+        private final Node snapshot = root.get();
+
+        @Override
+        public int size() {
+            return snapshot.size;
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof Entry<?, ?> entry
+                    && Objects.equals(find(snapshot, entry.getKey(), hash(entry.getKey())), entry);
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Iterator<Leaf<K, V>> leaves = new LeafIterator<>(snapshot);
+            return new Iterator<>() {
+                private Leaf<K, V> last;
+
+                @Override
+                public boolean hasNext() {
+                    return leaves.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    last = leaves.next();
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    HashTrieMap.this.remove(last.getKey(), last.getValue());
+                    last = null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package todoapp.persistence;
+
+import todoapp.persistence.model.ToDo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Keys to dos by their ToDoIds id parsed back to a long, in open-addressing tables of
+ * primitive keys next to their values, so a stored to do costs a long and a reference
+ * instead of a hash map node, and a lookup hashes and compares a long instead of a string.
+ * Ids ToDoIds didn't render, the UUIDs of to dos saved before it, are kept in a
+ * ConcurrentHashMap on the side.
+ * <p>
+ * The tables are split in segments by key hash. Writers of a segment take its lock and run
+ * the compute family's function once under it, since callers update indexes from inside
+ * it; only moving the slots around is done under the segment's StampedLock. Reads validate
+ * an optimistic stamp instead of locking, so a read from inside a function doesn't block.
+ * Iterating copies one segment at a time and is weakly consistent like ConcurrentHashMap's.
+ */
+public class LongKeyedToDoMap extends AbstractMap<String, ToDo> implements ConcurrentMap<String, ToDo> {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+    // Fibonacci hashing, ids of one node differ in their middle bits only
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    // ToDoIds never hands out 0, so it marks a free slot
+    private static final long FREE = 0;
+
+    // Linear probing with deletion by shifting the following run back, so there are no tombstones
+    private static final class Table {
+
+        private final long[] keys;
+        private final ToDo[] values;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new ToDo[capacity];
+        }
+
+        // The key's slot, or the free slot ending its run; may be torn when read optimistically
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            for (int probes = 0; probes < keys.length && keys[slot] != FREE && keys[slot] != key; probes++) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private ToDo get(long key) {
+            int slot = slotOf(key);
+            return keys[slot] == key ? values[slot] : null;
+        }
+
+        private void remove(int slot) {
+            int mask = keys.length - 1;
+            int free = slot;
+            for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+                int home = home(keys[next], mask);
+                // moves back an entry whose home isn't between the free slot and where it sits
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    keys[free] = keys[next];
+                    values[free] = values[next];
+                    free = next;
+                }
+            }
+            keys[free] = FREE;
+            values[free] = null;
+        }
+
+        private Table grown() {
+            Table grown = new Table(keys.length * 2);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != FREE) {
+                    int to = grown.slotOf(keys[slot]);
+                    grown.keys[to] = keys[slot];
+                    grown.values[to] = values[slot];
+                }
+            }
+            return grown;
+        }
+
+        private static int home(long key, int mask) {
+            return (int) ((key * GOLDEN_RATIO) >>> 32) & mask;
+        }
+    }
+
+    private static final class Segment extends ReentrantLock {
+
+        // Held while slots move, readers validate against it
+        private final StampedLock slots = new StampedLock();
+        private Table table = new Table(INITIAL_CAPACITY);
+        private volatile int size;
+
+        private ToDo get(long key) {
+            long stamp = slots.tryOptimisticRead();
+            if (stamp != 0) {
+                ToDo value = table.get(key);
+                if (slots.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = slots.readLock();
+            try {
+                return table.get(key);
+            } finally {
+                slots.unlockRead(stamp);
+            }
+        }
+
+        private ToDo compute(long key, String id, BiFunction<? super String, ? super ToDo, ? extends ToDo> remapping) {
+            lock();
+            try {
+                ToDo oldValue = table.get(key);
+                ToDo newValue = remapping.apply(id, oldValue);
+                if (newValue != oldValue) {
+                    long stamp = slots.writeLock();
+                    try {
+                        store(key, newValue);
+                    } finally {
+                        slots.unlockWrite(stamp);
+                    }
+                }
+                return newValue;
+            } finally {
+                unlock();
+            }
+        }
+
+        private void store(long key, ToDo value) {
+            int slot = table.slotOf(key);
+            if (table.keys[slot] == key) {
+                if (value == null) {
+                    table.remove(slot);
+                    size--;
+                } else {
+                    table.values[slot] = value;
+                }
+            } else if (value != null) {
+                // at most three quarters full, so every probe ends on a free slot
+                if ((size + 1) * 4L > table.keys.length * 3L) {
+                    table = table.grown();
+                    slot = table.slotOf(key);
+                }
+                table.keys[slot] = key;
+                table.values[slot] = value;
+                size++;
+            }
+        }
+
+        private void clear() {
+            lock();
+            try {
+                long stamp = slots.writeLock();
+                try {
+                    table = new Table(INITIAL_CAPACITY);
+                    size = 0;
+                } finally {
+                    slots.unlockWrite(stamp);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        private List<ToDo> values() {
+            long stamp = slots.readLock();
+            try {
+                List<ToDo> values = new ArrayList<>(size);
+                for (int slot = 0; slot < table.keys.length; slot++) {
+                    if (table.keys[slot] != FREE) {
+                        values.add(table.values[slot]);
+                    }
+                }
+                return values;
+            } finally {
+                slots.unlockRead(stamp);
+            }
+        }
+
+        // The segment's entries at one point in time
+        private List<Entry<String, ToDo>> entries() {
+            long stamp = slots.readLock();
+            try {
+                List<Entry<String, ToDo>> entries = new ArrayList<>(size);
+                for (int slot = 0; slot < table.keys.length; slot++) {
+                    if (table.keys[slot] != FREE) {
+                        entries.add(new SimpleImmutableEntry<>(ToDoIds.render(table.keys[slot]), table.values[slot]));
+                    }
+                }
+                return entries;
+            } finally {
+                slots.unlockRead(stamp);
+            }
+        }
+    }
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    // Ids ToDoIds didn't render
+    private final ConcurrentMap<String, ToDo> legacy = new ConcurrentHashMap<>();
+
+    public LongKeyedToDoMap() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = legacy.size();
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public ToDo get(Object key) {
+        if (!(key instanceof String id)) {
+            return null;
+        }
+        long parsed = ToDoIds.parse(id);
+        return parsed == ToDoIds.NOT_AN_ID ? legacy.get(id) : segmentOf(parsed).get(parsed);
+    }
+
+    @Override
+    public ToDo put(String key, ToDo value) {
+        Objects.requireNonNull(value);
+        ToDo[] previous = new ToDo[1];
+        compute(key, (unused, oldValue) -> {
+            previous[0] = oldValue;
+            return value;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public ToDo putIfAbsent(String key, ToDo value) {
+        Objects.requireNonNull(value);
+        ToDo[] previous = new ToDo[1];
+        compute(key, (unused, oldValue) -> {
+            previous[0] = oldValue;
+            return oldValue == null ? value : oldValue;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public ToDo remove(Object key) {
+        if (!(key instanceof String id)) {
+            return null;
+        }
+        ToDo[] previous = new ToDo[1];
+        compute(id, (unused, oldValue) -> {
+            previous[0] = oldValue;
+            return null;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(key instanceof String id)) {
+            return false;
+        }
+        boolean[] removed = new boolean[1];
+        compute(id, (unused, oldValue) -> {
+            removed[0] = oldValue != null && oldValue.equals(value);
+            return removed[0] ? null : oldValue;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean replace(String key, ToDo oldValue, ToDo newValue) {
+        boolean[] replaced = new boolean[1];
+        compute(key, (unused, value) -> {
+            replaced[0] = value != null && value.equals(oldValue);
+            return replaced[0] ? newValue : value;
+        });
+        return replaced[0];
+    }
+
+    @Override
+    public ToDo replace(String key, ToDo value) {
+        ToDo[] previous = new ToDo[1];
+        compute(key, (unused, oldValue) -> {
+            previous[0] = oldValue;
+            return oldValue == null ? null : value;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public ToDo compute(String key, BiFunction<? super String, ? super ToDo, ? extends ToDo> remapping) {
+        long parsed = ToDoIds.parse(key);
+        return parsed == ToDoIds.NOT_AN_ID ? legacy.compute(key, remapping) : segmentOf(parsed).compute(parsed, key, remapping);
+    }
+
+    @Override
+    public ToDo computeIfPresent(String key, BiFunction<? super String, ? super ToDo, ? extends ToDo> remapping) {
+        return compute(key, (unused, value) -> value == null ? null : remapping.apply(key, value));
+    }
+
+    @Override
+    public ToDo computeIfAbsent(String key, Function<? super String, ? extends ToDo> mapping) {
+        return compute(key, (unused, value) -> value != null ? value : mapping.apply(key));
+    }
+
+    @Override
+    public ToDo merge(String key, ToDo value, BiFunction<? super ToDo, ? super ToDo, ? extends ToDo> remapping) {
+        return compute(key, (unused, oldValue) -> oldValue == null ? value : remapping.apply(oldValue, value));
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        legacy.clear();
+    }
+
+    // Doesn't render the keys, queries scan the values alone
+    @Override
+    public Collection<ToDo> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public int size() {
+                return LongKeyedToDoMap.this.size();
+            }
+
+            @Override
+            public Iterator<ToDo> iterator() {
+                return new Iterator<>() {
+                    private int nextSegment;
+                    private Iterator<ToDo> values = Collections.emptyIterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!values.hasNext() && nextSegment <= segments.length) {
+                            values = nextSegment < segments.length
+                                    ? segments[nextSegment].values().iterator()
+                                    : legacy.values().iterator();
+                            nextSegment++;
+                        }
+                        return values.hasNext();
+                    }
+
+                    @Override
+                    public ToDo next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return values.next();
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, ToDo>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return LongKeyedToDoMap.this.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, ToDo>> iterator() {
+                return new Iterator<>() {
+                    private int nextSegment;
+                    private Iterator<Entry<String, ToDo>> entries = Collections.emptyIterator();
+                    private Entry<String, ToDo> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!entries.hasNext() && nextSegment <= segments.length) {
+                            entries = nextSegment < segments.length
+                                    ? segments[nextSegment].entries().iterator()
+                                    : legacy.entrySet().iterator();
+                            nextSegment++;
+                        }
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, ToDo> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        last = entries.next();
+                        return last;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        LongKeyedToDoMap.this.remove(last.getKey(), last.getValue());
+                        last = null;
+                    }
+                };
+            }
+        };
+    }
+
+    private Segment segmentOf(long key) {
+        return segments[(int) ((key * GOLDEN_RATIO) >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+}
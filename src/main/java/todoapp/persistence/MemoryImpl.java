@@ -1,42 +1,280 @@
 package todoapp.persistence;
 
-import org.springframework.stereotype.Component;
+import todoapp.business.ToDoChange;
+import todoapp.business.ToDoChanges;
+import todoapp.business.ToDoOperation;
+import todoapp.business.ToDoOperationResult;
+import todoapp.business.ToDoPage;
+import todoapp.business.ToDoQuery;
 import todoapp.business.ToDoRepository;
+import todoapp.persistence.exception.ToDoAlreadyExistsException;
+import todoapp.persistence.exception.ToDoConflictException;
 import todoapp.persistence.exception.ToDoNotFoundException;
+import todoapp.persistence.index.DoneStatistics;
+import todoapp.persistence.index.SortedToDoIndex;
+import todoapp.persistence.index.ToDoColumns;
+import todoapp.persistence.index.ToDoCounts;
+import todoapp.persistence.index.TrigramIndex;
 import todoapp.persistence.model.ToDo;
+import todoapp.persistence.wal.LogRecord;
+import todoapp.persistence.wal.SnapshotStore;
+import todoapp.persistence.wal.WriteAheadLog;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
-@Component
 public class MemoryImpl implements ToDoRepository {
 
-    private final Map<String, ToDo> storedToDos = new HashMap<>();
+    // A LongKeyedToDoMap locks per segment on writes and never blocks reads, so
+    // concurrent requests can't corrupt the table or observe it half-resized, and keys
+    // ToDoIds ids as longs instead of hash map nodes.
+    // A HashTrieMap instead gives readers point-in-time snapshots without copying,
+    // an OffHeapToDoMap keeps the records outside the heap and decodes one per read.
+    private final ConcurrentMap<String, ToDo> storedToDos;
+    // name -> id, a name is claimed with putIfAbsent before its to do becomes visible
+    private final ConcurrentMap<String, String> toDoIdsByName = new ConcurrentHashMap<>();
+    private final TrigramIndex nameTrigrams = new TrigramIndex();
+    // Keyed on priority and due date, so stored to dos are only ever replaced inside compute
+    private final SortedToDoIndex sortedToDos = new SortedToDoIndex();
+    private final DoneStatistics doneStatistics = new DoneStatistics();
+    private final ToDoCounts counts = new ToDoCounts();
+    // Optional columnar copy used for unsorted priority/flag scans, null when disabled
+    private final ToDoColumns columns;
+    // Bumped once a mutation is visible, so a version read before a query never
+    // claims changes the query didn't see
+    private final AtomicLong version = new AtomicLong();
+    // Every change is reserved next to its log record and published, to the feed and the
+    // listeners, once it's stored; replayed records aren't announced
+    private final RecentChanges recentChanges;
+    private final ToDoIds ids;
+    // Writers share the read lock and still only contend per entry, deleteAll takes the
+    // write lock so no write lands half in the cleared structures and half in the new ones
+    private final ReadWriteLock mutations = new ReentrantReadWriteLock();
+
+    // Null when the repository only lives in memory
+    private final WriteAheadLog writeAheadLog;
+    // Null when the log is replayed from its start
+    private final SnapshotStore snapshots;
+
+    public static final int DEFAULT_RETAINED_CHANGES = 10_000;
+
+    public MemoryImpl(MemorySettings settings) {
+        this.ids = new ToDoIds(settings.getNode());
+        this.storedToDos = settings.getStorage().get();
+        // retained changes don't survive a restart, starting past the previous run's
+        // sequences (unless it made over a thousand changes per millisecond) resyncs its clients
+        this.recentChanges = new RecentChanges(settings.getRetainedChanges(), System.currentTimeMillis() * 1000);
+        this.columns = settings.isColumnar() ? new ToDoColumns() : null;
+        this.writeAheadLog = settings.getWriteAheadLog();
+        this.snapshots = writeAheadLog == null ? null : settings.getSnapshots();
+        if (writeAheadLog != null) {
+            try {
+                // the newest snapshot plus the log records written after it
+                long snapshotSequence = this.snapshots == null ? 0 : this.snapshots.load(this::restore);
+                writeAheadLog.replay(snapshotSequence, this::apply);
+            } catch (IOException exception) {
+                throw new UncheckedIOException("The write-ahead log in " + writeAheadLog.getDirectory() + " can't be replayed", exception);
+            }
+        }
+    }
 
     @Override
     public List<ToDo> findAll() {
+        if (storedToDos instanceof HashTrieMap<String, ToDo> trie) {
+            return trie.valuesSnapshot();
+        }
         return new ArrayList<>(storedToDos.values());
     }
 
+    @Override
+    public Stream<ToDo> streamAll() {
+        return storedToDos.values().stream();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public ToDoChanges changesSince(long sequence) {
+        return recentChanges.since(sequence);
+    }
+
+    @Override
+    public void addChangeListener(Consumer<ToDoChange> listener) {
+        recentChanges.addListener(listener);
+    }
+
+    @Override
+    public long count() {
+        return storedToDos.size();
+    }
+
+    @Override
+    public List<ToDo> findByNameContaining(String name) {
+        String foldedName = TrigramIndex.fold(name);
+
+        List<ToDo> toDosFound = new ArrayList<>();
+        for (ToDo toDo : candidatesFor(foldedName)) {
+            if (TrigramIndex.fold(toDo.getName()).contains(foldedName)) {
+                toDosFound.add(toDo);
+            }
+        }
+        return toDosFound;
+    }
+
+    @Override
+    public ToDoPage findByQuery(ToDoQuery query) {
+        Set<String> candidateIds = query.getFoldedName() == null ? null : nameTrigrams.candidates(query.getFoldedName());
+        if (candidateIds != null) {
+            Collection<ToDo> candidates = lookUp(candidateIds);
+            return query.isSorted() ? topMatches(candidates, query) : firstMatches(candidates, query);
+        }
+        if (query.isSorted()) {
+            return orderedMatches(query);
+        }
+        if (columns != null && query.getName() == null
+                && (query.getPriority() == null || ToDoColumns.priorityOrdinal(query.getPriority()) != ToDoColumns.OTHER_PRIORITY)) {
+            return columnMatches(query);
+        }
+        return firstMatches(storedToDos.values(), query);
+    }
+
     @Override
     public ToDo save(ToDo toDo) throws IllegalArgumentException {
+        ToDo savedToDo = store(toDo);
+        commit();
+        return savedToDo;
+    }
+
+    @Override
+    public ToDo update(String id, ToDo toDo) throws IllegalArgumentException, ToDoNotFoundException {
+        ToDo updatedToDo = applyUpdate(id, toDo);
+        commit();
+        return updatedToDo;
+    }
+
+    @Override
+    public ToDo markAsDone(String id, LocalDateTime doneDate, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        ToDo doneToDo = applyDone(id, doneDate, expectedVersion);
+        commit();
+        return doneToDo;
+    }
+
+    @Override
+    public ToDo markAsUndone(String id, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        ToDo undoneToDo = applyUndone(id, expectedVersion);
+        commit();
+        return undoneToDo;
+    }
+
+    /**
+     * Applies the operations in order through the same per-entry paths as the single
+     * calls, but makes the whole batch durable with one log commit at the end. A failed
+     * item is reported in its result and doesn't stop the others.
+     */
+    @Override
+    public List<ToDoOperationResult> applyBatch(List<ToDoOperation> operations, LocalDateTime doneDate) {
+        List<ToDoOperationResult> results = new ArrayList<>(operations.size());
+        try {
+            for (ToDoOperation operation : operations) {
+                results.add(applyOperation(operation, doneDate));
+            }
+        } finally {
+            commit();
+        }
+        return results;
+    }
+
+    private ToDoOperationResult applyOperation(ToDoOperation operation, LocalDateTime doneDate) {
+        try {
+            return ToDoOperationResult.applied(switch (operation.getType()) {
+                case ADD -> store(operation.getToDo());
+                case UPDATE -> applyUpdate(operation.getId(), operation.getToDo());
+                case DONE -> applyDone(operation.getId(), doneDate, operation.getVersion());
+                case UNDONE -> applyUndone(operation.getId(), operation.getVersion());
+                case DELETE -> {
+                    remove(operation.getId());
+                    yield null;
+                }
+            });
+        } catch (ToDoNotFoundException exception) {
+            return ToDoOperationResult.notFound(exception.getMessage());
+        } catch (ToDoConflictException exception) {
+            return ToDoOperationResult.conflict(exception.getMessage());
+        } catch (IllegalArgumentException exception) {
+            return ToDoOperationResult.rejected(exception.getMessage());
+        }
+    }
+
+    private ToDo store(ToDo toDo) throws IllegalArgumentException {
         if (toDo == null) {
             throw new IllegalArgumentException("The object can't be null");
         }
+        if (toDo.getName() == null) {
+            throw new IllegalArgumentException("The name parameter can't be null");
+        }
 
-        if (storedToDos.containsKey(toDo.getId())) {
-            storedToDos.replace(toDo.getId(), toDo);
-            return toDo;
-        } else if (toDo.getDueDate() == null) {
-            ToDo newToDo = new ToDo(toDo.getName(), toDo.getPriority());
-            newToDo.setId(UUID.randomUUID().toString());
-            storedToDos.put(newToDo.getId(), newToDo);
-            return newToDo;
-        } else {
-            ToDo newToDo = new ToDo(toDo.getName(), toDo.getPriority(), toDo.getDueDate());
-            newToDo.setId(UUID.randomUUID().toString());
-            storedToDos.put(newToDo.getId(), newToDo);
-            return newToDo;
+        if (toDo.getId() != null) {
+            ToDo replacedToDo = mutate(mutations.readLock(), announcement -> storedToDos.computeIfPresent(toDo.getId(), (id, storedToDo) ->
+                    change(announcement, id, storedToDo, toDo.getName(), toDo.getVersion(), LogRecord.Type.SAVE, unchanged -> toDo)));
+            if (replacedToDo != null) {
+                return replacedToDo;
+            }
         }
+
+        ToDo created = toDo.getDueDate() == null
+                ? new ToDo(toDo.getName(), toDo.getPriority())
+                : new ToDo(toDo.getName(), toDo.getPriority(), toDo.getDueDate());
+        ToDo newToDo = created.withId(ids.next()).withVersion(1);
+        return mutate(mutations.readLock(), announcement -> {
+            claimName(newToDo.getName(), newToDo.getId());
+            return storedToDos.compute(newToDo.getId(), (id, absent) -> {
+                logOrRelease(LogRecord.Type.SAVE, newToDo, newToDo.getName());
+                index(newToDo);
+                announce(announcement, ToDoChange.Type.CREATED, id, newToDo);
+                return newToDo;
+            });
+        });
+    }
+
+    private ToDo applyUpdate(String id, ToDo toDo) throws IllegalArgumentException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        ToDo updatedToDo = mutate(mutations.readLock(), announcement -> storedToDos.computeIfPresent(id, (key, storedToDo) ->
+                change(announcement, key, storedToDo, toDo.getName(), toDo.getVersion(), LogRecord.Type.SAVE, current -> current.withDetailsOf(toDo))));
+        if (updatedToDo == null) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        return updatedToDo;
+    }
+
+    private ToDo applyDone(String id, LocalDateTime doneDate, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        return changeDoneState(id, expectedVersion, LogRecord.Type.DONE, current -> current.doneAt(doneDate));
+    }
+
+    private ToDo applyUndone(String id, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        return changeDoneState(id, expectedVersion, LogRecord.Type.UNDONE, ToDo::undone);
+    }
+
+    @Override
+    public long averageTimeToComplete(String priority) {
+        return doneStatistics.averageTimeToComplete(priority);
     }
 
     @Override
@@ -45,28 +283,327 @@ public class MemoryImpl implements ToDoRepository {
             throw new IllegalArgumentException("The id parameter can't be null");
         }
 
-        return storedToDos.entrySet().stream().filter(toDo -> toDo.getValue().getId().equals(id)).findAny().orElseThrow(
-                () -> new ToDoNotFoundException("The to do with the id" + id + " was not found")
-        ).getValue();
+        ToDo toDoFound = storedToDos.get(id);
+        if (toDoFound == null) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        return toDoFound;
     }
 
     @Override
     public void deleteById(String id) throws IllegalArgumentException, ToDoNotFoundException{
+        remove(id);
+        commit();
+    }
+
+    private void remove(String id) throws IllegalArgumentException, ToDoNotFoundException {
         if (id == null) {
             throw new IllegalArgumentException("The id parameter can't be null");
         }
 
-        ToDo toDoFound = storedToDos.entrySet().stream().filter(toDo -> toDo.getValue().getId().equals(id)).findAny().orElseThrow(
-                () -> new ToDoNotFoundException("The to do with the id" + id + " was not found")
-        ).getValue();
-
-        storedToDos.remove(id, toDoFound);
+        // logged inside the entry's compute, so a failed append leaves the to do in place
+        ToDo[] deletedToDo = new ToDo[1];
+        mutate(mutations.readLock(), announcement -> storedToDos.computeIfPresent(id, (key, storedToDo) -> {
+            log(LogRecord.Type.DELETE, key);
+            toDoIdsByName.remove(storedToDo.getName(), key);
+            unindex(storedToDo);
+            announce(announcement, ToDoChange.Type.DELETED, key, null);
+            deletedToDo[0] = storedToDo;
+            return null;
+        }));
+        if (deletedToDo[0] == null) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
     }
 
     @Override
     public void deleteAll() {
+        mutate(mutations.writeLock(), announcement -> {
+            log(LogRecord.Type.DELETE_ALL, (String) null);
+            clearState();
+            announce(announcement, ToDoChange.Type.CLEARED, null, null);
+            return null;
+        });
+        commit();
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the log segments it supersedes.
+     * Writers keep going: every to do is copied under its own entry lock, and whatever is
+     * logged after the snapshot's sequence is replayed over it, which is idempotent since
+     * records are post-images. The sequence is read under the write lock, once no writer is
+     * between its log append and storing its to do, so every record up to it is in the walk.
+     */
+    public long snapshot() throws IOException {
+        if (snapshots == null) {
+            throw new IllegalStateException("Snapshots need the write-ahead log persistence mode");
+        }
+
+        long sequence = mutate(mutations.writeLock(), announcement -> writeAheadLog.getAppendedSequence());
+        snapshots.write(sequence, writer -> {
+            for (String id : storedToDos.keySet()) {
+                storedToDos.computeIfPresent(id, (key, toDo) -> {
+                    writer.accept(toDo);
+                    return toDo;
+                });
+            }
+        });
+        writeAheadLog.deleteSegmentsUpTo(sequence);
+        return sequence;
+    }
+
+    private void clearState() {
         storedToDos.clear();
+        toDoIdsByName.clear();
+        nameTrigrams.clear();
+        sortedToDos.clear();
+        doneStatistics.clear();
+        counts.clear();
+        if (columns != null) {
+            columns.clear();
+        }
+    }
+
+    // Rebuilds state from a logged post-image, the log already guarantees unique names
+    private void apply(LogRecord record) {
+        switch (record.type()) {
+            case SAVE, DONE, UNDONE -> restore(record.toDo());
+            case DELETE -> {
+                ToDo deletedToDo = storedToDos.remove(record.id());
+                if (deletedToDo != null) {
+                    toDoIdsByName.remove(deletedToDo.getName(), record.id());
+                    unindex(deletedToDo);
+                }
+            }
+            case DELETE_ALL -> clearState();
+        }
+    }
+
+    private void restore(ToDo toDo) {
+        storedToDos.compute(toDo.getId(), (id, storedToDo) -> {
+            if (storedToDo != null) {
+                toDoIdsByName.remove(storedToDo.getName(), id);
+                unindex(storedToDo);
+            }
+            toDoIdsByName.put(toDo.getName(), id);
+            index(toDo);
+            return toDo;
+        });
+    }
+
+    private void index(ToDo toDo) {
+        nameTrigrams.add(toDo.getId(), toDo.getName());
+        sortedToDos.add(toDo);
+        doneStatistics.add(toDo);
+        counts.add(toDo);
+        if (columns != null) {
+            columns.put(toDo);
+        }
+    }
+
+    private void unindex(ToDo toDo) {
+        nameTrigrams.remove(toDo.getId(), toDo.getName());
+        sortedToDos.remove(toDo);
+        doneStatistics.remove(toDo);
+        counts.remove(toDo);
+        if (columns != null) {
+            columns.remove(toDo.getId());
+        }
+    }
+
+    // Runs inside the entry's compute, so changes to the same to do are serialized with
+    // their index maintenance and log order, while readers keep getting the stored value
+    // without locking. The transition returns a changed copy of the stored to do, which is
+    // published by returning it. A stale version, a taken new name or a failed log append
+    // aborts before anything changes.
+    private ToDo change(Announcement announcement, String id, ToDo storedToDo, String newName, long expectedVersion, LogRecord.Type type, UnaryOperator<ToDo> transition) {
+        if (expectedVersion != ToDo.ANY_VERSION && expectedVersion != storedToDo.getVersion()) {
+            throw new ToDoConflictException("The to do with the id" + id + " is at version " + storedToDo.getVersion()
+                    + ", not " + expectedVersion);
+        }
+        String oldName = storedToDo.getName();
+        boolean renamed = !oldName.equals(newName);
+        if (renamed) {
+            claimName(newName, id);
+        }
+        ToDo changedToDo = transition.apply(storedToDo).withVersion(storedToDo.getVersion() + 1);
+        logOrRelease(type, changedToDo, renamed ? newName : null);
+        unindex(storedToDo);
+        if (renamed) {
+            toDoIdsByName.remove(oldName, id);
+        }
+        index(changedToDo);
+        announce(announcement, switch (type) {
+            case DONE -> ToDoChange.Type.DONE;
+            case UNDONE -> ToDoChange.Type.UNDONE;
+            default -> ToDoChange.Type.UPDATED;
+        }, id, changedToDo);
+        return changedToDo;
+    }
+
+    // Stored to dos are replaced rather than changed, so the change can share the new value.
+    // Reserves the sequence, so it's the last step of a write, mutate publishes the change.
+    private void announce(Announcement announcement, ToDoChange.Type type, String id, ToDo toDo) {
+        announcement.change = recentChanges.reserve(type, id, toDo);
+    }
+
+    private void log(LogRecord.Type type, ToDo toDo) {
+        if (writeAheadLog != null) {
+            writeAheadLog.append(type, toDo);
+        }
+    }
+
+    // Logs before anything else changes, a claimed name is given back if the append fails
+    private void logOrRelease(LogRecord.Type type, ToDo toDo, String claimedName) {
+        try {
+            log(type, toDo);
+        } catch (RuntimeException exception) {
+            if (claimedName != null) {
+                toDoIdsByName.remove(claimedName, toDo.getId());
+            }
+            throw exception;
+        }
+    }
+
+    private void log(LogRecord.Type type, String id) {
+        if (writeAheadLog != null) {
+            writeAheadLog.append(type, id);
+        }
+    }
+
+    private void commit() {
+        version.incrementAndGet();
+        if (writeAheadLog != null) {
+            writeAheadLog.commit();
+        }
+    }
+
+    private ToDo changeDoneState(String id, long expectedVersion, LogRecord.Type type, UnaryOperator<ToDo> transition) throws ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        ToDo changedToDo = mutate(mutations.readLock(), announcement -> storedToDos.computeIfPresent(id, (key, storedToDo) ->
+                change(announcement, key, storedToDo, storedToDo.getName(), expectedVersion, type, transition)));
+        if (changedToDo == null) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        return changedToDo;
     }
 
+    private Collection<ToDo> candidatesFor(String foldedName) {
+        Set<String> candidateIds = foldedName == null ? null : nameTrigrams.candidates(foldedName);
+        return candidateIds == null ? storedToDos.values() : lookUp(candidateIds);
+    }
+
+    private ToDoPage firstMatches(Collection<ToDo> candidates, ToDoQuery query) {
+        List<ToDo> page = new ArrayList<>(query.getLimit());
+        long matches = 0;
+        long scanned = 0;
+        for (ToDo toDo : candidates) {
+            scanned++;
+            if (query.matches(toDo)) {
+                if (matches >= query.getOffset() && page.size() < query.getLimit()) {
+                    page.add(toDo);
+                }
+                matches++;
+            }
+        }
+        return new ToDoPage(page, matches, scanned);
+    }
+
+    // Walks the sorted index, only the filtered priority's rank, and stops at the end of the
+    // page unless the matches have to be counted along the way
+    private ToDoPage orderedMatches(ToDoQuery query) {
+        boolean counted = query.getName() == null && ToDoCounts.counts(query.getPriority());
+        List<ToDo> page = new ArrayList<>(query.getLimit());
+        long matches = 0;
+        long scanned = 0;
+        Iterator<String> ids = sortedToDos.idsInOrder(query.getPriority(), query.getPriorityOrder(), query.getDateOrder()).iterator();
+        while (ids.hasNext() && (!counted || page.size() < query.getLimit())) {
+            scanned++;
+            ToDo toDo = storedToDos.get(ids.next());
+            if (toDo != null && query.matches(toDo)) {
+                if (matches >= query.getOffset() && page.size() < query.getLimit()) {
+                    page.add(toDo);
+                }
+                matches++;
+            }
+        }
+        return new ToDoPage(page, counted ? counts.count(query.getPriority(), query.getDoneUndoneFlag()) : matches, scanned);
+    }
 
+    private ToDoPage columnMatches(ToDoQuery query) {
+        Byte priority = query.getPriority() == null ? null : ToDoColumns.priorityOrdinal(query.getPriority());
+        List<String> pageIds = new ArrayList<>(query.getLimit());
+        long matches = columns.scan(priority, query.getDoneUndoneFlag(), query.getOffset(), query.getLimit(), pageIds);
+        return new ToDoPage(lookUp(pageIds), matches, columns.size());
+    }
+
+    // Keeps only the best offset + limit matches in a max-heap instead of sorting every match
+    private ToDoPage topMatches(Collection<ToDo> candidates, ToDoQuery query) {
+        int pageEnd = (int) Math.min(Integer.MAX_VALUE, (long) query.getOffset() + query.getLimit());
+        Comparator<ToDo> order = query.comparator();
+        PriorityQueue<ToDo> best = new PriorityQueue<>(order.reversed());
+        long matches = 0;
+        for (ToDo toDo : candidates) {
+            if (!query.matches(toDo)) {
+                continue;
+            }
+            matches++;
+            if (best.size() < pageEnd) {
+                best.add(toDo);
+            } else if (!best.isEmpty() && order.compare(toDo, best.peek()) < 0) {
+                best.poll();
+                best.add(toDo);
+            }
+        }
+
+        List<ToDo> sorted = new ArrayList<>(best);
+        sorted.sort(order);
+        List<ToDo> page = sorted.size() > query.getOffset() ? sorted.subList(query.getOffset(), sorted.size()) : List.of();
+        return new ToDoPage(new ArrayList<>(page), matches, candidates.size());
+    }
+
+    private List<ToDo> lookUp(Collection<String> ids) {
+        List<ToDo> toDos = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            ToDo toDo = storedToDos.get(id);
+            if (toDo != null) {
+                toDos.add(toDo);
+            }
+        }
+        return toDos;
+    }
+
+    // The change a write reserved, published once the write's compute has returned
+    private static final class Announcement {
+
+        private ToDoChange change;
+    }
+
+    // Runs a write under the lock, then publishes the change it announced: the write is
+    // stored by then, so a reader handed the change's sequence finds it
+    private <T> T mutate(Lock lock, Function<Announcement, T> mutation) {
+        Announcement announcement = new Announcement();
+        try {
+            lock.lock();
+            try {
+                return mutation.apply(announcement);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            if (announcement.change != null) {
+                recentChanges.publish(announcement.change);
+            }
+        }
+    }
+
+    private void claimName(String name, String id) {
+        String ownerId = toDoIdsByName.putIfAbsent(name, id);
+        if (ownerId != null && !ownerId.equals(id)) {
+            throw new ToDoAlreadyExistsException("The To Do with the name " + name + "is already created ");
+        }
+    }
 }
@@ -0,0 +1,36 @@
+package todoapp.persistence;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import todoapp.persistence.offheap.OffHeapToDoMap;
+import todoapp.persistence.wal.SnapshotStore;
+import todoapp.persistence.wal.WriteAheadLog;
+
+@Configuration
+@ConditionalOnProperty(name = "todoapp.repository.backend", havingValue = "memory", matchIfMissing = true)
+public class MemoryRepositoryConfiguration {
+
+    @Bean
+    public MemoryImpl memoryImpl(@Value("${todoapp.repository.columnar:false}") boolean columnar,
+                                 @Value("${todoapp.repository.hash-trie:false}") boolean hashTrie,
+                                 @Value("${todoapp.repository.off-heap:false}") boolean offHeap,
+                                 @Value("${todoapp.ids.node:0}") int node,
+                                 @Value("${todoapp.changes.retained:10000}") int retainedChanges,
+                                 ObjectProvider<WriteAheadLog> writeAheadLog, ObjectProvider<SnapshotStore> snapshots) {
+        MemorySettings settings = MemorySettings.defaults()
+                .withColumnar(columnar)
+                .withNode(node)
+                .withRetainedChanges(retainedChanges)
+                .withWriteAheadLog(writeAheadLog.getIfAvailable())
+                .withSnapshots(snapshots.getIfAvailable());
+        if (offHeap) {
+            settings = settings.withStorage(OffHeapToDoMap::new);
+        } else if (hashTrie) {
+            settings = settings.withStorage(HashTrieMap::new);
+        }
+        return new MemoryImpl(settings);
+    }
+}
@@ -0,0 +1,88 @@
+package todoapp.persistence;
+
+import todoapp.persistence.model.ToDo;
+import todoapp.persistence.wal.SnapshotStore;
+import todoapp.persistence.wal.WriteAheadLog;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * What a MemoryImpl is built with. The defaults are a repository that only lives in
+ * memory, over a LongKeyedToDoMap, without columns, with ids of node 0; every with method
+ * returns a copy with one setting changed.
+ */
+public final class MemorySettings {
+
+    private final boolean columnar;
+    // Called once per repository, the map must be empty and the repository owns it
+    private final Supplier<ConcurrentMap<String, ToDo>> storage;
+    private final int node;
+    // Null when the repository only lives in memory
+    private final WriteAheadLog writeAheadLog;
+    // Null when the log is replayed from its start, ignored without a log
+    private final SnapshotStore snapshots;
+    private final int retainedChanges;
+
+    private MemorySettings(boolean columnar, Supplier<ConcurrentMap<String, ToDo>> storage, int node,
+                           WriteAheadLog writeAheadLog, SnapshotStore snapshots, int retainedChanges) {
+        this.columnar = columnar;
+        this.storage = storage;
+        this.node = node;
+        this.writeAheadLog = writeAheadLog;
+        this.snapshots = snapshots;
+        this.retainedChanges = retainedChanges;
+    }
+
+    public static MemorySettings defaults() {
+        return new MemorySettings(false, LongKeyedToDoMap::new, 0, null, null, MemoryImpl.DEFAULT_RETAINED_CHANGES);
+    }
+
+    public MemorySettings withColumnar(boolean columnar) {
+        return new MemorySettings(columnar, storage, node, writeAheadLog, snapshots, retainedChanges);
+    }
+
+    public MemorySettings withStorage(Supplier<ConcurrentMap<String, ToDo>> storage) {
+        return new MemorySettings(columnar, storage, node, writeAheadLog, snapshots, retainedChanges);
+    }
+
+    public MemorySettings withNode(int node) {
+        return new MemorySettings(columnar, storage, node, writeAheadLog, snapshots, retainedChanges);
+    }
+
+    public MemorySettings withWriteAheadLog(WriteAheadLog writeAheadLog) {
+        return new MemorySettings(columnar, storage, node, writeAheadLog, snapshots, retainedChanges);
+    }
+
+    public MemorySettings withSnapshots(SnapshotStore snapshots) {
+        return new MemorySettings(columnar, storage, node, writeAheadLog, snapshots, retainedChanges);
+    }
+
+    public MemorySettings withRetainedChanges(int retainedChanges) {
+        return new MemorySettings(columnar, storage, node, writeAheadLog, snapshots, retainedChanges);
+    }
+
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    public Supplier<ConcurrentMap<String, ToDo>> getStorage() {
+        return storage;
+    }
+
+    public int getNode() {
+        return node;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    public SnapshotStore getSnapshots() {
+        return snapshots;
+    }
+
+    public int getRetainedChanges() {
+        return retainedChanges;
+    }
+}
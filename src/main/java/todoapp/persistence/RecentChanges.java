@@ -0,0 +1,116 @@
+package todoapp.persistence;
+
+import todoapp.business.ToDoChange;
+import todoapp.business.ToDoChanges;
+import todoapp.persistence.model.ToDo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Ring buffer of the last capacity changes, slot sequence % capacity, and the listeners
+ * told about every change.
+ * <p>
+ * A writer reserves its change's sequence while it holds the to do, and publishes the
+ * change once the write is visible to readers. Published changes become visible in
+ * sequence order: whoever publishes moves the visible sequence over the published run
+ * that follows it, stores those changes in the ring and tells the listeners, so a reader
+ * never gets a sequence whose change it couldn't read yet, and listeners get every change
+ * once, in order.
+ */
+public class RecentChanges {
+
+    private final AtomicReferenceArray<ToDoChange> ring;
+    private final AtomicLong reservedSequence;
+    private final AtomicLong visibleSequence;
+    // Published changes waiting for an earlier sequence to be published
+    private final ConcurrentSkipListMap<Long, ToDoChange> published = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private final List<Consumer<ToDoChange>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Sequences start after firstSequence, which should be above any sequence handed out
+     * by an earlier run so clients of that run are told to resync.
+     */
+    public RecentChanges(int capacity, long firstSequence) {
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.reservedSequence = new AtomicLong(firstSequence);
+        this.visibleSequence = new AtomicLong(firstSequence);
+    }
+
+    public void addListener(Consumer<ToDoChange> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * For a writer that publishes its change right away, since its write is already visible.
+     */
+    public ToDoChange record(ToDoChange.Type type, String id, ToDo toDo) {
+        ToDoChange change = reserve(type, id, toDo);
+        publish(change);
+        return change;
+    }
+
+    /**
+     * Takes the change's sequence. The change must be published once the write is visible,
+     * every later change waits for it until then.
+     */
+    public ToDoChange reserve(ToDoChange.Type type, String id, ToDo toDo) {
+        return new ToDoChange(reservedSequence.incrementAndGet(), type, id, toDo);
+    }
+
+    public void publish(ToDoChange change) {
+        published.put(change.getSequence(), change);
+        while (nextIsPublished() && delivering.compareAndSet(false, true)) {
+            try {
+                Map.Entry<Long, ToDoChange> next;
+                while ((next = published.firstEntry()) != null && next.getKey() == visibleSequence.get() + 1) {
+                    published.remove(next.getKey());
+                    ToDoChange visible = next.getValue();
+                    ring.set(slotOf(visible.getSequence()), visible);
+                    visibleSequence.set(visible.getSequence());
+                    for (Consumer<ToDoChange> listener : listeners) {
+                        listener.accept(visible);
+                    }
+                }
+            } finally {
+                delivering.set(false);
+            }
+        }
+    }
+
+    public ToDoChanges since(long sequence) {
+        long last = visibleSequence.get();
+        if (sequence > last || sequence < last - ring.length()) {
+            return ToDoChanges.resync(last);
+        }
+
+        List<ToDoChange> changes = new ArrayList<>((int) (last - sequence));
+        for (long next = sequence + 1; next <= last; next++) {
+            ToDoChange change = ring.get(slotOf(next));
+            if (change == null || change.getSequence() != next) {
+                // overwritten by a later lap while we were reading
+                return ToDoChanges.resync(visibleSequence.get());
+            }
+            changes.add(change);
+        }
+        return ToDoChanges.of(last, changes);
+    }
+
+    // Checked again after delivering, a change published meanwhile may have found the flag set
+    private boolean nextIsPublished() {
+        Map.Entry<Long, ToDoChange> first = published.firstEntry();
+        return first != null && first.getKey() == visibleSequence.get() + 1;
+    }
+
+    private int slotOf(long sequence) {
+        return (int) Math.floorMod(sequence, (long) ring.length());
+    }
+}
@@ -0,0 +1,81 @@
+package todoapp.persistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit ids: 41 bits of milliseconds since 2023-01-01, 13 bits of sequence
+ * within the millisecond and 10 bits of node. An id is the larger of the current time and
+ * the previous id plus one sequence step, so ids of one node only ever grow, even when
+ * the clock steps back or a millisecond runs out of sequence numbers and borrows the next.
+ * <p>
+ * Ids are rendered as 13 zero-padded base 36 digits, so comparing them as strings orders
+ * them by creation.
+ */
+public class ToDoIds {
+
+    public static final int MAX_NODE = (1 << 10) - 1;
+    // What parse() returns for a string no ToDoIds rendered, such as a UUID from before them
+    public static final long NOT_AN_ID = -1;
+
+    private static final long EPOCH_MILLIS = 1_672_531_200_000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 13;
+    private static final long SEQUENCE_STEP = 1L << NODE_BITS;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    // Digits of Long.MAX_VALUE in base 36
+    private static final int RENDERED_LENGTH = 13;
+
+    private final long node;
+    private final AtomicLong lastId;
+
+    public ToDoIds(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("The node must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.lastId = new AtomicLong(node);
+    }
+
+    public long nextId() {
+        long earliest = ((System.currentTimeMillis() - EPOCH_MILLIS) << TIMESTAMP_SHIFT) | node;
+        return lastId.accumulateAndGet(earliest, (last, now) -> Math.max(last + SEQUENCE_STEP, now));
+    }
+
+    public String next() {
+        return render(nextId());
+    }
+
+    public static String render(long id) {
+        char[] digits = new char[RENDERED_LENGTH];
+        for (int i = RENDERED_LENGTH - 1; i >= 0; i--) {
+            digits[i] = Character.forDigit((int) (id % Character.MAX_RADIX), Character.MAX_RADIX);
+            id /= Character.MAX_RADIX;
+        }
+        return new String(digits);
+    }
+
+    // Only the lowercase, zero-padded form render() writes, so every id has one string
+    public static long parse(String rendered) {
+        if (rendered.length() != RENDERED_LENGTH) {
+            return NOT_AN_ID;
+        }
+        long id = 0;
+        for (int i = 0; i < RENDERED_LENGTH; i++) {
+            char c = rendered.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'z') {
+                digit = c - 'a' + 10;
+            } else {
+                return NOT_AN_ID;
+            }
+            if (id > (Long.MAX_VALUE - digit) / Character.MAX_RADIX) {
+                return NOT_AN_ID;
+            }
+            id = id * Character.MAX_RADIX + digit;
+        }
+        // nextId() never hands out 0
+        return id == 0 ? NOT_AN_ID : id;
+    }
+}
@@ -0,0 +1,363 @@
+package todoapp.persistence.btree;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A B+tree of unsigned lexicographically ordered byte keys in a PageFile, rooted at the
+ * page kept in one of the file's header slots. A leaf that a removal leaves under a
+ * quarter full is merged into its sibling when both fit one page, and a node left empty
+ * is unlinked; either way the page goes back to the file's free list, and an inner root
+ * left with one child hands the tree down to it. Inner nodes aren't merged, with
+ * hundreds of children each there are few of them.
+ * <p>
+ * Not thread-safe: callers serialize writers against each other and against readers.
+ */
+public class BPlusTree {
+
+    /**
+     * Called with each visited entry, returning false stops the scan.
+     */
+    public interface Visitor {
+        boolean visit(byte[] key, byte[] value) throws IOException;
+    }
+
+    // Splitting a full page at its middle byte must leave two pages that fit
+    public static final int MAX_ENTRY_SIZE = (PageFile.PAGE_SIZE - Node.HEADER_SIZE) / 4;
+
+    private record Split(byte[] separator, int rightPage) {
+    }
+
+    private final PageFile file;
+    private final PageCache cache;
+    private final int rootSlot;
+    private byte[] replaced;
+    private byte[] removed;
+
+    BPlusTree(PageFile file, PageCache cache, int rootSlot) throws IOException {
+        this.file = file;
+        this.cache = cache;
+        this.rootSlot = rootSlot;
+        if (file.headerSlot(rootSlot) == Node.NONE) {
+            reset();
+        }
+    }
+
+    // Starts over with an empty root, after the file was reset
+    void reset() throws IOException {
+        Node root = new Node(file.allocate(), true);
+        cache.write(root);
+        file.setHeaderSlot(rootSlot, root.pageNumber);
+    }
+
+    public byte[] get(byte[] key) throws IOException {
+        Node leaf = leafFor(key);
+        int index = lowerBound(leaf.keys, key);
+        return index < leaf.keys.size() && Arrays.compareUnsigned(leaf.keys.get(index), key) == 0 ? leaf.values.get(index) : null;
+    }
+
+    /**
+     * Stores the value under key and returns the value it replaced, if any.
+     */
+    public byte[] put(byte[] key, byte[] value) throws IOException {
+        if (2 * Short.BYTES + key.length + value.length > MAX_ENTRY_SIZE) {
+            throw new IllegalArgumentException("The entry of " + (key.length + value.length) + " bytes doesn't fit a page");
+        }
+        replaced = null;
+        int rootPage = file.headerSlot(rootSlot);
+        Split split = insert(rootPage, key, value);
+        if (split != null) {
+            Node root = new Node(file.allocate(), false);
+            root.children.add(rootPage);
+            root.keys.add(split.separator());
+            root.children.add(split.rightPage());
+            cache.write(root);
+            file.setHeaderSlot(rootSlot, root.pageNumber);
+        }
+        return replaced;
+    }
+
+    /**
+     * Removes key and returns the value it had, if any.
+     */
+    public byte[] remove(byte[] key) throws IOException {
+        removed = null;
+        delete(cache.get(file.headerSlot(rootSlot)), key, true);
+        Node root = cache.get(file.headerSlot(rootSlot));
+        while (!root.leaf && root.children.size() == 1) {
+            file.setHeaderSlot(rootSlot, root.children.get(0));
+            release(root);
+            root = cache.get(file.headerSlot(rootSlot));
+        }
+        return removed;
+    }
+
+    /**
+     * Visits the entries with a key at or above from in ascending key order.
+     */
+    public void ascending(byte[] from, Visitor visitor) throws IOException {
+        Node leaf = leafFor(from);
+        int index = lowerBound(leaf.keys, from);
+        while (true) {
+            for (; index < leaf.keys.size(); index++) {
+                if (!visitor.visit(leaf.keys.get(index), leaf.values.get(index))) {
+                    return;
+                }
+            }
+            if (leaf.next == Node.NONE) {
+                return;
+            }
+            leaf = cache.get(leaf.next);
+            index = 0;
+        }
+    }
+
+    /**
+     * Visits the entries at or above from in the leaf that would hold from, and returns the
+     * first key of the next leaf, or null after the last one. A cursor that lets writers in
+     * between leaves goes on from that key, the next leaf's page may be freed by then.
+     */
+    public byte[] ascendingLeaf(byte[] from, Visitor visitor) throws IOException {
+        Node leaf = leafFor(from);
+        for (int index = lowerBound(leaf.keys, from); index < leaf.keys.size(); index++) {
+            if (!visitor.visit(leaf.keys.get(index), leaf.values.get(index))) {
+                return null;
+            }
+        }
+        return leaf.next == Node.NONE ? null : cache.get(leaf.next).keys.get(0);
+    }
+
+    /**
+     * Visits the entries with a key at or below from in descending key order.
+     */
+    public void descending(byte[] from, Visitor visitor) throws IOException {
+        Node leaf = leafFor(from);
+        int index = upperBound(leaf.keys, from) - 1;
+        while (true) {
+            for (; index >= 0; index--) {
+                if (!visitor.visit(leaf.keys.get(index), leaf.values.get(index))) {
+                    return;
+                }
+            }
+            if (leaf.previous == Node.NONE) {
+                return;
+            }
+            leaf = cache.get(leaf.previous);
+            index = leaf.keys.size() - 1;
+        }
+    }
+
+    private Node leafFor(byte[] key) throws IOException {
+        Node node = cache.get(file.headerSlot(rootSlot));
+        while (!node.leaf) {
+            node = cache.get(node.children.get(upperBound(node.keys, key)));
+        }
+        return node;
+    }
+
+    private Split insert(int page, byte[] key, byte[] value) throws IOException {
+        Node node = cache.get(page);
+        if (node.leaf) {
+            int index = lowerBound(node.keys, key);
+            if (index < node.keys.size() && Arrays.compareUnsigned(node.keys.get(index), key) == 0) {
+                replaced = node.values.set(index, value);
+            } else {
+                node.keys.add(index, key);
+                node.values.add(index, value);
+            }
+            return node.encodedSize() > PageFile.PAGE_SIZE ? splitLeaf(node) : written(node);
+        }
+
+        int child = upperBound(node.keys, key);
+        Split split = insert(node.children.get(child), key, value);
+        if (split == null) {
+            return null;
+        }
+        node.keys.add(child, split.separator());
+        node.children.add(child + 1, split.rightPage());
+        return node.encodedSize() > PageFile.PAGE_SIZE ? splitInner(node) : written(node);
+    }
+
+    // True when the node was left empty and freed, the root never is
+    private boolean delete(Node node, byte[] key, boolean root) throws IOException {
+        if (node.leaf) {
+            int index = lowerBound(node.keys, key);
+            if (index == node.keys.size() || Arrays.compareUnsigned(node.keys.get(index), key) != 0) {
+                return false;
+            }
+            node.keys.remove(index);
+            removed = node.values.remove(index);
+            if (node.keys.isEmpty() && !root) {
+                unlink(node);
+                release(node);
+                return true;
+            }
+            cache.write(node);
+            return false;
+        }
+
+        int child = upperBound(node.keys, key);
+        if (delete(cache.get(node.children.get(child)), key, false)) {
+            node.children.remove(child);
+            if (!node.keys.isEmpty()) {
+                node.keys.remove(Math.max(child - 1, 0));
+            }
+            // an inner root keeps two children until remove hands it down to the last one
+            if (node.children.isEmpty()) {
+                release(node);
+                return true;
+            }
+        } else if (removed == null || !mergedLeaves(node, child)) {
+            return false;
+        }
+        cache.write(node);
+        return false;
+    }
+
+    // Merges the parent's child leaf, when it's under a quarter full, with a sibling that fits
+    private boolean mergedLeaves(Node parent, int child) throws IOException {
+        Node changed = cache.get(parent.children.get(child));
+        if (!changed.leaf || changed.encodedSize() > PageFile.PAGE_SIZE / 4) {
+            return false;
+        }
+        if (child > 0) {
+            Node left = cache.get(parent.children.get(child - 1));
+            if (fitTogether(left, changed)) {
+                merge(parent, child - 1, left, changed);
+                return true;
+            }
+        }
+        if (child + 1 < parent.children.size()) {
+            Node right = cache.get(parent.children.get(child + 1));
+            if (fitTogether(changed, right)) {
+                merge(parent, child, changed, right);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean fitTogether(Node left, Node right) {
+        return left.encodedSize() + right.encodedSize() - Node.HEADER_SIZE <= PageFile.PAGE_SIZE;
+    }
+
+    // Moves right's entries to the end of left, its sibling at leftIndex, and frees right
+    private void merge(Node parent, int leftIndex, Node left, Node right) throws IOException {
+        left.keys.addAll(right.keys);
+        left.values.addAll(right.values);
+        left.next = right.next;
+        if (right.next != Node.NONE) {
+            Node following = cache.get(right.next);
+            following.previous = left.pageNumber;
+            cache.write(following);
+        }
+        cache.write(left);
+        parent.keys.remove(leftIndex);
+        parent.children.remove(leftIndex + 1);
+        release(right);
+    }
+
+    private void unlink(Node leaf) throws IOException {
+        if (leaf.previous != Node.NONE) {
+            Node previous = cache.get(leaf.previous);
+            previous.next = leaf.next;
+            cache.write(previous);
+        }
+        if (leaf.next != Node.NONE) {
+            Node following = cache.get(leaf.next);
+            following.previous = leaf.previous;
+            cache.write(following);
+        }
+    }
+
+    private void release(Node node) throws IOException {
+        cache.forget(node.pageNumber);
+        file.free(node.pageNumber);
+    }
+
+    private Split written(Node node) throws IOException {
+        cache.write(node);
+        return null;
+    }
+
+    private Split splitLeaf(Node node) throws IOException {
+        int middle = middleOf(node);
+        Node right = new Node(file.allocate(), true);
+        moveTail(node.keys, right.keys, middle);
+        moveTail(node.values, right.values, middle);
+        right.previous = node.pageNumber;
+        right.next = node.next;
+        if (node.next != Node.NONE) {
+            Node following = cache.get(node.next);
+            following.previous = right.pageNumber;
+            cache.write(following);
+        }
+        node.next = right.pageNumber;
+        cache.write(right);
+        cache.write(node);
+        return new Split(right.keys.get(0), right.pageNumber);
+    }
+
+    // The separator moves up, the keys right of it and their children move to the new node
+    private Split splitInner(Node node) throws IOException {
+        int middle = middleOf(node);
+        Node right = new Node(file.allocate(), false);
+        byte[] separator = node.keys.get(middle);
+        moveTail(node.keys, right.keys, middle + 1);
+        moveTail(node.children, right.children, middle + 1);
+        node.keys.remove(middle);
+        cache.write(right);
+        cache.write(node);
+        return new Split(separator, right.pageNumber);
+    }
+
+    // First key index at which half of the node's bytes are behind us
+    private static int middleOf(Node node) {
+        int half = node.encodedSize() / 2;
+        int size = Node.HEADER_SIZE;
+        for (int i = 0; i < node.keys.size() - 1; i++) {
+            size += Short.BYTES + node.keys.get(i).length + (node.leaf ? Short.BYTES + node.values.get(i).length : Integer.BYTES);
+            if (size >= half) {
+                return Math.max(i, 1);
+            }
+        }
+        return node.keys.size() - 1;
+    }
+
+    private static <T> void moveTail(List<T> from, List<T> to, int start) {
+        List<T> tail = from.subList(start, from.size());
+        to.addAll(tail);
+        tail.clear();
+    }
+
+    // First index whose key is at or above key
+    private static int lowerBound(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(keys.get(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // First index whose key is above key
+    private static int upperBound(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(keys.get(middle), key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,23 @@
+package todoapp.persistence.btree;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import todoapp.persistence.ToDoIds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(name = "todoapp.repository.backend", havingValue = "mapped")
+public class MappedRepositoryConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public MappedToDoRepository mappedToDoRepository(@Value("${todoapp.mapped.file:data/todos.db}") Path file,
+                                                     @Value("${todoapp.mapped.cache-pages:1024}") int cachePages,
+                                                     @Value("${todoapp.changes.retained:10000}") int retainedChanges,
+                                                     @Value("${todoapp.ids.node:0}") int node) throws IOException {
+        return new MappedToDoRepository(file, cachePages, new ToDoIds(node), retainedChanges);
+    }
+}
@@ -0,0 +1,537 @@
+package todoapp.persistence.btree;
+
+import todoapp.business.ToDoChange;
+import todoapp.business.ToDoChanges;
+import todoapp.business.ToDoOperation;
+import todoapp.business.ToDoOperationResult;
+import todoapp.business.ToDoPage;
+import todoapp.business.ToDoQuery;
+import todoapp.business.ToDoRepository;
+import todoapp.persistence.RecentChanges;
+import todoapp.persistence.ToDoIds;
+import todoapp.persistence.exception.ToDoAlreadyExistsException;
+import todoapp.persistence.exception.ToDoConflictException;
+import todoapp.persistence.exception.ToDoNotFoundException;
+import todoapp.persistence.index.DoneStatistics;
+import todoapp.persistence.index.TrigramIndex;
+import todoapp.persistence.model.ToDo;
+import todoapp.persistence.wal.ToDoCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * ToDoRepository whose to dos live in a memory-mapped page file instead of on the heap.
+ * Three B+trees share the file: id -> ToDoCodec record, name -> id for the unique names,
+ * and (due date, id) -> (priority rank, done flag) for the sorted queries, which can skip
+ * to dos without reading their record. Only the page cache, the done statistics and the
+ * change feed are kept on the heap.
+ * <p>
+ * Readers share a read lock and writers take the write lock. Changes are in the mapping
+ * as soon as the write returns, so they survive the process but not the machine until
+ * the mapping is forced, which close does. A crash in the middle of a split can leave
+ * the file inconsistent; there is no log to repair it from.
+ */
+public class MappedToDoRepository implements ToDoRepository, Closeable {
+
+    private static final int ID_ROOT = 0;
+    private static final int NAME_ROOT = 1;
+    private static final int DUE_DATE_ROOT = 2;
+    private static final int SIZE = 3;
+
+    // Sorts after every due date, so undated to dos come last
+    private static final int NO_DUE_DATE = -1;
+    private static final byte[] FIRST_KEY = new byte[0];
+    private static final byte[] UNDATED = ByteBuffer.allocate(Integer.BYTES).putInt(NO_DUE_DATE).array();
+    // Ids are ASCII, so this is past every (due date, id) key
+    private static final byte[] LAST_KEY = {-1, -1, -1, -1, -1};
+    private static final int LOWEST_RANK = -1;
+    private static final int HIGHEST_RANK = 2;
+
+    private final PageFile file;
+    private final PageCache cache;
+    private final BPlusTree toDosById;
+    private final BPlusTree idsByName;
+    private final BPlusTree dueDates;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final DoneStatistics doneStatistics = new DoneStatistics();
+    private final ToDoIds ids;
+    private final AtomicLong version = new AtomicLong();
+    private final RecentChanges recentChanges;
+
+    public MappedToDoRepository(Path path, int cachePages, ToDoIds ids, int retainedChanges) throws IOException {
+        this.file = new PageFile(path);
+        this.cache = new PageCache(file, cachePages);
+        this.toDosById = new BPlusTree(file, cache, ID_ROOT);
+        this.idsByName = new BPlusTree(file, cache, NAME_ROOT);
+        this.dueDates = new BPlusTree(file, cache, DUE_DATE_ROOT);
+        this.ids = ids;
+        this.recentChanges = new RecentChanges(retainedChanges, System.currentTimeMillis() * 1000);
+        toDosById.ascending(FIRST_KEY, (id, record) -> {
+            doneStatistics.add(decode(record));
+            return true;
+        });
+    }
+
+    @Override
+    public List<ToDo> findAll() {
+        List<ToDo> toDos = new ArrayList<>(Math.toIntExact(count()));
+        scan(() -> toDosById.ascending(FIRST_KEY, (id, record) -> toDos.add(decode(record))));
+        return toDos;
+    }
+
+    // Reads a leaf of records at a time under the read lock, writers get in between leaves
+    @Override
+    public Stream<ToDo> streamAll() {
+        return StreamSupport.stream(new LeafCursor(), false);
+    }
+
+    @Override
+    public long count() {
+        return file.headerSlot(SIZE);
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    // Walks the names, which are much smaller than the records
+    @Override
+    public List<ToDo> findByNameContaining(String name) {
+        String foldedName = TrigramIndex.fold(name);
+        List<ToDo> toDosFound = new ArrayList<>();
+        scan(() -> idsByName.ascending(FIRST_KEY, (storedName, id) -> {
+            if (TrigramIndex.fold(string(storedName)).contains(foldedName)) {
+                toDosFound.add(decode(toDosById.get(id)));
+            }
+            return true;
+        }));
+        return toDosFound;
+    }
+
+    /**
+     * Unsorted queries walk the records in id order. Sorted ones walk the due date tree
+     * once per priority rank when sorting on priority, like SortedToDoIndex, and read a
+     * record only when its rank and done flag pass the filters. Either walk stops at the
+     * end of the page when nothing has to be counted.
+     */
+    @Override
+    public ToDoPage findByQuery(ToDoQuery query) {
+        PageCollector page = new PageCollector(query);
+        scan(() -> {
+            if (!query.isSorted()) {
+                toDosById.ascending(FIRST_KEY, (id, record) -> page.offer(decode(record)));
+            } else if (query.getPriorityOrder() == null) {
+                walkDueDates(query, null, page);
+            } else {
+                for (int i = LOWEST_RANK; i <= HIGHEST_RANK && !page.isComplete(); i++) {
+                    walkDueDates(query, query.getPriorityOrder().equals("desc") ? HIGHEST_RANK + LOWEST_RANK - i : i, page);
+                }
+            }
+        });
+        return new ToDoPage(page.toDos, query.isFiltered() ? page.matches : count(), page.scanned);
+    }
+
+    private void walkDueDates(ToDoQuery query, Integer rank, PageCollector page) throws IOException {
+        int queriedRank = query.getPriority() == null ? LOWEST_RANK : ToDoQuery.priorityRank(query.getPriority());
+        BPlusTree.Visitor visitor = (key, flags) -> {
+            if (page.isComplete()) {
+                return false;
+            }
+            int storedRank = flags[0] - 1;
+            if ((rank != null && storedRank != rank)
+                    || (queriedRank != LOWEST_RANK && storedRank != queriedRank)
+                    || (query.getDoneUndoneFlag() != null && query.getDoneUndoneFlag() != (flags[1] == 1))) {
+                page.scanned++;
+                return true;
+            }
+            return page.offer(decode(toDosById.get(Arrays.copyOfRange(key, Integer.BYTES, key.length))));
+        };
+        if ("desc".equals(query.getDateOrder())) {
+            dueDates.descending(UNDATED, visitor);
+            dueDates.descending(LAST_KEY, (key, flags) -> isUndated(key) && visitor.visit(key, flags));
+        } else {
+            dueDates.ascending(FIRST_KEY, visitor);
+        }
+    }
+
+    private final class PageCollector {
+
+        private final ToDoQuery query;
+        private final List<ToDo> toDos;
+        private long matches;
+        private long scanned;
+
+        private PageCollector(ToDoQuery query) {
+            this.query = query;
+            this.toDos = new ArrayList<>(query.getLimit());
+        }
+
+        private boolean isComplete() {
+            return !query.isFiltered() && toDos.size() >= query.getLimit();
+        }
+
+        private boolean offer(ToDo toDo) {
+            scanned++;
+            if (query.matches(toDo)) {
+                if (matches >= query.getOffset() && toDos.size() < query.getLimit()) {
+                    toDos.add(toDo);
+                }
+                matches++;
+            }
+            return !isComplete();
+        }
+    }
+
+    @Override
+    public ToDo save(ToDo toDo) throws IllegalArgumentException {
+        return write(() -> store(toDo));
+    }
+
+    @Override
+    public ToDo update(String id, ToDo toDo) throws IllegalArgumentException, ToDoNotFoundException {
+        return write(() -> applyUpdate(id, toDo));
+    }
+
+    @Override
+    public ToDo markAsDone(String id, LocalDateTime doneDate, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        return write(() -> applyDone(id, doneDate, expectedVersion));
+    }
+
+    @Override
+    public ToDo markAsUndone(String id, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        return write(() -> applyUndone(id, expectedVersion));
+    }
+
+    /**
+     * Applies the operations in order under one write lock, a failed item is reported in
+     * its result and doesn't stop the others.
+     */
+    @Override
+    public List<ToDoOperationResult> applyBatch(List<ToDoOperation> operations, LocalDateTime doneDate) {
+        return write(() -> {
+            List<ToDoOperationResult> results = new ArrayList<>(operations.size());
+            for (ToDoOperation operation : operations) {
+                results.add(applyOperation(operation, doneDate));
+            }
+            return results;
+        });
+    }
+
+    private ToDoOperationResult applyOperation(ToDoOperation operation, LocalDateTime doneDate) throws IOException {
+        try {
+            return ToDoOperationResult.applied(switch (operation.getType()) {
+                case ADD -> store(operation.getToDo());
+                case UPDATE -> applyUpdate(operation.getId(), operation.getToDo());
+                case DONE -> applyDone(operation.getId(), doneDate, operation.getVersion());
+                case UNDONE -> applyUndone(operation.getId(), operation.getVersion());
+                case DELETE -> {
+                    remove(operation.getId());
+                    yield null;
+                }
+            });
+        } catch (ToDoNotFoundException exception) {
+            return ToDoOperationResult.notFound(exception.getMessage());
+        } catch (ToDoConflictException exception) {
+            return ToDoOperationResult.conflict(exception.getMessage());
+        } catch (IllegalArgumentException exception) {
+            return ToDoOperationResult.rejected(exception.getMessage());
+        }
+    }
+
+    @Override
+    public long averageTimeToComplete(String priority) {
+        return doneStatistics.averageTimeToComplete(priority);
+    }
+
+    @Override
+    public ToDo getById(String id) throws IllegalArgumentException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        byte[] record = read(() -> toDosById.get(bytes(id)));
+        if (record == null) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        return decode(record);
+    }
+
+    @Override
+    public void deleteById(String id) throws IllegalArgumentException, ToDoNotFoundException {
+        write(() -> {
+            remove(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll() {
+        write(() -> {
+            file.reset();
+            cache.clear();
+            toDosById.reset();
+            idsByName.reset();
+            dueDates.reset();
+            doneStatistics.clear();
+            announce(ToDoChange.Type.CLEARED, null, null);
+            return null;
+        });
+    }
+
+    @Override
+    public ToDoChanges changesSince(long sequence) {
+        return recentChanges.since(sequence);
+    }
+
+    @Override
+    public void addChangeListener(Consumer<ToDoChange> listener) {
+        recentChanges.addListener(listener);
+    }
+
+    long cacheHits() {
+        return cache.hits();
+    }
+
+    long cacheMisses() {
+        return cache.misses();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            file.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ToDo store(ToDo toDo) throws IOException {
+        if (toDo == null) {
+            throw new IllegalArgumentException("The object can't be null");
+        }
+        if (toDo.getName() == null) {
+            throw new IllegalArgumentException("The name parameter can't be null");
+        }
+
+        if (toDo.getId() != null) {
+            byte[] record = toDosById.get(bytes(toDo.getId()));
+            if (record != null) {
+                return change(decode(record), toDo.getName(), toDo.getVersion(), ToDoChange.Type.UPDATED, unchanged -> toDo);
+            }
+        }
+
+        ToDo created = toDo.getDueDate() == null
+                ? new ToDo(toDo.getName(), toDo.getPriority())
+                : new ToDo(toDo.getName(), toDo.getPriority(), toDo.getDueDate());
+        ToDo newToDo = created.withId(ids.next()).withVersion(1);
+        claimName(newToDo.getName(), newToDo.getId());
+        byte[] record = encode(newToDo);
+        if (2 * Short.BYTES + newToDo.getId().length() + record.length > BPlusTree.MAX_ENTRY_SIZE) {
+            throw new IllegalArgumentException("The to do is too large to store");
+        }
+        idsByName.put(bytes(newToDo.getName()), bytes(newToDo.getId()));
+        toDosById.put(bytes(newToDo.getId()), record);
+        dueDates.put(dueDateKey(newToDo), flags(newToDo));
+        file.setHeaderSlot(SIZE, file.headerSlot(SIZE) + 1);
+        doneStatistics.add(newToDo);
+        announce(ToDoChange.Type.CREATED, newToDo.getId(), newToDo);
+        return newToDo;
+    }
+
+    private ToDo applyUpdate(String id, ToDo toDo) throws IOException, ToDoNotFoundException {
+        return change(stored(id), toDo.getName(), toDo.getVersion(), ToDoChange.Type.UPDATED, current -> current.withDetailsOf(toDo));
+    }
+
+    private ToDo applyDone(String id, LocalDateTime doneDate, long expectedVersion) throws IOException, ToDoNotFoundException {
+        ToDo storedToDo = stored(id);
+        return change(storedToDo, storedToDo.getName(), expectedVersion, ToDoChange.Type.DONE, current -> current.doneAt(doneDate));
+    }
+
+    private ToDo applyUndone(String id, long expectedVersion) throws IOException, ToDoNotFoundException {
+        ToDo storedToDo = stored(id);
+        return change(storedToDo, storedToDo.getName(), expectedVersion, ToDoChange.Type.UNDONE, ToDo::undone);
+    }
+
+    private void remove(String id) throws IOException, ToDoNotFoundException {
+        ToDo deletedToDo = stored(id);
+        toDosById.remove(bytes(id));
+        idsByName.remove(bytes(deletedToDo.getName()));
+        dueDates.remove(dueDateKey(deletedToDo));
+        file.setHeaderSlot(SIZE, file.headerSlot(SIZE) - 1);
+        doneStatistics.remove(deletedToDo);
+        announce(ToDoChange.Type.DELETED, id, null);
+    }
+
+    // Same checks and versioning as MemoryImpl.change, a stale version or a taken new
+    // name aborts before anything is written
+    private ToDo change(ToDo storedToDo, String newName, long expectedVersion, ToDoChange.Type type,
+                        UnaryOperator<ToDo> transition) throws IOException {
+        String id = storedToDo.getId();
+        if (expectedVersion != ToDo.ANY_VERSION && expectedVersion != storedToDo.getVersion()) {
+            throw new ToDoConflictException("The to do with the id" + id + " is at version " + storedToDo.getVersion()
+                    + ", not " + expectedVersion);
+        }
+        if (!storedToDo.getName().equals(newName)) {
+            claimName(newName, id);
+        }
+        ToDo changedToDo = transition.apply(storedToDo).withVersion(storedToDo.getVersion() + 1);
+        byte[] record = encode(changedToDo);
+        if (2 * Short.BYTES + id.length() + record.length > BPlusTree.MAX_ENTRY_SIZE) {
+            throw new IllegalArgumentException("The to do is too large to store");
+        }
+
+        if (!storedToDo.getName().equals(changedToDo.getName())) {
+            idsByName.remove(bytes(storedToDo.getName()));
+            idsByName.put(bytes(changedToDo.getName()), bytes(id));
+        }
+        toDosById.put(bytes(id), record);
+        dueDates.remove(dueDateKey(storedToDo));
+        dueDates.put(dueDateKey(changedToDo), flags(changedToDo));
+        doneStatistics.remove(storedToDo);
+        doneStatistics.add(changedToDo);
+        announce(type, id, changedToDo);
+        return changedToDo;
+    }
+
+    private ToDo stored(String id) throws IOException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        byte[] record = toDosById.get(bytes(id));
+        if (record == null) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        return decode(record);
+    }
+
+    private void claimName(String name, String id) throws IOException {
+        byte[] ownerId = idsByName.get(bytes(name));
+        if (ownerId != null && !string(ownerId).equals(id)) {
+            throw new ToDoAlreadyExistsException("The To Do with the name " + name + "is already created ");
+        }
+    }
+
+    // Runs under the write lock, so the feed is in the order the changes were made
+    private void announce(ToDoChange.Type type, String id, ToDo toDo) {
+        recentChanges.record(type, id, toDo);
+    }
+
+    private final class LeafCursor extends Spliterators.AbstractSpliterator<ToDo> {
+
+        private final Deque<ToDo> leaf = new ArrayDeque<>();
+        // Null once the last leaf was read
+        private byte[] nextKey = FIRST_KEY;
+
+        private LeafCursor() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ToDo> action) {
+            while (leaf.isEmpty() && nextKey != null) {
+                scan(() -> nextKey = toDosById.ascendingLeaf(nextKey, (id, record) -> leaf.add(decode(record))));
+            }
+            if (leaf.isEmpty()) {
+                return false;
+            }
+            action.accept(leaf.poll());
+            return true;
+        }
+    }
+
+    private interface Access<T, E extends Exception> {
+        T run() throws IOException, E;
+    }
+
+    private interface Walk {
+        void run() throws IOException;
+    }
+
+    private void scan(Walk walk) {
+        read(() -> {
+            walk.run();
+            return null;
+        });
+    }
+
+    private <T, E extends Exception> T read(Access<T, E> access) throws E {
+        lock.readLock().lock();
+        try {
+            return access.run();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("The to do file can't be read", exception);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bumps the version once the write is visible, a batch counts even when an item failed
+    private <T, E extends Exception> T write(Access<T, E> access) throws E {
+        lock.writeLock().lock();
+        try {
+            T result = access.run();
+            version.incrementAndGet();
+            return result;
+        } catch (IOException exception) {
+            throw new UncheckedIOException("The to do file can't be written", exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static byte[] dueDateKey(ToDo toDo) {
+        byte[] id = bytes(toDo.getId());
+        // flipping the sign bit makes negative epoch days sort first as unsigned bytes
+        int dueDate = toDo.getDueDate() == null ? NO_DUE_DATE : (int) toDo.getDueDate().toEpochDay() ^ Integer.MIN_VALUE;
+        return ByteBuffer.allocate(Integer.BYTES + id.length).putInt(dueDate).put(id).array();
+    }
+
+    private static boolean isUndated(byte[] key) {
+        return Arrays.equals(key, 0, Integer.BYTES, UNDATED, 0, Integer.BYTES);
+    }
+
+    private static byte[] flags(ToDo toDo) {
+        return new byte[]{(byte) (ToDoQuery.priorityRank(toDo.getPriority()) + 1), (byte) (toDo.isDoneUndoneFlag() ? 1 : 0)};
+    }
+
+    private static byte[] encode(ToDo toDo) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try {
+            ToDoCodec.write(new DataOutputStream(bytes), toDo);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ToDo decode(byte[] record) {
+        try {
+            return ToDoCodec.read(new DataInputStream(new ByteArrayInputStream(record)));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
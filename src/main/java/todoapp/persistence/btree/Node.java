@@ -0,0 +1,101 @@
+package todoapp.persistence.btree;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A decoded B+tree page. A leaf is laid out as [type][count][previous][next] followed by
+ * (key length, key, value length, value) entries, and links to its neighbours for range
+ * scans. An inner node is [type][count][unused][unused][child 0] followed by (key length,
+ * key, child) entries, where keys at or above a separator live right of it.
+ */
+final class Node {
+
+    static final int NONE = 0;
+    static final int HEADER_SIZE = 1 + Short.BYTES + 2 * Integer.BYTES;
+
+    private static final byte LEAF = 0;
+    private static final byte INNER = 1;
+
+    final int pageNumber;
+    final boolean leaf;
+    final List<byte[]> keys;
+    // Leaves only
+    final List<byte[]> values;
+    // Inner nodes only, one more than keys
+    final List<Integer> children;
+    int previous = NONE;
+    int next = NONE;
+
+    Node(int pageNumber, boolean leaf) {
+        this(pageNumber, leaf, new ArrayList<>());
+    }
+
+    private Node(int pageNumber, boolean leaf, List<byte[]> keys) {
+        this.pageNumber = pageNumber;
+        this.leaf = leaf;
+        this.keys = keys;
+        this.values = leaf ? new ArrayList<>() : null;
+        this.children = leaf ? null : new ArrayList<>();
+    }
+
+    static Node read(int pageNumber, ByteBuffer page) {
+        boolean leaf = page.get(0) == LEAF;
+        int count = page.getShort(1);
+        Node node = new Node(pageNumber, leaf, new ArrayList<>(count + 1));
+        node.previous = page.getInt(3);
+        node.next = page.getInt(7);
+        page.position(HEADER_SIZE);
+        if (!leaf) {
+            node.children.add(page.getInt());
+        }
+        for (int i = 0; i < count; i++) {
+            node.keys.add(readBytes(page));
+            if (leaf) {
+                node.values.add(readBytes(page));
+            } else {
+                node.children.add(page.getInt());
+            }
+        }
+        return node;
+    }
+
+    void write(ByteBuffer page) {
+        page.put(0, leaf ? LEAF : INNER);
+        page.putShort(1, (short) keys.size());
+        page.putInt(3, previous);
+        page.putInt(7, next);
+        page.position(HEADER_SIZE);
+        if (!leaf) {
+            page.putInt(children.get(0));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            writeBytes(page, keys.get(i));
+            if (leaf) {
+                writeBytes(page, values.get(i));
+            } else {
+                page.putInt(children.get(i + 1));
+            }
+        }
+    }
+
+    int encodedSize() {
+        int size = HEADER_SIZE + (leaf ? 0 : Integer.BYTES);
+        for (int i = 0; i < keys.size(); i++) {
+            size += Short.BYTES + keys.get(i).length + (leaf ? Short.BYTES + values.get(i).length : Integer.BYTES);
+        }
+        return size;
+    }
+
+    private static byte[] readBytes(ByteBuffer page) {
+        byte[] bytes = new byte[Short.toUnsignedInt(page.getShort())];
+        page.get(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(ByteBuffer page, byte[] bytes) {
+        page.putShort((short) bytes.length);
+        page.put(bytes);
+    }
+}
@@ -0,0 +1,88 @@
+package todoapp.persistence.btree;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The last capacity decoded nodes, evicted by the clock algorithm: a hit sets the slot's
+ * referenced bit, and the hand clears set bits until it finds a slot without one. Nodes
+ * are written through to the mapping when they change, so evicting one never writes.
+ */
+final class PageCache {
+
+    private final PageFile file;
+    private final Node[] slots;
+    private final boolean[] referenced;
+    private final Map<Integer, Integer> slotsByPage = new HashMap<>();
+    private int hand;
+    private long hits;
+    private long misses;
+
+    PageCache(PageFile file, int capacity) {
+        this.file = file;
+        this.slots = new Node[capacity];
+        this.referenced = new boolean[capacity];
+    }
+
+    synchronized Node get(int pageNumber) throws IOException {
+        Integer slot = slotsByPage.get(pageNumber);
+        if (slot != null) {
+            hits++;
+            referenced[slot] = true;
+            return slots[slot];
+        }
+        misses++;
+        Node node = Node.read(pageNumber, file.page(pageNumber));
+        put(node);
+        return node;
+    }
+
+    synchronized void write(Node node) throws IOException {
+        node.write(file.page(node.pageNumber));
+        put(node);
+    }
+
+    // The page was freed, its node mustn't be found under the page number once it's reused
+    synchronized void forget(int pageNumber) {
+        Integer slot = slotsByPage.remove(pageNumber);
+        if (slot != null) {
+            slots[slot] = null;
+            referenced[slot] = false;
+        }
+    }
+
+    synchronized void clear() {
+        slotsByPage.clear();
+        Arrays.fill(slots, null);
+        Arrays.fill(referenced, false);
+        hand = 0;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    private void put(Node node) {
+        Integer slot = slotsByPage.get(node.pageNumber);
+        if (slot == null) {
+            while (slots[hand] != null && referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) % slots.length;
+            }
+            if (slots[hand] != null) {
+                slotsByPage.remove(slots[hand].pageNumber);
+            }
+            slot = hand;
+            hand = (hand + 1) % slots.length;
+            slotsByPage.put(node.pageNumber, slot);
+        }
+        slots[slot] = node;
+        referenced[slot] = true;
+    }
+}
@@ -0,0 +1,120 @@
+package todoapp.persistence.btree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of fixed-size pages mapped into memory in regions of REGION_PAGES pages. Page 0
+ * is the header: the magic, the page count, HEADER_SLOTS ints the owner keeps its tree
+ * roots and counters in, and the first free page. Freed pages are chained through their
+ * first int and handed out again by allocate before the file grows; reset drops all of
+ * them at once.
+ */
+public class PageFile implements Closeable {
+
+    public static final int PAGE_SIZE = 4096;
+    public static final int HEADER_SLOTS = 8;
+
+    private static final int MAGIC = 0x54444254;
+    private static final int REGION_PAGES = 16_384;
+    private static final long REGION_SIZE = (long) REGION_PAGES * PAGE_SIZE;
+    private static final int PAGE_COUNT_OFFSET = 4;
+    private static final int SLOTS_OFFSET = 8;
+    // Zero, no free page, in files written before pages were freed
+    private static final int FREE_LIST_OFFSET = SLOTS_OFFSET + HEADER_SLOTS * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private int pageCount;
+
+    public PageFile(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = page(0);
+        if (header.getInt(0) == MAGIC) {
+            pageCount = header.getInt(PAGE_COUNT_OFFSET);
+        } else {
+            reset();
+        }
+    }
+
+    /**
+     * A view of the page, writes to it go straight to the mapping.
+     */
+    public synchronized ByteBuffer page(int pageNumber) throws IOException {
+        int region = pageNumber / REGION_PAGES;
+        while (regions.size() <= region) {
+            map(regions.size());
+        }
+        return regions.get(region).slice((pageNumber % REGION_PAGES) * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    public synchronized int allocate() throws IOException {
+        int freePage = regions.get(0).getInt(FREE_LIST_OFFSET);
+        if (freePage != 0) {
+            regions.get(0).putInt(FREE_LIST_OFFSET, page(freePage).getInt(0));
+            return freePage;
+        }
+        int pageNumber = pageCount++;
+        page(pageNumber);
+        regions.get(0).putInt(PAGE_COUNT_OFFSET, pageCount);
+        return pageNumber;
+    }
+
+    // The page's content is gone, allocate hands it out again
+    public synchronized void free(int pageNumber) throws IOException {
+        page(pageNumber).putInt(0, regions.get(0).getInt(FREE_LIST_OFFSET));
+        regions.get(0).putInt(FREE_LIST_OFFSET, pageNumber);
+    }
+
+    public synchronized int pageCount() {
+        return pageCount;
+    }
+
+    public synchronized int headerSlot(int slot) {
+        return regions.get(0).getInt(SLOTS_OFFSET + slot * Integer.BYTES);
+    }
+
+    public synchronized void setHeaderSlot(int slot, int value) {
+        regions.get(0).putInt(SLOTS_OFFSET + slot * Integer.BYTES, value);
+    }
+
+    // The mapped regions stay mapped and are reused as pages are allocated again
+    public synchronized void reset() throws IOException {
+        ByteBuffer header = page(0);
+        header.putInt(0, MAGIC);
+        pageCount = 1;
+        header.putInt(PAGE_COUNT_OFFSET, pageCount);
+        for (int slot = 0; slot < HEADER_SLOTS; slot++) {
+            setHeaderSlot(slot, 0);
+        }
+        header.putInt(FREE_LIST_OFFSET, 0);
+    }
+
+    public synchronized void force() {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void map(int region) throws IOException {
+        // mapping past the end grows the file
+        regions.add(channel.map(FileChannel.MapMode.READ_WRITE, region * REGION_SIZE, REGION_SIZE));
+    }
+}
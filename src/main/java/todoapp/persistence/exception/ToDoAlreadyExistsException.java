@@ -0,0 +1,7 @@
+package todoapp.persistence.exception;
+
+public class ToDoAlreadyExistsException extends IllegalArgumentException {
+    public ToDoAlreadyExistsException(String message) {
+        super((message));
+    }
+}
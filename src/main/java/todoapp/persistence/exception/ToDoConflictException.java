@@ -0,0 +1,7 @@
+package todoapp.persistence.exception;
+
+public class ToDoConflictException extends IllegalStateException {
+    public ToDoConflictException(String message) {
+        super((message));
+    }
+}
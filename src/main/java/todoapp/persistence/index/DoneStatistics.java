@@ -0,0 +1,69 @@
+package todoapp.persistence.index;
+
+import todoapp.business.ToDoQuery;
+import todoapp.persistence.model.ToDo;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running sum and count of timeToComplete over the done to dos, per priority rank.
+ * LongAdder stripes the counters so concurrent done/undone calls don't contend.
+ */
+public class DoneStatistics {
+
+    // slot 0 holds priorities outside High/Medium/Low, which only count towards the overall average
+    private static final int SLOTS = 4;
+
+    private final LongAdder[] minutes = new LongAdder[SLOTS];
+    private final LongAdder[] counts = new LongAdder[SLOTS];
+
+    public DoneStatistics() {
+        for (int i = 0; i < SLOTS; i++) {
+            minutes[i] = new LongAdder();
+            counts[i] = new LongAdder();
+        }
+    }
+
+    private static int slotOf(String priority) {
+        return ToDoQuery.priorityRank(priority) + 1;
+    }
+
+    public void add(ToDo toDo) {
+        if (toDo.isDoneUndoneFlag() && toDo.getTimeToComplete() != null) {
+            int slot = slotOf(toDo.getPriority());
+            minutes[slot].add(toDo.getTimeToComplete());
+            counts[slot].increment();
+        }
+    }
+
+    public void remove(ToDo toDo) {
+        if (toDo.isDoneUndoneFlag() && toDo.getTimeToComplete() != null) {
+            int slot = slotOf(toDo.getPriority());
+            minutes[slot].add(-toDo.getTimeToComplete());
+            counts[slot].decrement();
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < SLOTS; i++) {
+            minutes[i].reset();
+            counts[i].reset();
+        }
+    }
+
+    /**
+     * Floor of the average time to complete in minutes, 0 when nothing is done.
+     * A null priority averages over every done to do.
+     */
+    public long averageTimeToComplete(String priority) {
+        long totalMinutes = 0;
+        long total = 0;
+        int from = priority == null ? 0 : slotOf(priority);
+        int to = priority == null ? SLOTS - 1 : from;
+        for (int slot = from; slot <= to; slot++) {
+            totalMinutes += minutes[slot].sum();
+            total += counts[slot].sum();
+        }
+        return total <= 0 ? 0 : Math.floorDiv(totalMinutes, total);
+    }
+}
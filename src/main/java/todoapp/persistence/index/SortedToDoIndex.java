@@ -0,0 +1,96 @@
+package todoapp.persistence.index;
+
+import todoapp.business.ToDoQuery;
+import todoapp.persistence.model.ToDo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Ordered indexes on (priority rank, due date, id) and (due date, id). Walking them
+ * yields ids in the order of ToDoQuery.comparator() without sorting anything.
+ */
+public class SortedToDoIndex {
+
+    private static final long NO_DUE_DATE = Long.MAX_VALUE;
+    private static final int LOWEST_RANK = -1;
+    private static final int HIGHEST_RANK = 2;
+
+    private record SortKey(int priorityRank, long dueEpochDay, String id) {
+    }
+
+    private static final Comparator<SortKey> BY_DUE_DATE = Comparator.comparingLong(SortKey::dueEpochDay)
+            .thenComparing(SortKey::id);
+    private static final Comparator<SortKey> BY_PRIORITY = Comparator.comparingInt(SortKey::priorityRank)
+            .thenComparing(BY_DUE_DATE);
+
+    private final ConcurrentSkipListSet<SortKey> byPriority = new ConcurrentSkipListSet<>(BY_PRIORITY);
+    private final ConcurrentSkipListSet<SortKey> byDueDate = new ConcurrentSkipListSet<>(BY_DUE_DATE);
+
+    private static SortKey keyOf(ToDo toDo) {
+        long dueEpochDay = toDo.getDueDate() == null ? NO_DUE_DATE : toDo.getDueDate().toEpochDay();
+        return new SortKey(ToDoQuery.priorityRank(toDo.getPriority()), dueEpochDay, toDo.getId());
+    }
+
+    public void add(ToDo toDo) {
+        SortKey key = keyOf(toDo);
+        byPriority.add(key);
+        byDueDate.add(key);
+    }
+
+    public void remove(ToDo toDo) {
+        SortKey key = keyOf(toDo);
+        byPriority.remove(key);
+        byDueDate.remove(key);
+    }
+
+    public void clear() {
+        byPriority.clear();
+        byDueDate.clear();
+    }
+
+    /**
+     * Lazily walks the ids in the requested order, where a null order means the key is
+     * not sorted on. Undated to dos come last in either date direction. A priority only
+     * walks its rank, which also holds the other priorities outside High/Medium/Low.
+     */
+    public Stream<String> idsInOrder(String priority, String priorityOrder, String dateOrder) {
+        List<NavigableSet<SortKey>> segments = new ArrayList<>();
+        if (priority != null) {
+            // one rank is in date order whatever the priority order
+            int rank = ToDoQuery.priorityRank(priority);
+            addDateSegments(segments, rankSegment(rank), firstUndated(rank), dateOrder);
+        } else if (priorityOrder == null) {
+            addDateSegments(segments, byDueDate, new SortKey(0, NO_DUE_DATE, ""), dateOrder);
+        } else {
+            boolean descending = priorityOrder.equals("desc");
+            for (int i = LOWEST_RANK; i <= HIGHEST_RANK; i++) {
+                int rank = descending ? HIGHEST_RANK + LOWEST_RANK - i : i;
+                addDateSegments(segments, rankSegment(rank), firstUndated(rank), dateOrder);
+            }
+        }
+        // concat rather than flatMap: iterating a flatMap buffers each whole segment up front
+        return segments.stream().map(NavigableSet::stream).reduce(Stream.empty(), Stream::concat).map(SortKey::id);
+    }
+
+    private NavigableSet<SortKey> rankSegment(int rank) {
+        return byPriority.subSet(new SortKey(rank, Long.MIN_VALUE, ""), true, new SortKey(rank + 1, Long.MIN_VALUE, ""), false);
+    }
+
+    private static SortKey firstUndated(int rank) {
+        return new SortKey(rank, NO_DUE_DATE, "");
+    }
+
+    private static void addDateSegments(List<NavigableSet<SortKey>> segments, NavigableSet<SortKey> keys, SortKey firstUndated, String dateOrder) {
+        if ("desc".equals(dateOrder)) {
+            segments.add(keys.headSet(firstUndated, false).descendingSet());
+            segments.add(keys.tailSet(firstUndated, true).descendingSet());
+        } else {
+            segments.add(keys);
+        }
+    }
+}
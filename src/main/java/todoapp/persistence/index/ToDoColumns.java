@@ -0,0 +1,131 @@
+package todoapp.persistence.index;
+
+import todoapp.business.ToDoQuery;
+import todoapp.persistence.model.ToDo;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Struct-of-arrays copy of the scanned to do fields, one slot per stored to do. Filters walk
+ * primitive arrays and bitsets instead of chasing ToDo and String pointers.
+ * Writers are serialized by a single lock, so this trades write concurrency for scan speed.
+ */
+public class ToDoColumns {
+
+    public static final byte OTHER_PRIORITY = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int slotCount;
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private byte[] priorities = new byte[INITIAL_CAPACITY];
+    private final BitSet live = new BitSet();
+    private final BitSet done = new BitSet();
+
+    /**
+     * Ordinal of High, Medium and Low in 1..3, OTHER_PRIORITY for anything else.
+     */
+    public static byte priorityOrdinal(String priority) {
+        return (byte) (ToDoQuery.priorityRank(priority) + 1);
+    }
+
+    public void put(ToDo toDo) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slotsById.get(toDo.getId());
+            if (slot == null) {
+                slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.pop();
+                ensureCapacity(slot + 1);
+                slotsById.put(toDo.getId(), slot);
+                ids[slot] = toDo.getId();
+                live.set(slot);
+            }
+            priorities[slot] = priorityOrdinal(toDo.getPriority());
+            done.set(slot, toDo.isDoneUndoneFlag());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(String id) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slotsById.remove(id);
+            if (slot != null) {
+                ids[slot] = null;
+                live.clear(slot);
+                done.clear(slot);
+                freeSlots.push(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            slotsById.clear();
+            freeSlots.clear();
+            live.clear();
+            done.clear();
+            Arrays.fill(ids, 0, slotCount, null);
+            slotCount = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds the ids of the matches in [offset, offset + limit) to page and returns the total
+     * number of matches. A null priority or done flag doesn't filter on that column.
+     */
+    public long scan(Byte priority, Boolean doneUndoneFlag, int offset, int limit, List<String> page) {
+        long stamp = lock.readLock();
+        try {
+            BitSet candidates = (BitSet) live.clone();
+            if (doneUndoneFlag != null) {
+                if (doneUndoneFlag) {
+                    candidates.and(done);
+                } else {
+                    candidates.andNot(done);
+                }
+            }
+
+            long matches = 0;
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                if (priority == null || priorities[slot] == priority) {
+                    if (matches >= offset && page.size() < limit) {
+                        page.add(ids[slot]);
+                    }
+                    matches++;
+                }
+            }
+            return matches;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+    }
+}
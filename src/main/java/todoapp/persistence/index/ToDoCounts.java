@@ -0,0 +1,68 @@
+package todoapp.persistence.index;
+
+import todoapp.business.ToDoQuery;
+import todoapp.persistence.model.ToDo;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of open and done to dos per priority rank, so a query filtered on nothing but
+ * priority and done flag knows its total without walking the matches.
+ */
+public class ToDoCounts {
+
+    // slot 0 holds priorities outside High/Medium/Low, which can't be counted on their own
+    private static final int SLOTS = 4;
+
+    private final LongAdder[] open = new LongAdder[SLOTS];
+    private final LongAdder[] done = new LongAdder[SLOTS];
+
+    public ToDoCounts() {
+        for (int i = 0; i < SLOTS; i++) {
+            open[i] = new LongAdder();
+            done[i] = new LongAdder();
+        }
+    }
+
+    private static int slotOf(String priority) {
+        return ToDoQuery.priorityRank(priority) + 1;
+    }
+
+    // Whether count can answer for the priority, a null priority stands for any
+    public static boolean counts(String priority) {
+        return priority == null || slotOf(priority) > 0;
+    }
+
+    public void add(ToDo toDo) {
+        (toDo.isDoneUndoneFlag() ? done : open)[slotOf(toDo.getPriority())].increment();
+    }
+
+    public void remove(ToDo toDo) {
+        (toDo.isDoneUndoneFlag() ? done : open)[slotOf(toDo.getPriority())].decrement();
+    }
+
+    public void clear() {
+        for (int i = 0; i < SLOTS; i++) {
+            open[i].reset();
+            done[i].reset();
+        }
+    }
+
+    /**
+     * To dos with the priority, any when null, and the done flag, either when null.
+     */
+    public long count(String priority, Boolean doneUndoneFlag) {
+        long total = 0;
+        int from = priority == null ? 0 : slotOf(priority);
+        int to = priority == null ? SLOTS - 1 : from;
+        for (int slot = from; slot <= to; slot++) {
+            if (doneUndoneFlag == null || !doneUndoneFlag) {
+                total += open[slot].sum();
+            }
+            if (doneUndoneFlag == null || doneUndoneFlag) {
+                total += done[slot].sum();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,86 @@
+package todoapp.persistence.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Inverted index from case-folded name trigrams to to do ids. A substring query
+ * only has to verify the ids that contain every trigram of the query.
+ */
+public class TrigramIndex {
+
+    public static final int GRAM_LENGTH = 3;
+
+    private final ConcurrentMap<Long, Set<String>> postings = new ConcurrentHashMap<>();
+
+    public static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    // Added inside compute like remove, which drops a set once it's empty, so an id can't
+    // land in a set that was just dropped from the map
+    public void add(String id, String name) {
+        for (Long trigram : trigramsOf(fold(name))) {
+            postings.compute(trigram, (key, ids) -> {
+                Set<String> postingIds = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                postingIds.add(id);
+                return postingIds;
+            });
+        }
+    }
+
+    public void remove(String id, String name) {
+        for (Long trigram : trigramsOf(fold(name))) {
+            postings.computeIfPresent(trigram, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Returns the ids whose name may contain the given folded query, or null when
+     * the query is shorter than a trigram and can't be narrowed by the index.
+     * Candidates still have to be verified against the actual name.
+     */
+    public Set<String> candidates(String foldedQuery) {
+        if (foldedQuery.length() < GRAM_LENGTH) {
+            return null;
+        }
+
+        List<Set<String>> postingLists = new ArrayList<>();
+        for (Long trigram : trigramsOf(foldedQuery)) {
+            Set<String> ids = postings.get(trigram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            postingLists.add(ids);
+        }
+        postingLists.sort(Comparator.comparingInt(Set::size));
+
+        Set<String> candidates = new HashSet<>();
+        for (String id : postingLists.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < postingLists.size() && inAll; i++) {
+                inAll = postingLists.get(i).contains(id);
+            }
+            if (inAll) {
+                candidates.add(id);
+            }
+        }
+        return candidates;
+    }
+
+    private static Set<Long> trigramsOf(String folded) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            trigrams.add(((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,33 @@
+package todoapp.persistence.jdbc;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import todoapp.persistence.ToDoIds;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "todoapp.repository.backend", havingValue = "jdbc")
+public class JdbcRepositoryConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource toDoDataSource(@Value("${todoapp.jdbc.url:jdbc:h2:file:./data/h2/todos;DB_CLOSE_ON_EXIT=FALSE}") String url,
+                                           @Value("${todoapp.jdbc.pool-size:8}") int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("todos");
+        config.setJdbcUrl(url);
+        config.setMaximumPoolSize(poolSize);
+        return new HikariDataSource(config);
+    }
+
+    @Bean(destroyMethod = "close")
+    public JdbcToDoRepository jdbcToDoRepository(DataSource toDoDataSource,
+                                                 @Value("${todoapp.changes.retained:10000}") int retainedChanges,
+                                                 @Value("${todoapp.ids.node:0}") int node) {
+        return new JdbcToDoRepository(toDoDataSource, new ToDoIds(node), retainedChanges);
+    }
+}
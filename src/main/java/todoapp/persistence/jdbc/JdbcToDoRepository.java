@@ -0,0 +1,537 @@
+package todoapp.persistence.jdbc;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import todoapp.business.ToDoChange;
+import todoapp.business.ToDoChanges;
+import todoapp.business.ToDoOperation;
+import todoapp.business.ToDoOperationResult;
+import todoapp.business.ToDoPage;
+import todoapp.business.ToDoQuery;
+import todoapp.business.ToDoRepository;
+import todoapp.persistence.RecentChanges;
+import todoapp.persistence.ToDoIds;
+import todoapp.persistence.exception.ToDoAlreadyExistsException;
+import todoapp.persistence.exception.ToDoConflictException;
+import todoapp.persistence.exception.ToDoNotFoundException;
+import todoapp.persistence.index.TrigramIndex;
+import todoapp.persistence.model.ToDo;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * ToDoRepository over an embedded SQL database. Readers borrow pooled connections, so they
+ * run concurrently. Writers are serialized by a single lock on one connection that keeps
+ * its prepared statements open. Consecutive inserts of a batch go out as one JDBC batch,
+ * and a batch commits once.
+ * <p>
+ * Holding the lock while a change is committed and announced keeps the change feed in
+ * commit order, and it lets the name and version checks read before they write. The
+ * database must not be written to by anyone else.
+ */
+public class JdbcToDoRepository implements ToDoRepository, Closeable {
+
+    private static final List<String> SCHEMA = List.of("""
+            CREATE TABLE IF NOT EXISTS todos (
+                id VARCHAR(64) PRIMARY KEY,
+                name VARCHAR(1024) NOT NULL,
+                folded_name VARCHAR(1024) NOT NULL,
+                priority VARCHAR(64),
+                priority_rank INT NOT NULL,
+                due_date DATE,
+                creation_date TIMESTAMP(9),
+                done_date TIMESTAMP(9),
+                done BOOLEAN NOT NULL,
+                time_to_complete BIGINT,
+                days_to_complete BIGINT,
+                version BIGINT NOT NULL
+            )""",
+            "CREATE UNIQUE INDEX IF NOT EXISTS todos_name ON todos (name)",
+            // sorted queries walk these like SortedToDoIndex, ties broken by id
+            "CREATE INDEX IF NOT EXISTS todos_priority_due_date ON todos (priority_rank, due_date, id)",
+            "CREATE INDEX IF NOT EXISTS todos_due_date ON todos (due_date, id)",
+            "CREATE INDEX IF NOT EXISTS todos_done ON todos (done, priority_rank)");
+
+    private static final String COLUMNS = "id, name, folded_name, priority, priority_rank, due_date, creation_date, done_date, "
+            + "done, time_to_complete, days_to_complete, version";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM todos";
+    private static final String INSERT = "INSERT INTO todos (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE todos SET id = ?, name = ?, folded_name = ?, priority = ?, priority_rank = ?, "
+            + "due_date = ?, creation_date = ?, done_date = ?, done = ?, time_to_complete = ?, days_to_complete = ?, version = ? "
+            + "WHERE id = ?";
+
+    private static final int MAX_QUEUED_INSERTS = 1000;
+
+    private static final RowMapper<ToDo> TO_DO = (row, rowNumber) -> read(row);
+
+    private final JdbcTemplate readers;
+    private final SQLExceptionTranslator exceptionTranslator = new SQLStateSQLExceptionTranslator();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Connection writer;
+    private final PreparedStatement selectById;
+    private final PreparedStatement selectIdByName;
+    private final PreparedStatement insert;
+    private final PreparedStatement update;
+    private final PreparedStatement delete;
+    private final PreparedStatement deleteAll;
+    private final ToDoIds ids;
+    private final AtomicLong version = new AtomicLong();
+    private final RecentChanges recentChanges;
+
+    public JdbcToDoRepository(DataSource dataSource, ToDoIds ids, int retainedChanges) {
+        this.readers = new JdbcTemplate(dataSource);
+        this.ids = ids;
+        this.recentChanges = new RecentChanges(retainedChanges, System.currentTimeMillis() * 1000);
+        try {
+            this.writer = dataSource.getConnection();
+            try (Statement statement = writer.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            writer.setAutoCommit(false);
+            this.selectById = writer.prepareStatement(SELECT + " WHERE id = ?");
+            this.selectIdByName = writer.prepareStatement("SELECT id FROM todos WHERE name = ?");
+            this.insert = writer.prepareStatement(INSERT);
+            this.update = writer.prepareStatement(UPDATE);
+            this.delete = writer.prepareStatement("DELETE FROM todos WHERE id = ?");
+            this.deleteAll = writer.prepareStatement("DELETE FROM todos");
+        } catch (SQLException exception) {
+            throw translate("opening the to do table", exception);
+        }
+    }
+
+    @Override
+    public List<ToDo> findAll() {
+        return readers.query(SELECT, TO_DO);
+    }
+
+    @Override
+    public Stream<ToDo> streamAll() {
+        return readers.queryForStream(SELECT, TO_DO);
+    }
+
+    @Override
+    public long count() {
+        Long count = readers.queryForObject("SELECT COUNT(*) FROM todos", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public List<ToDo> findByNameContaining(String name) {
+        return readers.query(SELECT + " WHERE folded_name LIKE ? ESCAPE '\\'", TO_DO, containing(TrigramIndex.fold(name)));
+    }
+
+    /**
+     * The same filters, order and page as the in-memory repository, as one indexed query
+     * plus a count of the matches. Unsorted pages come in id order, so they're stable too.
+     */
+    @Override
+    public ToDoPage findByQuery(ToDoQuery query) {
+        StringBuilder where = new StringBuilder(" WHERE TRUE");
+        List<Object> arguments = new ArrayList<>();
+        if (query.getFoldedName() != null) {
+            where.append(" AND folded_name LIKE ? ESCAPE '\\'");
+            arguments.add(containing(query.getFoldedName()));
+        }
+        if (query.getPriority() != null) {
+            int rank = ToDoQuery.priorityRank(query.getPriority());
+            where.append(" AND priority_rank = ?");
+            arguments.add(rank);
+            // every priority outside High, Medium and Low shares a rank
+            if (rank == ToDoQuery.priorityRank(null)) {
+                where.append(" AND priority = ?");
+                arguments.add(query.getPriority());
+            }
+        }
+        if (query.getDoneUndoneFlag() != null) {
+            where.append(" AND done = ?");
+            arguments.add(query.getDoneUndoneFlag());
+        }
+
+        List<Object> pageArguments = new ArrayList<>(arguments);
+        pageArguments.add(query.getLimit());
+        pageArguments.add(query.getOffset());
+        List<ToDo> page = readers.query(SELECT + where + orderBy(query) + " LIMIT ? OFFSET ?", TO_DO, pageArguments.toArray());
+        Long matches = readers.queryForObject("SELECT COUNT(*) FROM todos" + where, Long.class, arguments.toArray());
+        return new ToDoPage(page, matches == null ? 0 : matches);
+    }
+
+    private static String orderBy(ToDoQuery query) {
+        if (!query.isSorted()) {
+            return " ORDER BY id";
+        }
+        String dateOrder = "desc".equals(query.getDateOrder()) ? "DESC" : "ASC";
+        String byDueDateAndId = "due_date " + dateOrder + " NULLS LAST, id " + dateOrder;
+        if (query.getPriorityOrder() == null) {
+            return " ORDER BY " + byDueDateAndId;
+        }
+        return " ORDER BY priority_rank " + query.getPriorityOrder().toUpperCase() + ", " + byDueDateAndId;
+    }
+
+    private static String containing(String foldedName) {
+        return "%" + foldedName.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    @Override
+    public ToDo save(ToDo toDo) throws IllegalArgumentException {
+        return write(changes -> store(toDo, changes, false));
+    }
+
+    @Override
+    public ToDo update(String id, ToDo toDo) throws IllegalArgumentException, ToDoNotFoundException {
+        return write(changes -> applyUpdate(id, toDo, changes));
+    }
+
+    @Override
+    public ToDo markAsDone(String id, LocalDateTime doneDate, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        return write(changes -> applyDone(id, doneDate, expectedVersion, changes));
+    }
+
+    @Override
+    public ToDo markAsUndone(String id, long expectedVersion) throws IllegalArgumentException, ToDoNotFoundException {
+        return write(changes -> applyUndone(id, expectedVersion, changes));
+    }
+
+    /**
+     * Applies the operations in order with one commit at the end, a failed item is
+     * reported in its result and doesn't stop the others. Inserts are queued until the
+     * next operation of another type, the end of the batch or the queue's limit, and go
+     * out as one JDBC batch.
+     */
+    @Override
+    public List<ToDoOperationResult> applyBatch(List<ToDoOperation> operations, LocalDateTime doneDate) {
+        return write(changes -> {
+            List<ToDoOperationResult> results = new ArrayList<>(operations.size());
+            for (ToDoOperation operation : operations) {
+                if (operation.getType() != ToDoOperation.Type.ADD) {
+                    flushInserts(changes);
+                }
+                results.add(applyOperation(operation, doneDate, changes));
+            }
+            return results;
+        });
+    }
+
+    private ToDoOperationResult applyOperation(ToDoOperation operation, LocalDateTime doneDate, PendingChanges changes) throws SQLException {
+        try {
+            return ToDoOperationResult.applied(switch (operation.getType()) {
+                case ADD -> store(operation.getToDo(), changes, true);
+                case UPDATE -> applyUpdate(operation.getId(), operation.getToDo(), changes);
+                case DONE -> applyDone(operation.getId(), doneDate, operation.getVersion(), changes);
+                case UNDONE -> applyUndone(operation.getId(), operation.getVersion(), changes);
+                case DELETE -> {
+                    remove(operation.getId(), changes);
+                    yield null;
+                }
+            });
+        } catch (ToDoNotFoundException exception) {
+            return ToDoOperationResult.notFound(exception.getMessage());
+        } catch (ToDoConflictException exception) {
+            return ToDoOperationResult.conflict(exception.getMessage());
+        } catch (IllegalArgumentException exception) {
+            return ToDoOperationResult.rejected(exception.getMessage());
+        }
+    }
+
+    @Override
+    public long averageTimeToComplete(String priority) {
+        String sql = "SELECT COALESCE(SUM(time_to_complete), 0), COUNT(*) FROM todos WHERE done AND time_to_complete IS NOT NULL";
+        Object[] arguments = {};
+        if (priority != null) {
+            sql += " AND priority_rank = ?";
+            arguments = new Object[]{ToDoQuery.priorityRank(priority)};
+        }
+        return readers.queryForObject(sql, (row, rowNumber) -> {
+            long total = row.getLong(2);
+            return total == 0 ? 0 : Math.floorDiv(row.getLong(1), total);
+        }, arguments);
+    }
+
+    @Override
+    public ToDo getById(String id) throws IllegalArgumentException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        List<ToDo> toDosFound = readers.query(SELECT + " WHERE id = ?", TO_DO, id);
+        if (toDosFound.isEmpty()) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        return toDosFound.get(0);
+    }
+
+    @Override
+    public void deleteById(String id) throws IllegalArgumentException, ToDoNotFoundException {
+        write(changes -> {
+            remove(id, changes);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll() {
+        write(changes -> {
+            deleteAll.executeUpdate();
+            changes.announce(ToDoChange.Type.CLEARED, null, null);
+            return null;
+        });
+    }
+
+    @Override
+    public ToDoChanges changesSince(long sequence) {
+        return recentChanges.since(sequence);
+    }
+
+    @Override
+    public void addChangeListener(Consumer<ToDoChange> listener) {
+        recentChanges.addListener(listener);
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            writer.close();
+        } catch (SQLNonTransientConnectionException exception) {
+            // the database is closed already and took the connection with it, H2's exit hook
+            // does that when the URL doesn't set DB_CLOSE_ON_EXIT=FALSE
+        } catch (SQLException exception) {
+            throw translate("closing the to do table", exception);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private ToDo store(ToDo toDo, PendingChanges changes, boolean batched) throws SQLException {
+        if (toDo == null) {
+            throw new IllegalArgumentException("The object can't be null");
+        }
+        if (toDo.getName() == null) {
+            throw new IllegalArgumentException("The name parameter can't be null");
+        }
+
+        if (toDo.getId() != null) {
+            ToDo storedToDo = find(toDo.getId());
+            if (storedToDo != null) {
+                return change(storedToDo, toDo.getName(), toDo.getVersion(), ToDoChange.Type.UPDATED, unchanged -> toDo, changes);
+            }
+        }
+
+        ToDo created = toDo.getDueDate() == null
+                ? new ToDo(toDo.getName(), toDo.getPriority())
+                : new ToDo(toDo.getName(), toDo.getPriority(), toDo.getDueDate());
+        ToDo newToDo = created.withId(ids.next()).withVersion(1);
+        claimName(newToDo.getName(), newToDo.getId(), changes);
+        bind(insert, newToDo);
+        if (batched) {
+            insert.addBatch();
+            changes.queueInsert(newToDo);
+            if (changes.queuedInserts.size() >= MAX_QUEUED_INSERTS) {
+                flushInserts(changes);
+            }
+        } else {
+            insert.executeUpdate();
+        }
+        changes.announce(ToDoChange.Type.CREATED, newToDo.getId(), newToDo);
+        return newToDo;
+    }
+
+    private ToDo applyUpdate(String id, ToDo toDo, PendingChanges changes) throws SQLException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        return change(stored(id), toDo.getName(), toDo.getVersion(), ToDoChange.Type.UPDATED, current -> current.withDetailsOf(toDo), changes);
+    }
+
+    private ToDo applyDone(String id, LocalDateTime doneDate, long expectedVersion, PendingChanges changes) throws SQLException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        ToDo storedToDo = stored(id);
+        return change(storedToDo, storedToDo.getName(), expectedVersion, ToDoChange.Type.DONE, current -> current.doneAt(doneDate), changes);
+    }
+
+    private ToDo applyUndone(String id, long expectedVersion, PendingChanges changes) throws SQLException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        ToDo storedToDo = stored(id);
+        return change(storedToDo, storedToDo.getName(), expectedVersion, ToDoChange.Type.UNDONE, ToDo::undone, changes);
+    }
+
+    private void remove(String id, PendingChanges changes) throws SQLException, ToDoNotFoundException {
+        if (id == null) {
+            throw new IllegalArgumentException("The id parameter can't be null");
+        }
+
+        delete.setString(1, id);
+        if (delete.executeUpdate() == 0) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        changes.announce(ToDoChange.Type.DELETED, id, null);
+    }
+
+    // Same checks and versioning as MemoryImpl.change, a stale version or a taken new
+    // name aborts before anything is written
+    private ToDo change(ToDo storedToDo, String newName, long expectedVersion, ToDoChange.Type type,
+                        UnaryOperator<ToDo> transition, PendingChanges changes) throws SQLException {
+        String id = storedToDo.getId();
+        if (expectedVersion != ToDo.ANY_VERSION && expectedVersion != storedToDo.getVersion()) {
+            throw new ToDoConflictException("The to do with the id" + id + " is at version " + storedToDo.getVersion()
+                    + ", not " + expectedVersion);
+        }
+        if (!storedToDo.getName().equals(newName)) {
+            claimName(newName, id, changes);
+        }
+        ToDo changedToDo = transition.apply(storedToDo).withVersion(storedToDo.getVersion() + 1);
+        bind(update, changedToDo);
+        update.setString(13, id);
+        update.executeUpdate();
+        changes.announce(type, id, changedToDo);
+        return changedToDo;
+    }
+
+    private ToDo stored(String id) throws SQLException, ToDoNotFoundException {
+        ToDo storedToDo = find(id);
+        if (storedToDo == null) {
+            throw new ToDoNotFoundException("The to do with the id" + id + " was not found");
+        }
+        return storedToDo;
+    }
+
+    private ToDo find(String id) throws SQLException {
+        selectById.setString(1, id);
+        try (ResultSet row = selectById.executeQuery()) {
+            return row.next() ? read(row) : null;
+        }
+    }
+
+    private void claimName(String name, String id, PendingChanges changes) throws SQLException {
+        selectIdByName.setString(1, name);
+        String ownerId;
+        try (ResultSet row = selectIdByName.executeQuery()) {
+            ownerId = row.next() ? row.getString(1) : changes.queuedOwnerOf(name);
+        }
+        if (ownerId != null && !ownerId.equals(id)) {
+            throw new ToDoAlreadyExistsException("The To Do with the name " + name + "is already created ");
+        }
+    }
+
+    private void flushInserts(PendingChanges changes) throws SQLException {
+        if (changes.hasQueuedInserts()) {
+            insert.executeBatch();
+            changes.clearQueuedInserts();
+        }
+    }
+
+    private interface Write<T, E extends Exception> {
+        T apply(PendingChanges changes) throws SQLException, E;
+    }
+
+    // Commits what the write did, then bumps the version and announces its changes in
+    // order, or rolls it all back and announces nothing
+    private <T, E extends Exception> T write(Write<T, E> write) throws E {
+        writeLock.lock();
+        try {
+            PendingChanges changes = new PendingChanges();
+            T result;
+            try {
+                result = write.apply(changes);
+                flushInserts(changes);
+                writer.commit();
+            } catch (Exception exception) {
+                insert.clearBatch();
+                writer.rollback();
+                throw exception;
+            }
+            if (!changes.announced.isEmpty()) {
+                version.incrementAndGet();
+            }
+            for (PendingChange change : changes.announced) {
+                recentChanges.record(change.type(), change.id(), change.toDo());
+            }
+            return result;
+        } catch (SQLException exception) {
+            throw translate("writing to dos", exception);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private RuntimeException translate(String task, SQLException exception) {
+        RuntimeException translated = exceptionTranslator.translate(task, null, exception);
+        return translated == null ? new IllegalStateException(task, exception) : translated;
+    }
+
+    private record PendingChange(ToDoChange.Type type, String id, ToDo toDo) {
+    }
+
+    private static final class PendingChanges {
+
+        private final List<PendingChange> announced = new ArrayList<>();
+        // name -> id of the inserts waiting in the JDBC batch, which the name lookup can't see yet
+        private final Map<String, String> queuedInserts = new HashMap<>();
+
+        private void announce(ToDoChange.Type type, String id, ToDo toDo) {
+            announced.add(new PendingChange(type, id, toDo));
+        }
+
+        private void queueInsert(ToDo toDo) {
+            queuedInserts.put(toDo.getName(), toDo.getId());
+        }
+
+        private String queuedOwnerOf(String name) {
+            return queuedInserts.get(name);
+        }
+
+        private boolean hasQueuedInserts() {
+            return !queuedInserts.isEmpty();
+        }
+
+        private void clearQueuedInserts() {
+            queuedInserts.clear();
+        }
+    }
+
+    private static void bind(PreparedStatement statement, ToDo toDo) throws SQLException {
+        statement.setString(1, toDo.getId());
+        statement.setString(2, toDo.getName());
+        statement.setString(3, TrigramIndex.fold(toDo.getName()));
+        statement.setString(4, toDo.getPriority());
+        statement.setInt(5, ToDoQuery.priorityRank(toDo.getPriority()));
+        statement.setObject(6, toDo.getDueDate());
+        statement.setObject(7, toDo.getCreationDate());
+        statement.setObject(8, toDo.getDoneDate());
+        statement.setBoolean(9, toDo.isDoneUndoneFlag());
+        statement.setObject(10, toDo.getTimeToComplete());
+        statement.setObject(11, toDo.getDaysToComplete());
+        statement.setLong(12, toDo.getVersion());
+    }
+
+    private static ToDo read(ResultSet row) throws SQLException {
+        return new ToDo(row.getString(1), row.getString(2), row.getString(4), row.getObject(6, LocalDate.class),
+                row.getObject(7, LocalDateTime.class), row.getObject(8, LocalDateTime.class), row.getBoolean(9),
+                row.getObject(10, Long.class), row.getObject(11, Long.class), row.getLong(12));
+    }
+}
@@ -2,12 +2,22 @@ package todoapp.persistence.model;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 
+/**
+ * A stored to do is never changed in place: the repository publishes every change as a
+ * modified copy with the next version, so a reader always sees one consistent state. The
+ * with methods and transitions return such copies, the setters are only there for Jackson
+ * to bind request bodies.
+ */
 public class ToDo {
 
+    // A version a client can send back when it didn't read one, it matches any stored version
+    public static final long ANY_VERSION = 0;
+
     private String id;
     @NotNull
     private String name;
@@ -19,6 +29,7 @@ public class ToDo {
     private boolean doneUndoneFlag;
     private Long timeToComplete;
     private Long daysToComplete;
+    private long version;
 
     public ToDo() {
     }
@@ -34,6 +45,35 @@ public class ToDo {
         this.daysToComplete = ChronoUnit.DAYS.between(this.creationDate, this.dueDate.atStartOfDay().plusDays(1));
     }
 
+    // Field by field copy
+    public ToDo(ToDo other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.priority = other.priority;
+        this.dueDate = other.dueDate;
+        this.creationDate = other.creationDate;
+        this.doneDate = other.doneDate;
+        this.doneUndoneFlag = other.doneUndoneFlag;
+        this.timeToComplete = other.timeToComplete;
+        this.daysToComplete = other.daysToComplete;
+        this.version = other.version;
+    }
+
+    // Every field, for the stores decoding a to do
+    public ToDo(String id, String name, String priority, LocalDate dueDate, LocalDateTime creationDate, LocalDateTime doneDate,
+                boolean doneUndoneFlag, Long timeToComplete, Long daysToComplete, long version) {
+        this.id = id;
+        this.name = name;
+        this.priority = priority;
+        this.dueDate = dueDate;
+        this.creationDate = creationDate;
+        this.doneDate = doneDate;
+        this.doneUndoneFlag = doneUndoneFlag;
+        this.timeToComplete = timeToComplete;
+        this.daysToComplete = daysToComplete;
+        this.version = version;
+    }
+
     public ToDo(String name, String priority) {
         this.name = name;
         this.priority = priority;
@@ -49,7 +89,7 @@ public class ToDo {
         return id;
     }
 
-    public void setId(String id) {
+    void setId(String id) {
         this.id = id;
     }
 
@@ -57,7 +97,7 @@ public class ToDo {
         return name;
     }
 
-    public void setName(String name) {
+    void setName(String name) {
         this.name = name;
     }
 
@@ -65,7 +105,7 @@ public class ToDo {
         return priority;
     }
 
-    public void setPriority(String priority) {
+    void setPriority(String priority) {
         this.priority = priority;
     }
 
@@ -73,7 +113,7 @@ public class ToDo {
         return dueDate;
     }
 
-    public void setDueDate(LocalDate dueDate) {
+    void setDueDate(LocalDate dueDate) {
         this.dueDate = dueDate;
     }
 
@@ -81,7 +121,7 @@ public class ToDo {
         return creationDate;
     }
 
-    public void setCreationDate(LocalDateTime creationDate) {
+    void setCreationDate(LocalDateTime creationDate) {
         this.creationDate = creationDate;
     }
 
@@ -89,7 +129,7 @@ public class ToDo {
         return doneDate;
     }
 
-    public void setDoneDate(LocalDateTime doneDate) {
+    void setDoneDate(LocalDateTime doneDate) {
         this.doneDate = doneDate;
     }
 
@@ -97,7 +137,7 @@ public class ToDo {
         return doneUndoneFlag;
     }
 
-    public void setDoneUndoneFlag(boolean doneUndoneFlag) {
+    void setDoneUndoneFlag(boolean doneUndoneFlag) {
         this.doneUndoneFlag = doneUndoneFlag;
     }
 
@@ -105,7 +145,7 @@ public class ToDo {
         return timeToComplete;
     }
 
-    public void setTimeToComplete(Long timeToComplete) {
+    void setTimeToComplete(Long timeToComplete) {
         this.timeToComplete = timeToComplete;
     }
 
@@ -113,10 +153,62 @@ public class ToDo {
         return daysToComplete;
     }
 
-    public void setDaysToComplete(Long daysToComplete) {
+    void setDaysToComplete(Long daysToComplete) {
         this.daysToComplete = daysToComplete;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    public ToDo withId(String id) {
+        ToDo copy = new ToDo(this);
+        copy.id = id;
+        return copy;
+    }
+
+    public ToDo withVersion(long version) {
+        ToDo copy = new ToDo(this);
+        copy.version = version;
+        return copy;
+    }
+
+    public ToDo withDaysToComplete(Long daysToComplete) {
+        ToDo copy = new ToDo(this);
+        copy.daysToComplete = daysToComplete;
+        return copy;
+    }
+
+    // Takes the fields an update can change from edited, keeps the rest
+    public ToDo withDetailsOf(ToDo edited) {
+        ToDo copy = new ToDo(this);
+        copy.name = edited.name;
+        copy.priority = edited.priority;
+        copy.dueDate = edited.dueDate;
+        copy.daysToComplete = edited.daysToComplete;
+        return copy;
+    }
+
+    public ToDo doneAt(LocalDateTime doneDate) {
+        ToDo copy = new ToDo(this);
+        copy.doneUndoneFlag = true;
+        copy.doneDate = doneDate;
+        copy.timeToComplete = Duration.between(creationDate, doneDate).toMinutes();
+        return copy;
+    }
+
+    public ToDo undone() {
+        ToDo copy = new ToDo(this);
+        copy.doneUndoneFlag = false;
+        copy.doneDate = null;
+        copy.timeToComplete = null;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "ToDo{" +
@@ -129,6 +221,7 @@ public class ToDo {
                 ", doneUndoneFlag=" + doneUndoneFlag +
                 ", timeToComplete=" + timeToComplete +
                 ", daysToComplete=" + daysToComplete +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,337 @@
+package todoapp.persistence.offheap;
+
+import todoapp.persistence.model.ToDo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Keeps to dos encoded in a RecordArena instead of as objects, so the heap only holds the
+ * id and a boxed address per to do, however many are stored. A record is a fixed width
+ * block of the numeric fields followed by the UTF-8 priority and name; a read decodes a
+ * fresh ToDo that the caller owns and that dies young.
+ * <p>
+ * Records are copy-on-write like stored to dos: a change writes a new slot, publishes its
+ * address in the index and only then frees the old slot. get() doesn't lock, when the
+ * slot it decoded turns out to be freed under it, the index already has the new address
+ * and it reads again. The compute family runs its function once under the index's bin lock.
+ */
+public class OffHeapToDoMap extends AbstractMap<String, ToDo> implements ConcurrentMap<String, ToDo> {
+
+    private static final int NULLABLE_CREATION = 1;
+    private static final int NULLABLE_DONE = 1 << 1;
+    private static final int NULLABLE_DUE = 1 << 2;
+    private static final int NULLABLE_TIME_TO_COMPLETE = 1 << 3;
+    private static final int NULLABLE_DAYS_TO_COMPLETE = 1 << 4;
+    private static final int NULLABLE_PRIORITY = 1 << 5;
+    private static final int NULLABLE_NAME = 1 << 6;
+
+    // Offsets past the slot header, the nulls byte flags the fields holding no value
+    private static final int NULLS = RecordArena.HEADER_SIZE;
+    private static final int DONE_FLAG = NULLS + 1;
+    private static final int PRIORITY_LENGTH = NULLS + 2;
+    private static final int DUE_EPOCH_DAY = NULLS + 4;
+    private static final int VERSION = NULLS + 8;
+    private static final int CREATION_SECONDS = NULLS + 16;
+    private static final int DONE_SECONDS = NULLS + 24;
+    private static final int CREATION_NANOS = NULLS + 32;
+    private static final int DONE_NANOS = NULLS + 36;
+    private static final int TIME_TO_COMPLETE = NULLS + 40;
+    private static final int DAYS_TO_COMPLETE = NULLS + 48;
+    private static final int NAME_LENGTH = NULLS + 56;
+    private static final int STRINGS = NULLS + 60;
+
+    private final RecordArena arena = new RecordArena();
+    private final ConcurrentMap<String, Long> addresses = new ConcurrentHashMap<>();
+
+    // Bytes of direct memory the records' segments take
+    public long reservedBytes() {
+        return arena.reservedBytes();
+    }
+
+    @Override
+    public int size() {
+        return addresses.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return addresses.containsKey(key);
+    }
+
+    @Override
+    public ToDo get(Object key) {
+        while (true) {
+            Long address = addresses.get(key);
+            if (address == null) {
+                return null;
+            }
+            ToDo toDo = read((String) key, address);
+            if (toDo != null) {
+                return toDo;
+            }
+        }
+    }
+
+    @Override
+    public ToDo put(String key, ToDo value) {
+        ToDo[] previous = new ToDo[1];
+        compute(key, (unused, oldValue) -> {
+            previous[0] = oldValue;
+            return value;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public ToDo putIfAbsent(String key, ToDo value) {
+        ToDo[] previous = new ToDo[1];
+        compute(key, (unused, oldValue) -> {
+            previous[0] = oldValue;
+            return oldValue == null ? value : oldValue;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public ToDo remove(Object key) {
+        Long address = addresses.remove(key);
+        if (address == null) {
+            return null;
+        }
+        // whoever unpublishes an address frees it, so nobody reuses it before we read it
+        ToDo toDo = read((String) key, address);
+        arena.free(address);
+        return toDo;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        boolean[] removed = new boolean[1];
+        compute((String) key, (unused, oldValue) -> {
+            removed[0] = oldValue != null && oldValue.equals(value);
+            return removed[0] ? null : oldValue;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean replace(String key, ToDo oldValue, ToDo newValue) {
+        boolean[] replaced = new boolean[1];
+        compute(key, (unused, value) -> {
+            replaced[0] = value != null && value.equals(oldValue);
+            return replaced[0] ? newValue : value;
+        });
+        return replaced[0];
+    }
+
+    @Override
+    public ToDo replace(String key, ToDo value) {
+        ToDo[] previous = new ToDo[1];
+        compute(key, (unused, oldValue) -> {
+            previous[0] = oldValue;
+            return oldValue == null ? null : value;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public ToDo compute(String key, BiFunction<? super String, ? super ToDo, ? extends ToDo> remapping) {
+        long[] replaced = {RecordArena.NONE};
+        ToDo[] newValue = new ToDo[1];
+        addresses.compute(key, (unused, address) -> {
+            // only this bin's writers free its addresses, and they all hold the bin lock
+            ToDo oldValue = address == null ? null : read(key, address);
+            newValue[0] = remapping.apply(key, oldValue);
+            if (newValue[0] == oldValue) {
+                return address;
+            }
+            if (address != null) {
+                replaced[0] = address;
+            }
+            return newValue[0] == null ? null : write(newValue[0]);
+        });
+        if (replaced[0] != RecordArena.NONE) {
+            arena.free(replaced[0]);
+        }
+        return newValue[0];
+    }
+
+    @Override
+    public ToDo computeIfPresent(String key, BiFunction<? super String, ? super ToDo, ? extends ToDo> remapping) {
+        return compute(key, (unused, value) -> value == null ? null : remapping.apply(key, value));
+    }
+
+    @Override
+    public ToDo computeIfAbsent(String key, Function<? super String, ? extends ToDo> mapping) {
+        return compute(key, (unused, value) -> value != null ? value : mapping.apply(key));
+    }
+
+    @Override
+    public ToDo merge(String key, ToDo value, BiFunction<? super ToDo, ? super ToDo, ? extends ToDo> remapping) {
+        return compute(key, (unused, oldValue) -> oldValue == null ? value : remapping.apply(oldValue, value));
+    }
+
+    @Override
+    public void clear() {
+        for (String key : addresses.keySet()) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(addresses.keySet());
+    }
+
+    @Override
+    public Set<Entry<String, ToDo>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return addresses.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, ToDo>> iterator() {
+                Iterator<Entry<String, Long>> entries = addresses.entrySet().iterator();
+                return new Iterator<>() {
+                    private Entry<String, ToDo> next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && entries.hasNext()) {
+                            Entry<String, Long> entry = entries.next();
+                            ToDo toDo = read(entry.getKey(), entry.getValue());
+                            // changed since the iterator saw it, or removed
+                            if (toDo == null) {
+                                toDo = get(entry.getKey());
+                            }
+                            if (toDo != null) {
+                                next = new SimpleImmutableEntry<>(entry.getKey(), toDo);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<String, ToDo> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, ToDo> entry = next;
+                        next = null;
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+
+    private Long write(ToDo toDo) {
+        byte[] priority = toDo.getPriority() == null ? new byte[0] : toDo.getPriority().getBytes(StandardCharsets.UTF_8);
+        byte[] name = toDo.getName() == null ? new byte[0] : toDo.getName().getBytes(StandardCharsets.UTF_8);
+        if (priority.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("A priority of " + priority.length + " bytes doesn't fit an off-heap record");
+        }
+        long address = arena.allocate(STRINGS + priority.length + name.length);
+        ByteBuffer buffer = arena.buffer(address);
+        int offset = arena.offset(address);
+
+        int nulls = 0;
+        LocalDateTime creationDate = toDo.getCreationDate();
+        if (creationDate == null) {
+            nulls |= NULLABLE_CREATION;
+        } else {
+            buffer.putLong(offset + CREATION_SECONDS, creationDate.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(offset + CREATION_NANOS, creationDate.getNano());
+        }
+        LocalDateTime doneDate = toDo.getDoneDate();
+        if (doneDate == null) {
+            nulls |= NULLABLE_DONE;
+        } else {
+            buffer.putLong(offset + DONE_SECONDS, doneDate.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(offset + DONE_NANOS, doneDate.getNano());
+        }
+        if (toDo.getDueDate() == null) {
+            nulls |= NULLABLE_DUE;
+        } else {
+            buffer.putInt(offset + DUE_EPOCH_DAY, (int) toDo.getDueDate().toEpochDay());
+        }
+        if (toDo.getTimeToComplete() == null) {
+            nulls |= NULLABLE_TIME_TO_COMPLETE;
+        } else {
+            buffer.putLong(offset + TIME_TO_COMPLETE, toDo.getTimeToComplete());
+        }
+        if (toDo.getDaysToComplete() == null) {
+            nulls |= NULLABLE_DAYS_TO_COMPLETE;
+        } else {
+            buffer.putLong(offset + DAYS_TO_COMPLETE, toDo.getDaysToComplete());
+        }
+        if (toDo.getPriority() == null) {
+            nulls |= NULLABLE_PRIORITY;
+        }
+        if (toDo.getName() == null) {
+            nulls |= NULLABLE_NAME;
+        }
+
+        buffer.put(offset + NULLS, (byte) nulls);
+        buffer.put(offset + DONE_FLAG, (byte) (toDo.isDoneUndoneFlag() ? 1 : 0));
+        buffer.putShort(offset + PRIORITY_LENGTH, (short) priority.length);
+        buffer.putLong(offset + VERSION, toDo.getVersion());
+        buffer.putInt(offset + NAME_LENGTH, name.length);
+        buffer.put(offset + STRINGS, priority);
+        buffer.put(offset + STRINGS + priority.length, name);
+        return address;
+    }
+
+    // Null when the slot was freed while it was read
+    private ToDo read(String id, long address) {
+        ToDo toDo;
+        try {
+            toDo = decode(id, arena.buffer(address), arena.offset(address));
+        } catch (RuntimeException exception) {
+            // lengths read from a reused slot can point anywhere
+            if (!arena.isCurrent(address)) {
+                return null;
+            }
+            throw exception;
+        }
+        return arena.isCurrent(address) ? toDo : null;
+    }
+
+    private static ToDo decode(String id, ByteBuffer buffer, int offset) {
+        int nulls = buffer.get(offset + NULLS);
+        int priorityLength = buffer.getShort(offset + PRIORITY_LENGTH);
+        return new ToDo(id,
+                (nulls & NULLABLE_NAME) == 0 ? string(buffer, offset + STRINGS + priorityLength, buffer.getInt(offset + NAME_LENGTH)) : null,
+                (nulls & NULLABLE_PRIORITY) == 0 ? string(buffer, offset + STRINGS, priorityLength) : null,
+                (nulls & NULLABLE_DUE) == 0 ? LocalDate.ofEpochDay(buffer.getInt(offset + DUE_EPOCH_DAY)) : null,
+                (nulls & NULLABLE_CREATION) == 0
+                        ? LocalDateTime.ofEpochSecond(buffer.getLong(offset + CREATION_SECONDS), buffer.getInt(offset + CREATION_NANOS), ZoneOffset.UTC)
+                        : null,
+                (nulls & NULLABLE_DONE) == 0
+                        ? LocalDateTime.ofEpochSecond(buffer.getLong(offset + DONE_SECONDS), buffer.getInt(offset + DONE_NANOS), ZoneOffset.UTC)
+                        : null,
+                buffer.get(offset + DONE_FLAG) != 0,
+                (nulls & NULLABLE_TIME_TO_COMPLETE) == 0 ? buffer.getLong(offset + TIME_TO_COMPLETE) : null,
+                (nulls & NULLABLE_DAYS_TO_COMPLETE) == 0 ? buffer.getLong(offset + DAYS_TO_COMPLETE) : null,
+                buffer.getLong(offset + VERSION));
+    }
+
+    private static String string(ByteBuffer buffer, int offset, int length) {
+        // checked before allocating, a torn length must not ask for gigabytes
+        Objects.checkFromIndexSize(offset, length, buffer.capacity());
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
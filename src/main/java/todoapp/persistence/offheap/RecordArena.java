@@ -0,0 +1,178 @@
+package todoapp.persistence.offheap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Slots for variable sized records in direct buffers, outside the Java heap. Sizes are
+ * rounded up to a power of two size class, and every class grows by whole segments and
+ * keeps its own free list, threaded through the freed slots themselves, so a freed slot is
+ * reused by the next record of its class without any object on the heap.
+ * <p>
+ * An address carries the slot's generation next to its class and number. Freeing bumps
+ * the generation stored in the slot, so a reader that decoded a slot without a lock checks
+ * it afterwards and knows whether the slot was freed, and maybe reused, under it.
+ */
+final class RecordArena {
+
+    static final long NONE = 0;
+    // Slot header: the generation, then the next free slot while the slot is free
+    static final int HEADER_SIZE = 8;
+
+    private static final int MIN_CLASS_SHIFT = 7;
+    private static final int MAX_CLASS_SHIFT = 30;
+    private static final int SEGMENT_SIZE = 4 << 20;
+    private static final int SLOT_BITS = 27;
+    private static final int END_OF_LIST = -1;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final class SizeClass {
+
+        private final int slotSize;
+        private final int slotsPerSegment;
+        // Copied when it grows, readers index it without the lock
+        private volatile ByteBuffer[] segments = new ByteBuffer[0];
+        private int slotCount;
+        private int freeHead = END_OF_LIST;
+        private long liveSlots;
+
+        private SizeClass(int slotSize) {
+            this.slotSize = slotSize;
+            this.slotsPerSegment = Math.max(1, SEGMENT_SIZE / slotSize);
+        }
+    }
+
+    private final SizeClass[] classes = new SizeClass[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+
+    RecordArena() {
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass(1 << (MIN_CLASS_SHIFT + i));
+        }
+    }
+
+    /**
+     * A slot of at least size bytes, header included. Its content is whatever the previous
+     * record left there.
+     */
+    long allocate(int size) {
+        int classIndex = classOf(size);
+        SizeClass sizeClass = classes[classIndex];
+        synchronized (sizeClass) {
+            int slot;
+            if (sizeClass.freeHead != END_OF_LIST) {
+                slot = sizeClass.freeHead;
+                sizeClass.freeHead = buffer(sizeClass, slot).getInt(offset(sizeClass, slot) + 4);
+            } else {
+                if (sizeClass.slotCount == 1 << SLOT_BITS) {
+                    throw new IllegalStateException("The off-heap arena ran out of " + sizeClass.slotSize + " byte slots");
+                }
+                slot = sizeClass.slotCount++;
+                if (slot / sizeClass.slotsPerSegment == sizeClass.segments.length) {
+                    grow(sizeClass);
+                }
+                // generations start at 1, so no address is ever NONE
+                INT.setRelease(buffer(sizeClass, slot), offset(sizeClass, slot), 1);
+            }
+            sizeClass.liveSlots++;
+            int generation = (int) INT.getAcquire(buffer(sizeClass, slot), offset(sizeClass, slot));
+            // the bumped generation must be visible before any of the new owner's writes, or
+            // a lock-free reader could take the new record for the one its address names
+            VarHandle.storeStoreFence();
+            return (long) generation << 32 | (long) classIndex << SLOT_BITS | slot;
+        }
+    }
+
+    void free(long address) {
+        SizeClass sizeClass = classes[classIndex(address)];
+        int slot = slot(address);
+        synchronized (sizeClass) {
+            ByteBuffer buffer = buffer(sizeClass, slot);
+            int offset = offset(sizeClass, slot);
+            int generation = (int) INT.getAcquire(buffer, offset);
+            if (generation != generation(address)) {
+                throw new IllegalStateException("The off-heap slot " + Long.toHexString(address) + " was already freed");
+            }
+            INT.setRelease(buffer, offset, generation == Integer.MAX_VALUE ? 1 : generation + 1);
+            buffer.putInt(offset + 4, sizeClass.freeHead);
+            sizeClass.freeHead = slot;
+            sizeClass.liveSlots--;
+        }
+    }
+
+    // The segment holding the address, its record starts at offset(address)
+    ByteBuffer buffer(long address) {
+        return buffer(classes[classIndex(address)], slot(address));
+    }
+
+    int offset(long address) {
+        return offset(classes[classIndex(address)], slot(address));
+    }
+
+    /**
+     * Whether the slot still holds the record the address was handed out for. Called after
+     * reading the record, the fence keeps those reads from moving past the check.
+     */
+    boolean isCurrent(long address) {
+        VarHandle.acquireFence();
+        SizeClass sizeClass = classes[classIndex(address)];
+        int slot = slot(address);
+        return (int) INT.getAcquire(buffer(sizeClass, slot), offset(sizeClass, slot)) == generation(address);
+    }
+
+    // Bytes taken by segments, allocated or not
+    long reservedBytes() {
+        long bytes = 0;
+        for (SizeClass sizeClass : classes) {
+            bytes += (long) sizeClass.segments.length * sizeClass.slotsPerSegment * sizeClass.slotSize;
+        }
+        return bytes;
+    }
+
+    long liveSlots() {
+        long slots = 0;
+        for (SizeClass sizeClass : classes) {
+            synchronized (sizeClass) {
+                slots += sizeClass.liveSlots;
+            }
+        }
+        return slots;
+    }
+
+    private static void grow(SizeClass sizeClass) {
+        ByteBuffer[] segments = Arrays.copyOf(sizeClass.segments, sizeClass.segments.length + 1);
+        segments[segments.length - 1] = ByteBuffer.allocateDirect(sizeClass.slotsPerSegment * sizeClass.slotSize).order(ByteOrder.nativeOrder());
+        sizeClass.segments = segments;
+    }
+
+    private static int classOf(int size) {
+        int shift = Math.max(MIN_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+        if (size <= 0 || shift > MAX_CLASS_SHIFT) {
+            throw new IllegalArgumentException("A record of " + size + " bytes doesn't fit the off-heap arena");
+        }
+        return shift - MIN_CLASS_SHIFT;
+    }
+
+    private static ByteBuffer buffer(SizeClass sizeClass, int slot) {
+        return sizeClass.segments[slot / sizeClass.slotsPerSegment];
+    }
+
+    private static int offset(SizeClass sizeClass, int slot) {
+        return slot % sizeClass.slotsPerSegment * sizeClass.slotSize;
+    }
+
+    private static int classIndex(long address) {
+        return (int) (address >>> SLOT_BITS) & 0x1F;
+    }
+
+    private static int slot(long address) {
+        return (int) address & (1 << SLOT_BITS) - 1;
+    }
+
+    private static int generation(long address) {
+        return (int) (address >>> 32);
+    }
+}
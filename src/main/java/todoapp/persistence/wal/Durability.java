@@ -0,0 +1,10 @@
+package todoapp.persistence.wal;
+
+public enum Durability {
+    // every append is forced to disk before the write returns
+    FSYNC,
+    // writers wait for a group commit that forces everything appended so far with one fsync
+    BATCH,
+    // writers don't wait, a background flusher forces the log periodically
+    ASYNC
+}
@@ -0,0 +1,18 @@
+package todoapp.persistence.wal;
+
+import todoapp.persistence.model.ToDo;
+
+/**
+ * One logged mutation. Saves and done/undone transitions carry the full post-image of the
+ * to do, so replaying a record is idempotent.
+ */
+public record LogRecord(Type type, long sequence, ToDo toDo, String id) {
+
+    public enum Type {
+        SAVE, DONE, UNDONE, DELETE, DELETE_ALL;
+
+        boolean hasToDo() {
+            return this == SAVE || this == DONE || this == UNDONE;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package todoapp.persistence.wal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file through read-only memory mappings of up to WINDOW bytes each, so files
+ * beyond the 2GB limit of a single MappedByteBuffer can be streamed too.
+ */
+final class MappedInputStream extends InputStream {
+
+    private static final long WINDOW = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private long mappedUpTo;
+    private MappedByteBuffer window;
+
+    MappedInputStream(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextWindow() ? window.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextWindow()) {
+            return -1;
+        }
+        int read = Math.min(length, window.remaining());
+        window.get(bytes, offset, read);
+        return read;
+    }
+
+    private boolean nextWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (mappedUpTo >= size) {
+            return false;
+        }
+        long length = Math.min(WINDOW, size - mappedUpTo);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, mappedUpTo, length);
+        mappedUpTo += length;
+        return true;
+    }
+}
@@ -0,0 +1,49 @@
+package todoapp.persistence.wal;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a snapshot in the background every interval, but only once at least minRecords
+ * have been logged since the previous one.
+ */
+public class SnapshotScheduler implements Closeable {
+
+    private final ScheduledExecutorService executor;
+    private final WriteAheadLog writeAheadLog;
+    private final Callable<Long> snapshot;
+    private final long minRecords;
+    private long lastSnapshotSequence;
+
+    public SnapshotScheduler(WriteAheadLog writeAheadLog, Callable<Long> snapshot, long intervalMillis, long minRecords) {
+        this.writeAheadLog = writeAheadLog;
+        this.snapshot = snapshot;
+        this.minRecords = minRecords;
+        this.lastSnapshotSequence = writeAheadLog.getAppendedSequence();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::snapshotIfDue, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void snapshotIfDue() {
+        if (writeAheadLog.getAppendedSequence() - lastSnapshotSequence < minRecords) {
+            return;
+        }
+        try {
+            lastSnapshotSequence = snapshot.call();
+        } catch (Exception ignored) {
+            // the log still holds everything, the next tick tries again
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,139 @@
+package todoapp.persistence.wal;
+
+import todoapp.persistence.model.ToDo;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Full copies of the repository state, each tagged with the last log sequence it is known
+ * to contain. A snapshot is laid out as [magic][sequence] followed by flagged ToDoCodec
+ * records and a CRC32 of everything before it. It's written to a temporary file and
+ * renamed once forced, so a crash never leaves a half written snapshot behind.
+ */
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x54445332;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Writes the to dos handed out by source as the snapshot of sequence and deletes the
+     * snapshots it replaces. Snapshots are written one at a time.
+     */
+    public synchronized void write(long sequence, Consumer<Consumer<ToDo>> source) throws IOException {
+        Path temporary = directory.resolve(fileNameOf(sequence) + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            try {
+                source.accept(toDo -> {
+                    try {
+                        out.writeBoolean(true);
+                        ToDoCodec.write(out, toDo);
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+            out.writeBoolean(false);
+            out.flush();
+            new DataOutputStream(buffered).writeInt((int) crc.getValue());
+            buffered.flush();
+            channel.force(true);
+        }
+        Path snapshot = directory.resolve(fileNameOf(sequence));
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Path older : snapshots()) {
+            if (sequenceOf(older) < sequence) {
+                Files.delete(older);
+            }
+        }
+    }
+
+    /**
+     * Hands every to do of the newest snapshot to consumer, reading it through memory
+     * mappings, and returns the snapshot's sequence, or 0 when there is none.
+     */
+    public long load(Consumer<ToDo> consumer) throws IOException {
+        deleteTemporaryFiles();
+        List<Path> snapshots = snapshots();
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+
+        Path newest = snapshots.get(snapshots.size() - 1);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.READ)) {
+            MappedInputStream mapped = new MappedInputStream(channel);
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(mapped, crc));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("The snapshot " + newest + " is not a to do snapshot");
+            }
+            long sequence = in.readLong();
+            while (in.readBoolean()) {
+                consumer.accept(ToDoCodec.read(in));
+            }
+            int expectedCrc = (int) crc.getValue();
+            if (new DataInputStream(mapped).readInt() != expectedCrc) {
+                throw new IOException("The snapshot " + newest + " is corrupt");
+            }
+            return sequence;
+        }
+    }
+
+    List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private void deleteTemporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static String fileNameOf(long sequence) {
+        return String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX);
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,76 @@
+package todoapp.persistence.wal;
+
+import todoapp.persistence.model.ToDo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary form of a ToDo shared by the log and the snapshots.
+ */
+public final class ToDoCodec {
+
+    private ToDoCodec() {
+    }
+
+    public static void write(DataOutput out, ToDo toDo) throws IOException {
+        out.writeUTF(toDo.getId());
+        out.writeUTF(toDo.getName());
+        writeNullableString(out, toDo.getPriority());
+        out.writeBoolean(toDo.getDueDate() != null);
+        if (toDo.getDueDate() != null) {
+            out.writeLong(toDo.getDueDate().toEpochDay());
+        }
+        writeNullableDateTime(out, toDo.getCreationDate());
+        writeNullableDateTime(out, toDo.getDoneDate());
+        out.writeBoolean(toDo.isDoneUndoneFlag());
+        writeNullableLong(out, toDo.getTimeToComplete());
+        writeNullableLong(out, toDo.getDaysToComplete());
+        out.writeLong(toDo.getVersion());
+    }
+
+    public static ToDo read(DataInput in) throws IOException {
+        return new ToDo(in.readUTF(), in.readUTF(), readNullableString(in),
+                in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null,
+                readNullableDateTime(in), readNullableDateTime(in), in.readBoolean(),
+                readNullableLong(in), readNullableLong(in), in.readLong());
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readNullableDateTime(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+    }
+
+    private static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readNullableLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+}
@@ -0,0 +1,372 @@
+package todoapp.persistence.wal;
+
+import todoapp.persistence.model.ToDo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented append-only log of repository mutations. Records are framed as
+ * [length][type][sequence][payload][crc32] and segments are named after the sequence of
+ * their first record, so they sort in log order.
+ * <p>
+ * Appends only encode into an in-memory buffer under appendLock. Forcing happens under
+ * syncLock without holding appendLock, so writers keep appending while an fsync is in
+ * flight and the next sync covers all of them at once (group commit).
+ * <p>
+ * A write that fails partway is cut back off the segment, so the log never holds half a
+ * record followed by more records. Under FSYNC the failed append's record is dropped too,
+ * since its caller is told the change was rejected. If the segment can't be cut back the
+ * log fails and refuses every later append.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final Durability durability;
+    private final long segmentSize;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher;
+
+    private FileChannel channel;
+    private long channelSize;
+    private long nextSequence = 1;
+    private volatile long appendedSequence;
+    private volatile long durableSequence;
+    // Set when a failed write couldn't be cut back off the segment
+    private IOException failure;
+
+    public WriteAheadLog(Path directory, Durability durability, long segmentSize, long asyncFlushIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        if (durability == Durability.ASYNC) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, asyncFlushIntervalMillis, asyncFlushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Replays every record with a sequence greater than afterSequence in log order, then
+     * positions the log to append after the last valid record. A torn or corrupt tail,
+     * left by a crash mid-write, ends the replay and is cut off.
+     */
+    public void replay(long afterSequence, Consumer<LogRecord> consumer) throws IOException {
+        long lastSequence = afterSequence;
+        boolean tornTail = false;
+        for (Path segment : segments()) {
+            if (tornTail) {
+                // nothing after a torn record can be trusted
+                Files.delete(segment);
+                continue;
+            }
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+                Frame frame;
+                while ((frame = readFrame(in)) != null) {
+                    validLength += frame.length();
+                    lastSequence = Math.max(lastSequence, frame.record().sequence());
+                    if (frame.record().sequence() > afterSequence) {
+                        consumer.accept(frame.record());
+                    }
+                }
+            }
+            if (validLength < Files.size(segment)) {
+                try (FileChannel truncated = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    truncated.truncate(validLength);
+                }
+                tornTail = true;
+            }
+        }
+
+        appendLock.lock();
+        try {
+            nextSequence = lastSequence + 1;
+            appendedSequence = lastSequence;
+            durableSequence = lastSequence;
+            openSegment();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long append(LogRecord.Type type, ToDo toDo) {
+        return append(type, toDo, null);
+    }
+
+    public long append(LogRecord.Type type, String id) {
+        return append(type, null, id);
+    }
+
+    private long append(LogRecord.Type type, ToDo toDo, String id) {
+        appendLock.lock();
+        try {
+            if (failure != null) {
+                throw new IOException("The log failed on an earlier write", failure);
+            }
+            long sequence = nextSequence++;
+            recordBytes.reset();
+            recordOut.writeByte(type.ordinal());
+            recordOut.writeLong(sequence);
+            if (type.hasToDo()) {
+                ToDoCodec.write(recordOut, toDo);
+            } else if (type == LogRecord.Type.DELETE) {
+                recordOut.writeUTF(id);
+            }
+            crc.reset();
+            crc.update(recordBytes.toByteArray());
+            pendingOut.writeInt(recordBytes.size());
+            recordBytes.writeTo(pendingOut);
+            pendingOut.writeInt((int) crc.getValue());
+
+            if (durability == Durability.FSYNC) {
+                long sizeBefore = channelSize;
+                try {
+                    writePendingLocked();
+                    channel.force(false);
+                } catch (IOException exception) {
+                    // every earlier append was drained, so the buffer and what was written of it are this record alone
+                    pending.reset();
+                    nextSequence = sequence;
+                    cutBackLocked(sizeBefore, exception);
+                    throw exception;
+                }
+                appendedSequence = sequence;
+                durableSequence = sequence;
+                rollQuietlyLocked();
+            } else {
+                appendedSequence = sequence;
+            }
+            return sequence;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Makes the caller's earlier appends durable according to the durability policy.
+     */
+    public void commit() {
+        if (durability == Durability.BATCH) {
+            try {
+                sync();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    /**
+     * Forces everything appended before the call. Concurrent callers queue on syncLock and
+     * usually find their records already covered by the previous force.
+     */
+    public void sync() throws IOException {
+        long target = appendedSequence;
+        if (durableSequence >= target) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durableSequence >= target) {
+                return;
+            }
+            FileChannel forced;
+            long upTo;
+            appendLock.lock();
+            try {
+                upTo = appendedSequence;
+                writePendingLocked();
+                rollIfFullLocked();
+                forced = channel;
+            } finally {
+                appendLock.unlock();
+            }
+            forced.force(false);
+            durableSequence = upTo;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * Deletes the segments whose records all have a sequence up to the given one, once a
+     * snapshot covers them. The segment being appended to is always kept.
+     */
+    public void deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) - 1 <= sequence; i++) {
+            Files.delete(segments.get(i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            if (channel != null) {
+                writePendingLocked();
+                channel.force(false);
+                durableSequence = appendedSequence;
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+    List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void flushQuietly() {
+        try {
+            sync();
+        } catch (IOException ignored) {
+            // retried on the next tick, close() forces whatever is left
+        }
+    }
+
+    // Writes the buffered records to the current segment, or none of them if the write fails
+    private void writePendingLocked() throws IOException {
+        if (failure != null) {
+            throw new IOException("The log failed on an earlier write", failure);
+        }
+        if (pending.size() == 0) {
+            return;
+        }
+        long sizeBefore = channelSize;
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        try {
+            while (buffer.hasRemaining()) {
+                channelSize += channel.write(buffer);
+            }
+        } catch (IOException exception) {
+            // the records stay buffered and are written whole by the next drain
+            cutBackLocked(sizeBefore, exception);
+            throw exception;
+        }
+        pending.reset();
+    }
+
+    private void cutBackLocked(long size, IOException cause) {
+        try {
+            channel.truncate(size);
+            channelSize = size;
+        } catch (IOException exception) {
+            exception.addSuppressed(cause);
+            failure = exception;
+        }
+    }
+
+    // The new segment is opened before the full one is closed, so a failure leaves the log appending to the full one
+    private void rollIfFullLocked() throws IOException {
+        if (channelSize < segmentSize) {
+            return;
+        }
+        channel.force(false);
+        FileChannel full = channel;
+        openSegment();
+        full.close();
+    }
+
+    private void rollQuietlyLocked() {
+        try {
+            rollIfFullLocked();
+        } catch (IOException ignored) {
+            // the record is already durable, the next append tries again
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        FileChannel opened = openChannel(segment);
+        channelSize = opened.size();
+        channel = opened;
+    }
+
+    FileChannel openChannel(Path segment) throws IOException {
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private record Frame(LogRecord record, int length) {
+    }
+
+    private Frame readFrame(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > segmentSize) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            int storedCrc = in.readInt();
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != storedCrc) {
+                return null;
+            }
+
+            DataInputStream bodyIn = new DataInputStream(new ByteArrayInputStream(body));
+            LogRecord.Type type = LogRecord.Type.values()[bodyIn.readByte()];
+            long sequence = bodyIn.readLong();
+            ToDo toDo = type.hasToDo() ? ToDoCodec.read(bodyIn) : null;
+            String id = type == LogRecord.Type.DELETE ? bodyIn.readUTF() : null;
+            return new Frame(new LogRecord(type, sequence, toDo, id), Integer.BYTES + length + Integer.BYTES);
+        } catch (EOFException exception) {
+            return null;
+        }
+    }
+}
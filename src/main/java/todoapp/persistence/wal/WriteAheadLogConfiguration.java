@@ -0,0 +1,35 @@
+package todoapp.persistence.wal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import todoapp.persistence.MemoryImpl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(name = "todoapp.persistence.mode", havingValue = "wal")
+public class WriteAheadLogConfiguration {
+
+    @Bean
+    public WriteAheadLog writeAheadLog(@Value("${todoapp.wal.directory:data/wal}") Path directory,
+                                       @Value("${todoapp.wal.durability:batch}") String durability,
+                                       @Value("${todoapp.wal.segment-size:67108864}") long segmentSize,
+                                       @Value("${todoapp.wal.async-flush-interval-ms:100}") long asyncFlushIntervalMillis) throws IOException {
+        return new WriteAheadLog(directory, Durability.valueOf(durability.toUpperCase()), segmentSize, asyncFlushIntervalMillis);
+    }
+
+    @Bean
+    public SnapshotStore snapshotStore(@Value("${todoapp.wal.directory:data/wal}") Path directory) throws IOException {
+        return new SnapshotStore(directory);
+    }
+
+    @Bean
+    public SnapshotScheduler snapshotScheduler(MemoryImpl repository, WriteAheadLog writeAheadLog,
+                                               @Value("${todoapp.wal.snapshot-interval-ms:60000}") long intervalMillis,
+                                               @Value("${todoapp.wal.snapshot-min-records:100000}") long minRecords) {
+        return new SnapshotScheduler(writeAheadLog, repository::snapshot, intervalMillis, minRecords);
+    }
+}
@@ -0,0 +1,265 @@
+package todoapp.presentation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import todoapp.business.ToDoChange;
+import todoapp.business.ToDoService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans repository changes out to Server-Sent Events subscribers. Writers only enqueue the
+ * change; a dispatcher serializes it once and offers it to every subscriber's bounded
+ * buffer, and a sender pool drains the buffers that have something to send, so an
+ * idle subscriber costs no thread.
+ * <p>
+ * A send blocks while the client isn't reading. The sender pool is fixed, drains wait in
+ * its queue, one per subscriber at most. A sweep every half write timeout drops the
+ * subscribers whose send has been blocked for longer than the write timeout: nothing more
+ * is buffered for them, and their sender completes the emitter with an error once the send
+ * fails. The emitter holds its monitor while it writes, so completing it from the sweep
+ * would only block the sweep; the container's write timeout, server.tomcat.connection-timeout,
+ * ends the blocked write and gives the sender back to the pool.
+ * <p>
+ * A subscriber whose buffer is full loses its buffered changes and gets a resync event
+ * instead, telling it to reload with getAll. Changes are post-images, so applying the ones
+ * that follow a resync over the reloaded list is harmless.
+ */
+@Component
+public class ToDoChangeBroadcaster implements Closeable {
+
+    static final String CHANGE_EVENT = "change";
+    static final String RESYNC_EVENT = "resync";
+
+    // Changes waiting for the dispatcher, a full queue resyncs every subscriber
+    private static final int DISPATCH_QUEUE_SIZE = 65_536;
+
+    private record Event(long sequence, String json) {
+    }
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<ToDoChange> published = new ArrayBlockingQueue<>(DISPATCH_QUEUE_SIZE);
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final ObjectWriter changeWriter;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long writeTimeoutMillis;
+    private final Executor dispatcher;
+    private final Executor senders;
+    private final ScheduledExecutorService sweeper;
+
+    @Autowired
+    public ToDoChangeBroadcaster(ToDoService toDoService, ObjectMapper objectMapper,
+                                 @Value("${todoapp.changes.buffer-size:256}") int bufferSize,
+                                 @Value("${todoapp.changes.timeout-ms:1800000}") long timeoutMillis,
+                                 @Value("${todoapp.changes.write-timeout-ms:10000}") long writeTimeoutMillis,
+                                 @Value("${todoapp.changes.sender-threads:4}") int senderThreads) {
+        this(toDoService, objectMapper, bufferSize, timeoutMillis, writeTimeoutMillis,
+                Executors.newSingleThreadExecutor(daemonThreads("todo-changes-dispatcher")),
+                Executors.newFixedThreadPool(senderThreads, daemonThreads("todo-changes-sender")),
+                Executors.newSingleThreadScheduledExecutor(daemonThreads("todo-changes-sweeper")));
+    }
+
+    ToDoChangeBroadcaster(ToDoService toDoService, ObjectMapper objectMapper, int bufferSize, long timeoutMillis,
+                          long writeTimeoutMillis, Executor dispatcher, Executor senders, ScheduledExecutorService sweeper) {
+        this.changeWriter = objectMapper.writerFor(ToDoChange.class);
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        this.dispatcher = dispatcher;
+        this.senders = senders;
+        this.sweeper = sweeper;
+        long sweepMillis = Math.max(1, writeTimeoutMillis / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        toDoService.addChangeListener(this::publish);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // Runs on the writing thread inside the repository, so it only enqueues
+    private void publish(ToDoChange change) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (!published.offer(change)) {
+            subscribers.forEach(Subscriber::resync);
+            return;
+        }
+        if (dispatching.compareAndSet(false, true)) {
+            dispatcher.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        do {
+            try {
+                ToDoChange change;
+                while ((change = published.poll()) != null) {
+                    String json;
+                    try {
+                        json = toJson(change);
+                    } catch (UncheckedIOException exception) {
+                        // the change can't be sent, so everybody misses it
+                        subscribers.forEach(Subscriber::resync);
+                        continue;
+                    }
+                    Event event = new Event(change.getSequence(), json);
+                    for (Subscriber subscriber : subscribers) {
+                        subscriber.offer(event);
+                    }
+                }
+            } finally {
+                // whatever went wrong, the next publish has to be able to start a dispatch
+                dispatching.set(false);
+            }
+        } while (!published.isEmpty() && dispatching.compareAndSet(false, true));
+    }
+
+    // Drops stalled subscribers even when no change comes to find them
+    private void sweep() {
+        subscribers.forEach(Subscriber::isStalled);
+    }
+
+    private String toJson(ToDoChange change) {
+        try {
+            return changeWriter.writeValueAsString(change);
+        } catch (JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Executor executor : List.of(dispatcher, senders, sweeper)) {
+            if (executor instanceof ExecutorService service) {
+                service.shutdown();
+            }
+        }
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private final class Subscriber {
+
+        private static final long NOT_SENDING = Long.MIN_VALUE;
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean resyncDue = new AtomicBoolean();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // System.nanoTime() when the send in flight started
+        private volatile long sendStarted = NOT_SENDING;
+        private volatile boolean stalled;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // Only the dispatcher offers, it can race a clear only when the dispatch queue
+        // overflowed, and then the subscriber resyncs anyway
+        private void offer(Event event) {
+            if (isStalled()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                resync();
+                return;
+            }
+            schedule();
+        }
+
+        private void resync() {
+            if (isStalled()) {
+                return;
+            }
+            buffer.clear();
+            resyncDue.set(true);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    if (resyncDue.getAndSet(false)) {
+                        send(SseEmitter.event().name(RESYNC_EVENT).data(""));
+                    }
+                    Event event;
+                    while ((event = buffer.poll()) != null) {
+                        send(SseEmitter.event()
+                                .id(Long.toString(event.sequence()))
+                                .name(CHANGE_EVENT)
+                                .data(event.json()));
+                    }
+                    scheduled.set(false);
+                } while ((resyncDue.get() || !buffer.isEmpty()) && scheduled.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException exception) {
+                // the client went away, stopped reading or the emitter timed out
+                subscribers.remove(this);
+                emitter.completeWithError(exception);
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            sendStarted = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                sendStarted = NOT_SENDING;
+            }
+            if (stalled) {
+                throw new IOException("The subscriber didn't read a change for over " + writeTimeoutMillis + " ms");
+            }
+        }
+
+        // Drops the subscriber once its send has been blocked for longer than the write timeout
+        private boolean isStalled() {
+            long started = sendStarted;
+            if (!stalled && started != NOT_SENDING
+                    && System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis)) {
+                stalled = true;
+                subscribers.remove(this);
+                buffer.clear();
+            }
+            return stalled;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package todoapp.presentation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import todoapp.business.ToDoChanges;
+import todoapp.business.ToDoService;
+
+@RestController
+@RequestMapping("/toDo")
+public class ToDoChangeController {
+
+    private final ToDoService toDoService;
+    private final ToDoChangeBroadcaster broadcaster;
+
+    @Autowired
+    public ToDoChangeController(ToDoService toDoService, ToDoChangeBroadcaster broadcaster) {
+        this.toDoService = toDoService;
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * Server-Sent Events stream of "change" events, one ToDoChange as JSON each, and of
+     * "resync" events when this client fell too far behind and should reload with getAll.
+     */
+    @CrossOrigin
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        return broadcaster.subscribe();
+    }
+
+    /**
+     * The changes made after the given sequence, for a client catching up after being
+     * offline. When they're no longer retained the answer only says to resync.
+     */
+    @CrossOrigin
+    @GetMapping(value = "/changes", params = "since", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ToDoChanges getChangesSince(@RequestParam long since) {
+        return toDoService.getChangesSince(since);
+    }
+}
@@ -1,30 +1,100 @@
 package todoapp.presentation;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import todoapp.business.ToDoOperation;
+import todoapp.business.ToDoOperationResult;
+import todoapp.business.ToDoPage;
 import todoapp.business.ToDoService;
 import todoapp.persistence.model.ToDo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/toDo")
 public class ToDoController {
 
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    // Items written between flushes of a streamed response
+    private static final int STREAM_CHUNK_SIZE = 1000;
+
     private final ToDoService toDoService;
+    private final ObjectWriter toDoWriter;
+    private final JsonFactory jsonFactory;
 
     @Autowired
-    public ToDoController(ToDoService toDoService) {
+    public ToDoController(ToDoService toDoService, ObjectMapper objectMapper) {
         this.toDoService = toDoService;
+        // without flushing after every item, the servlet stream would send one chunk per to do
+        this.toDoWriter = objectMapper.writerFor(ToDo.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.jsonFactory = objectMapper.getFactory();
     }
 
-    @CrossOrigin
+    /**
+     * Streams every to do straight from the repository, as a JSON array or, when the client
+     * accepts application/x-ndjson, as one JSON object per line. Nothing is collected first,
+     * so memory stays flat however many to dos are stored.
+     */
+    @CrossOrigin(exposedHeaders = HttpHeaders.ETAG)
     @GetMapping("/getAll")
-    public ResponseEntity<Collection<ToDo>> getAllToDos() {
-        Collection<ToDo> toDos = toDoService.findAllToDos();
-        return new ResponseEntity(toDos, HttpStatus.OK);
+    public void getAllToDos(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (new ServletWebRequest(request, response).checkNotModified(toDoService.getVersionTag())) {
+            return;
+        }
+        boolean ndjson = acceptsNdjson(accept);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        try (Stream<ToDo> toDos = toDoService.streamAllToDos();
+             JsonGenerator generator = jsonFactory.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+            int written = 0;
+            for (Iterator<ToDo> iterator = toDos.iterator(); iterator.hasNext(); ) {
+                toDoWriter.writeValue(generator, iterator.next());
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+                if (++written % STREAM_CHUNK_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    // A header that doesn't parse gets the default JSON array rather than an error
+    private static boolean acceptsNdjson(String accept) {
+        try {
+            return accept != null && MediaType.parseMediaTypes(accept).stream()
+                    .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+        } catch (InvalidMediaTypeException exception) {
+            return false;
+        }
     }
 
     @CrossOrigin
@@ -34,6 +104,13 @@ public class ToDoController {
         return new ResponseEntity(newToDo, HttpStatus.CREATED);
     }
 
+    @CrossOrigin
+    @PostMapping("/batch")
+    public ResponseEntity<List<ToDoOperationResult>> applyBatch(@RequestBody List<ToDoOperation> operations) {
+        List<ToDoOperationResult> results = toDoService.applyBatch(operations);
+        return new ResponseEntity(results, HttpStatus.OK);
+    }
+
     @CrossOrigin
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<ToDo> deleteToDo(@PathVariable("id") String id) {
@@ -43,15 +120,17 @@ public class ToDoController {
 
     @CrossOrigin
     @PutMapping("/{id}/done")
-    public ResponseEntity<ToDo> markToDoAsDone(@PathVariable("id") String id) {
-        ToDo toDo = toDoService.markToDoAsDone(id);
+    public ResponseEntity<ToDo> markToDoAsDone(@PathVariable("id") String id,
+                                               @RequestParam(value = "version", defaultValue = "0") long version) {
+        ToDo toDo = toDoService.markToDoAsDone(id, version);
         return new ResponseEntity(toDo, HttpStatus.OK);
     }
 
     @CrossOrigin
     @PutMapping("/{id}/undone")
-    public ResponseEntity<ToDo> markAsUndone(@PathVariable("id") String id) {
-        ToDo toDo = toDoService.markToDoAsUndone(id);
+    public ResponseEntity<ToDo> markAsUndone(@PathVariable("id") String id,
+                                             @RequestParam(value = "version", defaultValue = "0") long version) {
+        ToDo toDo = toDoService.markToDoAsUndone(id, version);
         return new ResponseEntity(toDo, HttpStatus.OK);
     }
 
@@ -90,17 +169,32 @@ public class ToDoController {
         return new ResponseEntity(toDosFiltered, HttpStatus.OK);
     }
 
+    // Not tagged with the version, to dos turn overdue as days pass without any change
     @CrossOrigin
+    @GetMapping("/overdue")
+    public ResponseEntity<List<ToDo>> getOverdueToDos() {
+        return new ResponseEntity(toDoService.getOverdueToDos(), HttpStatus.OK);
+    }
+
+    @CrossOrigin(exposedHeaders = HttpHeaders.ETAG)
     @GetMapping("/getStats")
-    public ResponseEntity<List<Long>> getToDoStats() {
+    public ResponseEntity<List<Long>> getToDoStats(WebRequest webRequest) {
+        if (webRequest.checkNotModified(toDoService.getVersionTag())) {
+            return null;
+        }
         List<Long> stats = toDoService.getStatistics();
         return new ResponseEntity(stats, HttpStatus.OK);
     }
 
-    @CrossOrigin
+    @CrossOrigin(exposedHeaders = {TOTAL_COUNT_HEADER, HttpHeaders.ETAG})
     @GetMapping("/getToDosFilteredAndSorted")
-    public ResponseEntity<List<ToDo>> getToDosSortedAndFilteredWithPagination(String name, String priority, Boolean doneUnDoneFlag, String priorityOrder, String dateOrder, int pageNumber) {
-        List<ToDo> toDosFilteredAndSorted = toDoService.getToDosSortedAndFilteredWithPagination(name, priority, doneUnDoneFlag, priorityOrder, dateOrder, pageNumber);
-        return new ResponseEntity(toDosFilteredAndSorted, HttpStatus.OK);
+    public ResponseEntity<List<ToDo>> getToDosSortedAndFilteredWithPagination(String name, String priority, Boolean doneUnDoneFlag, String priorityOrder, String dateOrder, int pageNumber, WebRequest webRequest) {
+        if (webRequest.checkNotModified(toDoService.getVersionTag())) {
+            return null;
+        }
+        ToDoPage page = toDoService.getToDoPage(name, priority, doneUnDoneFlag, priorityOrder, dateOrder, pageNumber);
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalCount()))
+                .body(page.getToDos());
     }
     }
@@ -0,0 +1,56 @@
+package todoapp.business;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import todoapp.persistence.exception.ToDoNotFoundException;
+import todoapp.persistence.model.ToDo;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "todoapp.repository.columnar=true")
+class ColumnarToDoRepositoryTest {
+
+    @Autowired
+    ToDoRepository toDoRepository;
+
+    @AfterEach
+    void clearMemory() {
+        toDoRepository.deleteAll();
+    }
+
+    @Test
+    void whenFindByQueryOnPriorityAndFlag_thenColumnScanMatchesObjects() throws ToDoNotFoundException {
+        ToDo toDoOne = toDoRepository.save(new ToDo("Create tests", "High"));
+        ToDo toDoTwo = toDoRepository.save(new ToDo("Start Front End", "Low", LocalDate.parse("2023-12-03")));
+        ToDo toDoThree = toDoRepository.save(new ToDo("Start Back End", "High"));
+        ToDo toDoFour = toDoRepository.save(new ToDo("Get groceries", "Low", LocalDate.parse("2023-12-17")));
+
+        toDoOne = toDoRepository.markAsDone(toDoOne.getId(), toDoOne.getCreationDate().plusMinutes(5));
+        toDoRepository.markAsDone(toDoTwo.getId(), toDoTwo.getCreationDate().plusMinutes(5));
+        toDoFour = toDoRepository.update(toDoFour.getId(), new ToDo("Get groceries", "High", LocalDate.parse("2023-12-17")));
+        toDoRepository.deleteById(toDoThree.getId());
+
+        ToDoPage highPage = toDoRepository.findByQuery(new ToDoQuery("", "High", null, "default", "default", 0, 10));
+        assertThat(highPage.getToDos()).hasSize(2).contains(toDoOne).contains(toDoFour);
+        assertEquals(2, highPage.getTotalCount());
+
+        ToDoPage donePage = toDoRepository.findByQuery(new ToDoQuery("", "default", true, "default", "default", 1, 10));
+        assertThat(donePage.getToDos()).hasSize(1);
+        assertEquals(2, donePage.getTotalCount());
+
+        ToDoPage undoneHighPage = toDoRepository.findByQuery(new ToDoQuery("", "High", false, "default", "default", 0, 10));
+        assertThat(undoneHighPage.getToDos()).containsExactly(toDoFour);
+
+        ToDo reusingFreedSlot = toDoRepository.save(new ToDo("Write docs", "Medium"));
+        assertThat(toDoRepository.findByQuery(new ToDoQuery("", "Medium", false, "default", "default", 0, 10)).getToDos())
+                .containsExactly(reusingFreedSlot);
+    }
+}
@@ -0,0 +1,144 @@
+package todoapp.business;
+
+import org.junit.jupiter.api.Test;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DueDateTrackerTest {
+
+    private static class MovableClock extends Clock {
+
+        private Instant instant = Instant.parse("2023-12-01T10:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    // Stops whoever reads it once armed, until released
+    private static final class BlockingClock extends MovableClock {
+
+        private final CountDownLatch reading = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean armed;
+
+        @Override
+        public Instant instant() {
+            if (armed) {
+                reading.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.instant();
+        }
+    }
+
+    @Test
+    void whenDaysPassAndToDosChange_thenOverdueFollows() throws Exception {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        MovableClock clock = new MovableClock();
+        String loaded = repository.save(new ToDo("Saved before the tracker", "Low", LocalDate.parse("2023-11-30"))).getId();
+        DueDateTracker tracker = new DueDateTracker(repository, clock);
+        String tomorrow = repository.save(new ToDo("Create tests", "High", LocalDate.parse("2023-12-02"))).getId();
+        String nextMonth = repository.save(new ToDo("Start Front End", "Low", LocalDate.parse("2024-01-01"))).getId();
+        repository.save(new ToDo("No due date", "Low"));
+
+        assertEquals(List.of(loaded), tracker.overdueIds());
+        clock.instant = clock.instant.plus(Duration.ofDays(1));
+        assertEquals(List.of(tomorrow), tracker.dueTodayIds());
+        clock.instant = clock.instant.plus(Duration.ofDays(40));
+        assertEquals(List.of(loaded, tomorrow, nextMonth), tracker.overdueIds());
+
+        repository.markAsDone(tomorrow, LocalDateTime.now());
+        repository.deleteById(loaded);
+        ToDo moved = new ToDo("Start Front End", "Low", LocalDate.parse("2024-02-01"));
+        repository.update(nextMonth, moved);
+        assertEquals(List.of(), tracker.overdueIds());
+
+        repository.markAsUndone(tomorrow);
+        assertEquals(List.of(tomorrow), tracker.overdueIds());
+        assertEquals(1, tracker.overdueCount());
+        repository.deleteAll();
+        assertEquals(0, tracker.overdueCount());
+    }
+
+    @Test
+    void whenOverdueToDosAreAsked_thenTheServiceReadsThemFromTheTracker() {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        ToDoService toDoService = new ToDoService(repository, new DueDateTracker(repository, Clock.systemDefaultZone()));
+        toDoService.addToDo(new ToDo("Create tests", "High", LocalDate.now().minusDays(3)));
+        toDoService.addToDo(new ToDo("Start Front End", "Low", LocalDate.now().minusDays(5)));
+        toDoService.addToDo(new ToDo("Start Back End", "Low", LocalDate.now().plusDays(5)));
+
+        assertEquals(List.of("Start Front End", "Create tests"), toDoService.getOverdueToDos().stream().map(ToDo::getName).toList());
+    }
+
+    @Test
+    void whenAReaderHoldsTheTracker_thenWritersDontWaitForIt() throws Exception {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        BlockingClock clock = new BlockingClock();
+        DueDateTracker tracker = new DueDateTracker(repository, clock);
+        clock.armed = true;
+        CompletableFuture<List<String>> reader = CompletableFuture.supplyAsync(tracker::overdueIds);
+        assertTrue(clock.reading.await(10, TimeUnit.SECONDS));
+
+        // more than a writer drains itself, it must leave them queued rather than wait
+        CompletableFuture<String> writer = CompletableFuture.supplyAsync(() -> {
+            String first = null;
+            for (int i = 0; i < 2000; i++) {
+                String id = repository.save(new ToDo("Overdue " + i, "Low", LocalDate.parse("2023-11-01"))).getId();
+                first = first == null ? id : first;
+            }
+            return first;
+        });
+        String first;
+        try {
+            first = writer.get(10, TimeUnit.SECONDS);
+        } finally {
+            clock.armed = false;
+            clock.released.countDown();
+        }
+
+        reader.get(10, TimeUnit.SECONDS);
+        assertEquals(2000, tracker.overdueCount());
+        assertEquals(first, tracker.overdueIds().get(0));
+    }
+
+    @Test
+    void whenServicesShareATracker_thenEachSeesEveryChange() {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        DueDateTracker tracker = new DueDateTracker(repository, new MovableClock());
+        ToDoService first = new ToDoService(repository, tracker);
+        ToDoService second = new ToDoService(repository, tracker);
+        for (int i = 0; i < 3000; i++) {
+            (i % 2 == 0 ? first : second).addToDo(new ToDo("Overdue " + i, "Low", LocalDate.parse("2023-11-01")));
+        }
+
+        assertEquals(3000, tracker.overdueCount());
+        assertEquals(3000, first.getOverdueToDos().size());
+        assertEquals(3000, second.getOverdueToDos().size());
+    }
+}
@@ -0,0 +1,71 @@
+package todoapp.business;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DueDateWheelTest {
+
+    @Test
+    void whenDaysPass_thenDueAndOverdueMatchAFullScan_acrossEveryLevel() {
+        Random random = new Random(42);
+        long start = 19_700;
+        DueDateWheel wheel = new DueDateWheel(start);
+        Map<String, Long> expected = new HashMap<>();
+
+        for (long day = start; day < start + 1_500; day++) {
+            wheel.advanceTo(day);
+            for (int i = 0; i < 20; i++) {
+                String id = "id-" + random.nextInt(2_000);
+                if (random.nextInt(5) == 0) {
+                    wheel.cancel(id);
+                    expected.remove(id);
+                } else {
+                    // mostly near, some a few blocks out, some past every level
+                    long dueDay = switch (random.nextInt(4)) {
+                        case 0 -> day + random.nextInt(64);
+                        case 1 -> day + random.nextInt(5_000);
+                        case 2 -> day - random.nextInt(10);
+                        default -> day + random.nextInt(400_000);
+                    };
+                    wheel.schedule(id, dueDay);
+                    expected.put(id, dueDay);
+                }
+            }
+
+            long today = day;
+            assertEquals(scan(expected, dueDay -> dueDay < today), wheel.overdue());
+            assertEquals(scan(expected, dueDay -> dueDay == today), wheel.dueToday());
+        }
+        assertEquals(expected.size(), wheel.size());
+    }
+
+    @Test
+    void whenAdvancedManyDaysAtOnce_thenEveryPassedEntryIsOverdue() {
+        DueDateWheel wheel = new DueDateWheel(0);
+        wheel.schedule("soon", 3);
+        wheel.schedule("next block", 100);
+        wheel.schedule("far", 300_000);
+        wheel.schedule("later", 301_000);
+
+        wheel.advanceTo(300_000);
+
+        assertEquals(List.of("soon", "next block"), wheel.overdue());
+        assertEquals(List.of("far"), wheel.dueToday());
+        wheel.advanceTo(10);
+        assertEquals(300_000, wheel.today());
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        assertEquals(List.of(), wheel.overdue());
+    }
+
+    private static List<String> scan(Map<String, Long> dueDays, java.util.function.LongPredicate matches) {
+        return dueDays.entrySet().stream()
+                .filter(entry -> matches.test(entry.getValue()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
@@ -0,0 +1,26 @@
+package todoapp.business;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import todoapp.persistence.model.ToDo;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs every repository test again with the to dos stored in a HashTrieMap
+@SpringBootTest(properties = "todoapp.repository.hash-trie=true")
+class HashTrieToDoRepositoryTest extends ToDoRepositoryTest {
+
+    @Test
+    void whenFindAllReturned_thenLaterChangesDontShowInIt() throws Exception {
+        ToDo toDo = toDoRepository.save(new ToDo("Create tests", "High"));
+        List<ToDo> before = toDoRepository.findAll();
+
+        toDoRepository.markAsDone(toDo.getId(), toDo.getCreationDate().plusMinutes(5));
+        toDoRepository.save(new ToDo("Start Front End", "Low"));
+
+        assertThat(before).containsExactly(toDo);
+        assertThat(toDoRepository.findAll()).hasSize(2);
+    }
+}
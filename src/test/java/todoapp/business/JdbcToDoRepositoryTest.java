@@ -0,0 +1,179 @@
+package todoapp.business;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.ConfigurableApplicationContext;
+import todoapp.ToDoAppApplication;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.exception.ToDoAlreadyExistsException;
+import todoapp.persistence.exception.ToDoConflictException;
+import todoapp.persistence.exception.ToDoNotFoundException;
+import todoapp.persistence.jdbc.JdbcToDoRepository;
+import todoapp.persistence.model.ToDo;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The JDBC backend hands out fresh objects, so unlike ToDoRepositoryTest it compares ids and fields
+@SpringBootTest(properties = {"todoapp.repository.backend=jdbc", "todoapp.jdbc.url=jdbc:h2:mem:todos;DB_CLOSE_DELAY=-1"})
+@ExtendWith(OutputCaptureExtension.class)
+class JdbcToDoRepositoryTest {
+
+    @Autowired
+    ToDoRepository toDoRepository;
+
+    @AfterEach
+    void clearTable() {
+        toDoRepository.deleteAll();
+    }
+
+    @Test
+    void whenBackendIsJdbc_thenToDosAreStoredInTheTable() throws ToDoNotFoundException {
+        assertThat(toDoRepository).isInstanceOf(JdbcToDoRepository.class);
+
+        ToDo saved = toDoRepository.save(new ToDo("Create tests", "High", LocalDate.parse("2023-12-03")));
+        ToDo found = toDoRepository.getById(saved.getId());
+
+        assertEquals("Create tests", found.getName());
+        assertEquals("High", found.getPriority());
+        assertEquals(LocalDate.parse("2023-12-03"), found.getDueDate());
+        assertEquals(saved.getCreationDate(), found.getCreationDate());
+        assertEquals(saved.getDaysToComplete(), found.getDaysToComplete());
+        assertEquals(1, found.getVersion());
+        assertEquals(1, toDoRepository.count());
+        assertThat(toDoRepository.findAll()).extracting(ToDo::getId).containsExactly(saved.getId());
+        try (Stream<ToDo> toDos = toDoRepository.streamAll()) {
+            assertThat(toDos).extracting(ToDo::getId).containsExactly(saved.getId());
+        }
+    }
+
+    @Test
+    void whenChanged_thenVersionsNamesAndConflictsFollowTheInMemoryRules() throws ToDoNotFoundException {
+        ToDo saved = toDoRepository.save(new ToDo("Create tests", "High"));
+        toDoRepository.save(new ToDo("Start Front End", "Low"));
+
+        ToDo done = toDoRepository.markAsDone(saved.getId(), saved.getCreationDate().plusMinutes(30), saved.getVersion());
+        Throwable conflict = assertThrows(ToDoConflictException.class,
+                () -> toDoRepository.markAsUndone(saved.getId(), saved.getVersion()));
+        assertThrows(ToDoAlreadyExistsException.class,
+                () -> toDoRepository.update(saved.getId(), new ToDo("Start Front End", "Low")));
+        assertThrows(ToDoAlreadyExistsException.class, () -> toDoRepository.save(new ToDo("Create tests", "Low")));
+        ToDo renamed = toDoRepository.update(saved.getId(), new ToDo("Create more tests", "Low"));
+        ToDo reusingName = toDoRepository.save(new ToDo("Create tests", "Medium"));
+
+        assertEquals(2, done.getVersion());
+        assertEquals(30, done.getTimeToComplete());
+        assertEquals("The to do with the id" + saved.getId() + " is at version 2, not 1", conflict.getMessage());
+        assertEquals(3, renamed.getVersion());
+        assertTrue(renamed.isDoneUndoneFlag());
+        assertEquals("Create tests", reusingName.getName());
+        assertEquals(30, toDoRepository.averageTimeToComplete(null));
+        assertEquals(30, toDoRepository.averageTimeToComplete("Low"));
+        assertEquals(0, toDoRepository.averageTimeToComplete("High"));
+        assertThrows(ToDoNotFoundException.class, () -> toDoRepository.deleteById("missing"));
+        assertThat(toDoRepository.findByNameContaining("MORE")).extracting(ToDo::getId).containsExactly(saved.getId());
+        assertThat(toDoRepository.findByNameContaining("%")).isEmpty();
+    }
+
+    @Test
+    void whenBatchApplied_thenInsertsAreBatched_andFailuresAreReportedPerItem() {
+        ToDo existing = toDoRepository.save(new ToDo("Create tests", "High"));
+        long sequence = toDoRepository.changesSince(Long.MAX_VALUE).getSequence();
+
+        List<ToDoOperationResult> results = toDoRepository.applyBatch(List.of(
+                new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Start Front End", "Low")),
+                new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Start Front End", "High")),
+                new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Create tests", "Low")),
+                new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Start Back End", "Medium")),
+                new ToDoOperation(ToDoOperation.Type.DONE, existing.getId(), null),
+                new ToDoOperation(ToDoOperation.Type.DELETE, "missing", null)), existing.getCreationDate().plusMinutes(5));
+
+        assertThat(results).extracting(ToDoOperationResult::getStatus).containsExactly(
+                ToDoOperationResult.Status.APPLIED, ToDoOperationResult.Status.REJECTED, ToDoOperationResult.Status.REJECTED,
+                ToDoOperationResult.Status.APPLIED, ToDoOperationResult.Status.APPLIED, ToDoOperationResult.Status.NOT_FOUND);
+        assertThat(toDoRepository.findAll()).extracting(ToDo::getName)
+                .containsExactlyInAnyOrder("Create tests", "Start Front End", "Start Back End");
+        assertThat(toDoRepository.changesSince(sequence).getChanges()).extracting(ToDoChange::getType)
+                .containsExactly(ToDoChange.Type.CREATED, ToDoChange.Type.CREATED, ToDoChange.Type.DONE);
+    }
+
+    @Test
+    void whenQueried_thenPagesMatchTheInMemoryRepository() throws ToDoNotFoundException {
+        MemoryImpl memory = new MemoryImpl(MemorySettings.defaults());
+        String[] priorities = {"High", "Medium", "Low", "Someday", "Later"};
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            ToDo toDo = random.nextInt(3) == 0
+                    ? new ToDo("Task #" + i, priorities[random.nextInt(priorities.length)])
+                    : new ToDo("Task #" + i, priorities[random.nextInt(priorities.length)], LocalDate.parse("2023-12-01").plusDays(random.nextInt(30)));
+            ToDo inMemory = memory.save(toDo);
+            ToDo inTable = toDoRepository.save(toDo);
+            if (i % 4 == 0) {
+                memory.markAsDone(inMemory.getId(), inMemory.getCreationDate().plusMinutes(i));
+                toDoRepository.markAsDone(inTable.getId(), inTable.getCreationDate().plusMinutes(i));
+            }
+        }
+
+        List<ToDoQuery> queries = new ArrayList<>();
+        for (String priorityOrder : new String[]{"default", "asc", "desc"}) {
+            for (String dateOrder : new String[]{"default", "asc", "desc"}) {
+                queries.add(new ToDoQuery("", "default", null, priorityOrder, dateOrder, 20, 15));
+                queries.add(new ToDoQuery("#1", "Low", null, priorityOrder, dateOrder, 0, 10));
+                queries.add(new ToDoQuery("", "default", true, priorityOrder, dateOrder, 5, 50));
+                queries.add(new ToDoQuery("", "Someday", false, priorityOrder, dateOrder, 0, 20));
+            }
+        }
+        for (ToDoQuery query : queries) {
+            ToDoPage expected = memory.findByQuery(query);
+            ToDoPage actual = toDoRepository.findByQuery(query);
+            assertEquals(expected.getTotalCount(), actual.getTotalCount());
+            if (query.isSorted()) {
+                assertThat(actual.getToDos()).extracting(ToDo::getName)
+                        .containsExactlyElementsOf(expected.getToDos().stream().map(ToDo::getName).toList());
+            } else {
+                assertEquals(expected.getToDos().size(), actual.getToDos().size());
+            }
+        }
+        assertEquals(memory.averageTimeToComplete(null), toDoRepository.averageTimeToComplete(null));
+        assertEquals(memory.averageTimeToComplete("Someday"), toDoRepository.averageTimeToComplete("Someday"));
+    }
+
+    @Test
+    void whenDatabaseClosedBeforeTheContext_thenTheContextStillClosesQuietly(@TempDir Path directory, CapturedOutput output) {
+        String url = "jdbc:h2:file:" + directory.resolve("todos");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ToDoAppApplication.class).web(WebApplicationType.NONE)
+                .run("--todoapp.repository.backend=jdbc", "--todoapp.jdbc.url=" + url);
+        context.getBean(ToDoRepository.class).save(new ToDo("Create tests", "High"));
+
+        // what H2's exit hook does when the URL leaves DB_CLOSE_ON_EXIT on
+        try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } catch (SQLException closedUnderUs) {
+            // closing the statement after SHUTDOWN fails already
+        }
+        context.close();
+
+        assertFalse(context.isActive());
+        assertThat(output.getAll()).doesNotContain("Invocation of close method failed");
+    }
+}
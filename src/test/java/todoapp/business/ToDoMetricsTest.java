@@ -0,0 +1,64 @@
+package todoapp.business;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.Clock;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToDoMetricsTest {
+
+    private MeterRegistry registry;
+    private ToDoService toDoService;
+
+    @BeforeEach
+    void createService() {
+        registry = new SimpleMeterRegistry();
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        toDoService = new ToDoService(repository, new ToDoMetrics(registry), ToDoQueryCache.disabled(),
+                new DueDateTracker(repository, Clock.systemDefaultZone()));
+    }
+
+    @Test
+    void whenRepositoryCalled_thenCallsAreTimedPerOperation_evenWhenTheyFail() {
+        ToDo toDo = toDoService.addToDo(new ToDo("Create tests", "High"));
+        toDoService.addToDo(new ToDo("Start Front End", "Low"));
+        toDoService.markToDoAsDone(toDo.getId());
+        assertThrows(ResponseStatusException.class, () -> toDoService.markToDoAsDone("missing"));
+
+        assertEquals(2, registry.get("todo.repository.calls").tag("operation", "save").timer().count());
+        assertEquals(2, registry.get("todo.repository.calls").tag("operation", "markAsDone").timer().count());
+        assertEquals(2, registry.get("todo.repository.size").gauge().value());
+    }
+
+    @Test
+    void whenPageQueried_thenRowsScannedAndReturnedAreRecorded() {
+        for (int i = 0; i < 15; i++) {
+            toDoService.addToDo(new ToDo("Task " + i, i % 3 == 0 ? "High" : "Low"));
+        }
+
+        toDoService.getToDoPage("", "High", null, "default", "default", 1);
+
+        assertEquals(15, registry.get("todo.query.rows.scanned").summary().totalAmount());
+        assertEquals(5, registry.get("todo.query.rows.returned").summary().totalAmount());
+    }
+
+    @Test
+    void whenListOperationsRun_thenServiceOperationsAreTimed() {
+        List<ToDo> toDos = List.of(new ToDo("Create tests", "High"), new ToDo("Start Front End", "Low"));
+
+        toDoService.filterToDosByPriority(toDos, "High");
+        toDoService.stableSort(toDos, "asc", "desc");
+
+        assertEquals(1, registry.get("todo.service.operations").tag("operation", "filterByPriority").timer().count());
+        assertEquals(1, registry.get("todo.service.operations").tag("operation", "stableSort").timer().count());
+    }
+}
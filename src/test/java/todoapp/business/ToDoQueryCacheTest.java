@@ -0,0 +1,109 @@
+package todoapp.business;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToDoQueryCacheTest {
+
+    private MeterRegistry registry;
+
+    @BeforeEach
+    void createRegistry() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("cache", "todo.queries").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    void whenPageRequestedAgain_thenServedFromTheCache_untilTheNextMutation() {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        ToDoService toDoService = new ToDoService(repository, new ToDoMetrics(registry), new ToDoQueryCache(1000, registry),
+                new DueDateTracker(repository, Clock.systemDefaultZone()));
+        ToDo toDo = toDoService.addToDo(new ToDo("Create tests", "High"));
+        toDoService.addToDo(new ToDo("Start Front End", "Low"));
+
+        ToDoPage firstPage = toDoService.getToDoPage("", "High", null, "default", "default", 1);
+        ToDoPage secondPage = toDoService.getToDoPage("", "High", null, "default", "default", 1);
+
+        assertSame(firstPage, secondPage);
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+        assertEquals(1, registry.get("todo.repository.calls").tag("operation", "findByQuery").timer().count());
+
+        toDoService.markToDoAsDone(toDo.getId());
+        ToDoPage pageAfterDone = toDoService.getToDoPage("", "High", null, "default", "default", 1);
+
+        assertNotSame(firstPage, pageAfterDone);
+        assertTrue(pageAfterDone.getToDos().get(0).isDoneUndoneFlag());
+        assertEquals(2, gets("miss"));
+    }
+
+    @Test
+    void whenDefaultsSpelledDifferently_thenTheyShareAnEntry() {
+        ToDoQueryCache cache = new ToDoQueryCache(1000, registry);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(new ToDoQuery("", "default", null, "default", "default", 0, 10), 1, () -> loadEmptyPage(loads));
+        cache.get(new ToDoQuery(null, null, null, null, "none", 0, 10), 1, () -> loadEmptyPage(loads));
+        cache.get(new ToDoQuery(null, null, null, null, null, 10, 10), 1, () -> loadEmptyPage(loads));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void whenAnOlderVersionIsAskedLate_thenTheNewerPagesStay() {
+        ToDoQueryCache cache = new ToDoQueryCache(1000, registry);
+        AtomicInteger loads = new AtomicInteger();
+        ToDoQuery query = new ToDoQuery(null, null, null, null, null, 0, 10);
+
+        cache.get(query, 2, () -> loadEmptyPage(loads));
+        cache.get(query, 1, () -> loadEmptyPage(loads));
+        cache.get(query, 2, () -> loadEmptyPage(loads));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void whenHeldToDosExceedTheBound_thenPagesAreEvicted() {
+        ToDoQueryCache cache = new ToDoQueryCache(20, registry);
+        ToDoPage fullPage = new ToDoPage(Collections.nCopies(10, new ToDo("Create tests", "High")), 10);
+
+        for (int pageNumber = 0; pageNumber < 10; pageNumber++) {
+            cache.get(new ToDoQuery(null, null, null, null, null, pageNumber * 10, 10), 1, () -> fullPage);
+        }
+        cache.cleanUp();
+
+        assertTrue(registry.get("cache.evictions").tag("cache", "todo.queries").functionCounter().count() > 0);
+    }
+
+    @Test
+    void whenDisabled_thenEveryCallLoads() {
+        ToDoQueryCache cache = ToDoQueryCache.disabled();
+        AtomicInteger loads = new AtomicInteger();
+        ToDoQuery query = new ToDoQuery(null, null, null, null, null, 0, 10);
+
+        cache.get(query, 1, () -> loadEmptyPage(loads));
+        cache.get(query, 1, () -> loadEmptyPage(loads));
+
+        assertEquals(2, loads.get());
+    }
+
+    private static ToDoPage loadEmptyPage(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new ToDoPage(List.of(), 0);
+    }
+}
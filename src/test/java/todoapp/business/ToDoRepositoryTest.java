@@ -7,6 +7,10 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.exception.ToDoAlreadyExistsException;
+import todoapp.persistence.exception.ToDoConflictException;
 import todoapp.persistence.exception.ToDoNotFoundException;
 import todoapp.persistence.model.ToDo;
 
@@ -47,6 +51,103 @@ class ToDoRepositoryTest {
                 .isEmpty();
     }
 
+    // findByNameContaining()
+    @Test
+    void whenFindByNameContaining_thenMatchIgnoringCase() {
+        ToDo toDoOne = toDoRepository.save(new ToDo("Start Front End", "Low"));
+        ToDo toDoTwo = toDoRepository.save(new ToDo("Start Back End", "Medium"));
+        toDoRepository.save(new ToDo("Get groceries", "Low"));
+
+        assertThat(toDoRepository.findByNameContaining("END")).hasSize(2).contains(toDoOne).contains(toDoTwo);
+        assertThat(toDoRepository.findByNameContaining("t b")).hasSize(1).contains(toDoTwo);
+        assertThat(toDoRepository.findByNameContaining("st")).hasSize(2);
+        assertThat(toDoRepository.findByNameContaining("groceries!")).isEmpty();
+    }
+
+    @Test
+    void whenNameUpdatedOrDeleted_thenFindByNameContainingFollows() throws ToDoNotFoundException {
+        ToDo toDoOne = toDoRepository.save(new ToDo("Start Front End", "Low"));
+        ToDo toDoTwo = toDoRepository.save(new ToDo("Get groceries", "Low"));
+
+        toDoOne = toDoRepository.update(toDoOne.getId(), new ToDo("Write docs", "Low", LocalDate.parse("2023-06-29")));
+        toDoRepository.deleteById(toDoTwo.getId());
+
+        assertThat(toDoRepository.findByNameContaining("front")).isEmpty();
+        assertThat(toDoRepository.findByNameContaining("groceries")).isEmpty();
+        assertThat(toDoRepository.findByNameContaining("docs")).hasSize(1).contains(toDoOne);
+    }
+
+    // findByQuery()
+    @Test
+    void whenFindByQuerySorted_thenWalkPriorityAndDueDateOrder() throws ToDoNotFoundException {
+        ToDo highLate = toDoRepository.save(new ToDo("Create tests", "High", LocalDate.parse("2023-12-17")));
+        ToDo lowEarly = toDoRepository.save(new ToDo("Start Front End", "Low", LocalDate.parse("2023-12-02")));
+        ToDo highUndated = toDoRepository.save(new ToDo("Start Back End", "High"));
+        ToDo highEarly = toDoRepository.save(new ToDo("Get groceries", "Medium", LocalDate.parse("2023-12-06")));
+        ToDo lowUndated = toDoRepository.save(new ToDo("Write docs", "Low"));
+
+        highEarly = toDoRepository.update(highEarly.getId(), new ToDo("Get groceries", "High", LocalDate.parse("2023-12-06")));
+
+        assertThat(toDoRepository.findByQuery(new ToDoQuery("", "default", null, "asc", "desc", 0, 10)).getToDos())
+                .containsExactly(highLate, highEarly, highUndated, lowEarly, lowUndated);
+        assertThat(toDoRepository.findByQuery(new ToDoQuery("", "default", null, "desc", "asc", 0, 10)).getToDos())
+                .containsExactly(lowEarly, lowUndated, highEarly, highLate, highUndated);
+        assertThat(toDoRepository.findByQuery(new ToDoQuery("", "default", null, "default", "asc", 1, 2)).getToDos())
+                .containsExactly(highEarly, highLate);
+
+        toDoRepository.deleteById(highLate.getId());
+
+        ToDoPage page = toDoRepository.findByQuery(new ToDoQuery("", "High", null, "default", "desc", 0, 1));
+        assertThat(page.getToDos()).containsExactly(highEarly);
+        assertEquals(2, page.getTotalCount());
+    }
+
+    @Test
+    void whenFindByQuerySortedAndFiltered_thenOnlyTheFilteredRankIsWalked_andTotalsAreCounted() throws ToDoNotFoundException {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        for (int i = 0; i < 30; i++) {
+            ToDo low = repository.save(new ToDo("Low " + i, "Low", LocalDate.parse("2023-12-01").plusDays(i)));
+            if (i < 10) {
+                repository.markAsDone(low.getId(), low.getCreationDate().plusMinutes(5));
+            }
+        }
+        ToDo firstHigh = null;
+        for (int i = 0; i < 5; i++) {
+            ToDo high = repository.save(new ToDo("High " + i, "High", LocalDate.parse("2023-12-01").plusDays(i)));
+            firstHigh = firstHigh == null ? high : firstHigh;
+            if (i >= 3) {
+                repository.markAsDone(high.getId(), high.getCreationDate().plusMinutes(5));
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            repository.save(new ToDo("Later " + i, "Later"));
+        }
+
+        ToDoPage high = repository.findByQuery(new ToDoQuery("", "High", null, "asc", "asc", 0, 2));
+        assertThat(high.getToDos()).extracting(ToDo::getName).containsExactly("High 0", "High 1");
+        assertEquals(5, high.getTotalCount());
+        assertEquals(2, high.getScannedCount());
+
+        ToDoPage highDone = repository.findByQuery(new ToDoQuery("", "High", true, "default", "desc", 0, 10));
+        assertThat(highDone.getToDos()).extracting(ToDo::getName).containsExactly("High 4", "High 3");
+        assertEquals(2, highDone.getTotalCount());
+        assertEquals(5, highDone.getScannedCount());
+
+        ToDoPage open = repository.findByQuery(new ToDoQuery("", "default", false, "asc", "default", 0, 3));
+        assertThat(open.getToDos()).extracting(ToDo::getName).containsExactly("Later 0", "Later 1", "Later 2");
+        assertEquals(26, open.getTotalCount());
+        assertEquals(3, open.getScannedCount());
+
+        // priorities outside High/Medium/Low share a rank, so they're counted while walking it
+        ToDoPage later = repository.findByQuery(new ToDoQuery("", "Later", null, "default", "asc", 0, 1));
+        assertEquals(1, later.getToDos().size());
+        assertEquals(3, later.getTotalCount());
+        assertEquals(3, later.getScannedCount());
+
+        repository.deleteById(firstHigh.getId());
+        assertEquals(4, repository.findByQuery(new ToDoQuery("", "High", null, "asc", "asc", 0, 2)).getTotalCount());
+    }
+
     //save()
     @Test
     void whenObjectGiven_andDoesNotExistsOnList_thenAddObject() {
@@ -71,10 +172,9 @@ class ToDoRepositoryTest {
 
         String savedId = toDoSaved.getId();
 
-        ToDo toDoUpdated = new ToDo("Create Back End", "Low", LocalDate.parse("2023-06-29"));
-        toDoUpdated.setId(savedId);
+        ToDo toDoUpdated = new ToDo("Create Back End", "Low", LocalDate.parse("2023-06-29")).withId(savedId);
 
-        toDoRepository.save(toDoUpdated);
+        toDoUpdated = toDoRepository.save(toDoUpdated);
 
         assertThat(toDoRepository.findAll()).hasSize(1).contains(toDoUpdated);
         assertEquals("Create Back End", toDoUpdated.getName());
@@ -93,6 +193,76 @@ class ToDoRepositoryTest {
         assertEquals("The object can't be null", exception.getMessage());
     }
 
+    @Test
+    void whenSaveObject_andNameAlreadyExists_thenThrowToDoAlreadyExistsException() {
+        toDoRepository.save(new ToDo("Create tests", "High"));
+
+        Throwable exception = assertThrows(
+                ToDoAlreadyExistsException.class, () -> toDoRepository.save(new ToDo("Create tests", "Low"))
+        );
+
+        assertEquals("The To Do with the name Create testsis already created ", exception.getMessage());
+        assertThat(toDoRepository.findAll()).hasSize(1);
+    }
+
+    //update
+    @Test
+    void whenUpdateName_thenOldNameIsReleased_andNewNameIsTaken() throws ToDoNotFoundException {
+        ToDo toDoSaved = toDoRepository.save(new ToDo("Create tests", "High"));
+        toDoRepository.save(new ToDo("Start Front End", "Low"));
+
+        toDoRepository.update(toDoSaved.getId(), new ToDo("Create Back End", "Low", LocalDate.parse("2023-06-29")));
+
+        assertEquals("Create Back End", toDoRepository.getById(toDoSaved.getId()).getName());
+        assertThrows(ToDoAlreadyExistsException.class, () -> toDoRepository.save(new ToDo("Create Back End", "Low")));
+        assertThrows(ToDoAlreadyExistsException.class,
+                () -> toDoRepository.update(toDoSaved.getId(), new ToDo("Start Front End", "Low", LocalDate.parse("2023-06-29"))));
+        assertEquals("Create Back End", toDoRepository.getById(toDoSaved.getId()).getName());
+
+        ToDo toDoReusingName = toDoRepository.save(new ToDo("Create tests", "Medium"));
+        assertThat(toDoRepository.findAll()).hasSize(3).contains(toDoReusingName);
+    }
+
+    @Test
+    void whenUpdate_andObjectIsNotFound_throwToDoNotFoundException() {
+        String invalidId = "a67-hsb6";
+        Throwable exception = assertThrows(
+                ToDoNotFoundException.class, () -> toDoRepository.update(invalidId, new ToDo("Create tests", "High"))
+        );
+
+        assertEquals("The to do with the id" + invalidId + " was not found", exception.getMessage());
+    }
+
+    // averageTimeToComplete()
+    @Test
+    void whenMarkedDoneUndoneUpdatedAndDeleted_thenAveragesFollow() throws ToDoNotFoundException {
+        ToDo highFast = toDoRepository.save(new ToDo("Create tests", "High"));
+        ToDo highSlow = toDoRepository.save(new ToDo("Start Front End", "High"));
+        ToDo low = toDoRepository.save(new ToDo("Start Back End", "Low", LocalDate.parse("2023-12-03")));
+        toDoRepository.save(new ToDo("Get groceries", "Medium"));
+
+        toDoRepository.markAsDone(highFast.getId(), highFast.getCreationDate().plusMinutes(30));
+        toDoRepository.markAsDone(highSlow.getId(), highSlow.getCreationDate().plusMinutes(60));
+        toDoRepository.markAsDone(low.getId(), low.getCreationDate().plusMinutes(10));
+
+        assertEquals(33, toDoRepository.averageTimeToComplete(null));
+        assertEquals(45, toDoRepository.averageTimeToComplete("High"));
+        assertEquals(0, toDoRepository.averageTimeToComplete("Medium"));
+        assertEquals(10, toDoRepository.averageTimeToComplete("Low"));
+
+        toDoRepository.markAsUndone(highSlow.getId());
+        toDoRepository.update(low.getId(), new ToDo("Start Back End", "High", LocalDate.parse("2023-12-03")));
+
+        assertEquals(20, toDoRepository.averageTimeToComplete(null));
+        assertEquals(20, toDoRepository.averageTimeToComplete("High"));
+        assertEquals(0, toDoRepository.averageTimeToComplete("Low"));
+
+        toDoRepository.deleteById(highFast.getId());
+
+        assertEquals(10, toDoRepository.averageTimeToComplete(null));
+        assertEquals(10, toDoRepository.averageTimeToComplete("High"));
+    }
+
     //getById
     @Test
     void whenGetById_ObjectFound_ObjectReturned() throws ToDoNotFoundException {
@@ -138,6 +308,9 @@ class ToDoRepositoryTest {
                 .hasSize(2)
                 .doesNotContainNull()
                 .doesNotContain(toDoToDelete);
+
+        ToDo toDoReusingName = toDoRepository.save(new ToDo("Start Front End", "Low"));
+        assertThat(toDoRepository.findAll()).hasSize(3).contains(toDoReusingName);
     }
 
     @Test
@@ -158,4 +331,98 @@ class ToDoRepositoryTest {
 
         assertEquals("The to do with the id" + invalidId + " was not found", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    // version()
+    @Test
+    void whenMutated_thenVersionIncreases_andFailedMutationsLeaveIt() throws Exception {
+        long initialVersion = toDoRepository.version();
+        ToDo toDo = toDoRepository.save(new ToDo("Create tests", "High"));
+        long afterSave = toDoRepository.version();
+        toDoRepository.markAsDone(toDo.getId(), toDo.getCreationDate().plusMinutes(1));
+        long afterDone = toDoRepository.version();
+        toDoRepository.markAsUndone(toDo.getId());
+        long afterUndone = toDoRepository.version();
+        assertThrows(ToDoAlreadyExistsException.class, () -> toDoRepository.save(new ToDo("Create tests", "Low")));
+        assertThrows(ToDoNotFoundException.class, () -> toDoRepository.markAsDone("missing", toDo.getCreationDate()));
+        toDoRepository.findAll();
+
+        assertThat(afterSave).isGreaterThan(initialVersion);
+        assertThat(afterDone).isGreaterThan(afterSave);
+        assertThat(afterUndone).isGreaterThan(afterDone);
+        assertEquals(afterUndone, toDoRepository.version());
+    }
+
+    // changesSince()
+    @Test
+    void whenChangesRetained_thenOnlyTheChangesAfterTheSequenceAreReturned() throws Exception {
+        ToDo toDo = toDoRepository.save(new ToDo("Create tests", "High"));
+        ToDoChanges sinceCreated = toDoRepository.changesSince(0);
+        long afterCreated = toDoRepository.changesSince(Long.MAX_VALUE).getSequence();
+        toDoRepository.markAsDone(toDo.getId(), toDo.getCreationDate().plusMinutes(5));
+        toDoRepository.deleteById(toDo.getId());
+
+        ToDoChanges changes = toDoRepository.changesSince(afterCreated);
+
+        assertTrue(sinceCreated.isResync());
+        assertFalse(changes.isResync());
+        assertThat(changes.getChanges()).extracting(ToDoChange::getType)
+                .containsExactly(ToDoChange.Type.DONE, ToDoChange.Type.DELETED);
+        assertEquals(afterCreated + 2, changes.getSequence());
+        assertTrue(changes.getChanges().get(0).getToDo().isDoneUndoneFlag());
+        assertThat(toDoRepository.changesSince(changes.getSequence()).getChanges()).isEmpty();
+    }
+
+    @Test
+    void whenChangesAgedOut_thenResyncIsAnswered_withTheSequenceToContinueFrom() {
+        ToDoRepository smallRepository = new MemoryImpl(MemorySettings.defaults().withRetainedChanges(4));
+        long start = smallRepository.changesSince(Long.MAX_VALUE).getSequence();
+        for (int i = 0; i < 6; i++) {
+            smallRepository.save(new ToDo("Task " + i, "Low"));
+        }
+
+        ToDoChanges agedOut = smallRepository.changesSince(start + 1);
+        ToDoChanges retained = smallRepository.changesSince(start + 2);
+
+        assertTrue(agedOut.isResync());
+        assertEquals(start + 6, agedOut.getSequence());
+        assertFalse(retained.isResync());
+        assertThat(retained.getChanges()).extracting(change -> change.getToDo().getName())
+                .containsExactly("Task 2", "Task 3", "Task 4", "Task 5");
+    }
+
+    // versions
+    @Test
+    void whenChanged_thenANewVersionIsPublished_andTheOldValueIsLeftAlone() throws Exception {
+        ToDo saved = toDoRepository.save(new ToDo("Create tests", "High"));
+
+        ToDo done = toDoRepository.markAsDone(saved.getId(), saved.getCreationDate().plusMinutes(5), saved.getVersion());
+        ToDo updated = toDoRepository.update(saved.getId(), new ToDo("Create more tests", "Low", LocalDate.parse("2023-06-29")));
+
+        assertEquals(1, saved.getVersion());
+        assertFalse(saved.isDoneUndoneFlag());
+        assertNull(saved.getDoneDate());
+        assertEquals(2, done.getVersion());
+        assertTrue(done.isDoneUndoneFlag());
+        assertEquals("Create tests", done.getName());
+        assertEquals(3, updated.getVersion());
+        assertSame(updated, toDoRepository.getById(saved.getId()));
+    }
+
+    @Test
+    void whenChangedFromAStaleVersion_thenToDoConflictException_andNothingChanges() throws Exception {
+        ToDo saved = toDoRepository.save(new ToDo("Create tests", "High"));
+        toDoRepository.markAsDone(saved.getId(), saved.getCreationDate().plusMinutes(5), saved.getVersion());
+        ToDo staleUpdate = new ToDo("Create more tests", "Low").withVersion(saved.getVersion());
+
+        Throwable exception = assertThrows(ToDoConflictException.class,
+                () -> toDoRepository.markAsUndone(saved.getId(), saved.getVersion()));
+        assertThrows(ToDoConflictException.class, () -> toDoRepository.update(saved.getId(), staleUpdate));
+
+        assertEquals("The to do with the id" + saved.getId() + " is at version 2, not 1", exception.getMessage());
+        ToDo stored = toDoRepository.getById(saved.getId());
+        assertEquals(2, stored.getVersion());
+        assertTrue(stored.isDoneUndoneFlag());
+        assertEquals("Create tests", stored.getName());
+        assertThat(toDoRepository.findByNameContaining("more")).isEmpty();
+    }
+}
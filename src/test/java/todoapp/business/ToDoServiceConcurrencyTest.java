@@ -0,0 +1,206 @@
+package todoapp.business;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.server.ResponseStatusException;
+import todoapp.persistence.model.ToDo;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+class ToDoServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TODOS_PER_THREAD = 500;
+
+    @Autowired
+    ToDoService toDoService;
+
+    @Autowired
+    ToDoRepository toDoRepository;
+
+    @AfterEach
+    void clearMemory() {
+        toDoService.deleteAllToDos();
+    }
+
+    @Test
+    void whenParallelAddUpdateDoneAndDelete_thenRepositoryStaysConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            int threadNumber = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<String> survivors = new ArrayList<>();
+                for (int i = 0; i < TODOS_PER_THREAD; i++) {
+                    ToDo added = toDoService.addToDo(new ToDo("Task " + threadNumber + "-" + i, "Low"));
+                    toDoService.updateToDo(added.getId(), new ToDo("Task " + threadNumber + "-" + i + " updated", "High", LocalDate.parse("2023-12-03")));
+                    toDoService.markToDoAsDone(added.getId());
+                    if (i % 2 == 0) {
+                        toDoService.deleteToDo(added.getId());
+                    } else {
+                        survivors.add(added.getId());
+                    }
+                }
+                return survivors;
+            }));
+        }
+
+        start.countDown();
+        Set<String> expectedIds = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            expectedIds.addAll(future.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        List<ToDo> storedToDos = toDoService.findAllToDos();
+
+        assertThat(storedToDos).hasSize(THREADS * TODOS_PER_THREAD / 2);
+        assertThat(storedToDos).extracting(ToDo::getId).containsExactlyInAnyOrderElementsOf(expectedIds);
+        assertThat(storedToDos).extracting(ToDo::getName).doesNotHaveDuplicates();
+        for (ToDo toDo : storedToDos) {
+            assertTrue(toDo.isDoneUndoneFlag());
+            assertNotNull(toDo.getDoneDate());
+            assertEquals("High", toDo.getPriority());
+            assertTrue(toDo.getName().endsWith(" updated"));
+        }
+    }
+
+    @Test
+    void whenParallelAddsShareAName_thenExactlyOneIsStored() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    toDoService.addToDo(new ToDo("Same name", "High"));
+                    return true;
+                } catch (ResponseStatusException exception) {
+                    return false;
+                }
+            }));
+        }
+
+        start.countDown();
+        int created = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get(60, TimeUnit.SECONDS)) {
+                created++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, created);
+        assertThat(toDoService.findAllToDos()).hasSize(1);
+    }
+
+    @Test
+    void whenDoneStateToggles_thenReadersNeverSeeAHalfAppliedChange_andStaleWritesConflict() throws Exception {
+        ToDo toDo = toDoService.addToDo(new ToDo("Create tests", "High"));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            int threadNumber = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                int conflicts = 0;
+                for (int i = 0; i < TODOS_PER_THREAD; i++) {
+                    ToDo seen = toDoRepository.getById(toDo.getId());
+                    assertEquals(seen.isDoneUndoneFlag(), seen.getDoneDate() != null);
+                    assertEquals(seen.isDoneUndoneFlag(), seen.getTimeToComplete() != null);
+                    if (threadNumber % 2 == 0) {
+                        try {
+                            if (seen.isDoneUndoneFlag()) {
+                                toDoService.markToDoAsUndone(seen.getId(), seen.getVersion());
+                            } else {
+                                toDoService.markToDoAsDone(seen.getId(), seen.getVersion());
+                            }
+                        } catch (ResponseStatusException exception) {
+                            assertEquals(409, exception.getStatusCode().value());
+                            conflicts++;
+                        }
+                    }
+                }
+                return conflicts;
+            }));
+        }
+
+        start.countDown();
+        int conflicts = 0;
+        for (Future<Integer> future : futures) {
+            conflicts += future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // every toggle that didn't conflict moved the version by exactly one
+        int toggles = THREADS / 2 * TODOS_PER_THREAD - conflicts;
+        assertEquals(1 + toggles, toDoRepository.getById(toDo.getId()).getVersion());
+    }
+
+    @Test
+    void whenDeleteAllRacesAdds_thenNoNameOrIndexEntryOutlivesItsToDo() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch added = new CountDownLatch(THREADS - 1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS - 1; thread++) {
+            int threadNumber = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TODOS_PER_THREAD; i++) {
+                    toDoService.addToDo(new ToDo("Task " + threadNumber + "-" + i, "Low"));
+                }
+                added.countDown();
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            start.await();
+            while (added.getCount() > 0) {
+                toDoService.deleteAllToDos();
+            }
+            return null;
+        }));
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<ToDo> storedToDos = toDoService.findAllToDos();
+        assertEquals(storedToDos.size(), toDoRepository.count());
+        assertThat(toDoRepository.findByNameContaining("Task ")).hasSameSizeAs(storedToDos);
+        Set<String> storedNames = new HashSet<>();
+        storedToDos.forEach(toDo -> storedNames.add(toDo.getName()));
+        // a name whose to do was cleared must be free again
+        for (int thread = 0; thread < THREADS - 1; thread++) {
+            for (int i = 0; i < TODOS_PER_THREAD; i++) {
+                String name = "Task " + thread + "-" + i;
+                if (!storedNames.contains(name)) {
+                    toDoService.addToDo(new ToDo(name, "Low"));
+                }
+            }
+        }
+        assertEquals((THREADS - 1) * TODOS_PER_THREAD, toDoRepository.count());
+    }
+}
@@ -169,9 +169,9 @@ class ToDoServiceTest {
 
         ToDo newToDo = toDoService.updateToDo(toDoId, new ToDo("Get groceries", "Medium", LocalDate.parse("2023-12-03")));
 
-        assertEquals("Get groceries", testToDo.getName());
-        assertEquals("Medium", testToDo.getPriority());
-        assertEquals(LocalDate.parse("2023-12-03"), testToDo.getDueDate());
+        assertEquals("Get groceries", newToDo.getName());
+        assertEquals("Medium", newToDo.getPriority());
+        assertEquals(LocalDate.parse("2023-12-03"), newToDo.getDueDate());
 
         assertEquals(newToDo.getId(), toDoId);
 
@@ -245,7 +245,7 @@ class ToDoServiceTest {
     @Test
     void whenMarkToDoAsDone_successfullyUpdated() {
         ToDo toDoAdded = toDoService.addToDo(new ToDo("Start Front End", "Low"));
-        toDoService.markToDoAsDone(toDoAdded.getId());
+        toDoAdded = toDoService.markToDoAsDone(toDoAdded.getId());
 
         assertTrue(toDoAdded.isDoneUndoneFlag());
     }
@@ -274,11 +274,11 @@ class ToDoServiceTest {
     @Test
     void whenMarkToDoAsUndone_successfullyUpdated() {
         ToDo toDoAdded = toDoService.addToDo(new ToDo("Start Front End", "Low"));
-        toDoService.markToDoAsDone(toDoAdded.getId());
+        toDoAdded = toDoService.markToDoAsDone(toDoAdded.getId());
 
         assertTrue(toDoAdded.isDoneUndoneFlag());
 
-        toDoService.markToDoAsUndone(toDoAdded.getId());
+        toDoAdded = toDoService.markToDoAsUndone(toDoAdded.getId());
 
         assertFalse(toDoAdded.isDoneUndoneFlag());
         assertNull(toDoAdded.getDoneDate());
@@ -429,6 +429,84 @@ class ToDoServiceTest {
         assertThat(actualList).isEqualTo(expectedList);
     }
 
+    @Test
+    void whenMoreThanOnePage_thenFilterAndSortBeforePaging_andCountAllMatches() {
+        List<ToDo> lowToDos = new ArrayList<>();
+        for (int day = 1; day <= 24; day++) {
+            ToDo toDo = toDoService.addToDo(new ToDo("Task " + day, day % 2 == 0 ? "Low" : "High", LocalDate.of(2023, 12, day)));
+            if (day % 2 == 0) {
+                lowToDos.add(0, toDo);
+            }
+        }
+
+        ToDoPage firstPage = toDoService.getToDoPage("", "Low", null, "default", "desc", 1);
+        ToDoPage secondPage = toDoService.getToDoPage("", "Low", null, "default", "desc", 2);
+
+        assertEquals(12, firstPage.getTotalCount());
+        assertThat(firstPage.getToDos()).isEqualTo(lowToDos.subList(0, 10));
+        assertThat(secondPage.getToDos()).isEqualTo(lowToDos.subList(10, 12));
+        assertThat(toDoService.getToDoPage("task 2", "default", null, "default", "default", 1).getToDos()).hasSize(6);
+        assertThat(toDoService.getToDoPage("", "default", null, "default", "default", 3).getToDos()).hasSize(4);
+    }
+
+    @Test
+    void whenPageNumberIsNotPositive_thenThrowResponseStatusException() {
+        Throwable exception = assertThrows(
+                ResponseStatusException.class, () -> toDoService.getToDoPage("", "default", null, "default", "default", 0)
+        );
+
+        assertEquals("400 BAD_REQUEST \"The page number must be greater than 0\"", exception.getMessage());
+    }
+
+    //applyBatch
+
+    @Test
+    void whenBatchApplied_thenEveryOperationRunsInOrder_andFailuresAreReportedPerItem() {
+        ToDo existing = toDoService.addToDo(new ToDo("Create tests", "High"));
+        ToDo deleted = toDoService.addToDo(new ToDo("Start Back End", "Medium"));
+
+        List<ToDoOperationResult> results = toDoService.applyBatch(List.of(
+                new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Start Front End", "Low")),
+                new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Create tests", "Low")),
+                new ToDoOperation(ToDoOperation.Type.UPDATE, existing.getId(), new ToDo("Create more tests", "Medium", LocalDate.parse("2023-12-03"))),
+                new ToDoOperation(ToDoOperation.Type.DONE, existing.getId(), null),
+                new ToDoOperation(ToDoOperation.Type.DELETE, deleted.getId(), null),
+                new ToDoOperation(ToDoOperation.Type.UNDONE, deleted.getId(), null)));
+
+        assertThat(results).extracting(ToDoOperationResult::getStatus).containsExactly(
+                ToDoOperationResult.Status.APPLIED, ToDoOperationResult.Status.REJECTED, ToDoOperationResult.Status.APPLIED,
+                ToDoOperationResult.Status.APPLIED, ToDoOperationResult.Status.APPLIED, ToDoOperationResult.Status.NOT_FOUND);
+        assertEquals("The To Do with the name Create testsis already created ", results.get(1).getMessage());
+        assertEquals("The to do with the id" + deleted.getId() + " was not found", results.get(5).getMessage());
+        assertThat(toDoService.findAllToDos()).extracting(ToDo::getName)
+                .containsExactlyInAnyOrder("Create more tests", "Start Front End");
+        ToDo updated = results.get(3).getToDo();
+        assertTrue(updated.isDoneUndoneFlag());
+        assertEquals("Medium", updated.getPriority());
+        assertNotNull(updated.getDaysToComplete());
+    }
+
+    @Test
+    void whenBatchHasAnInvalidOperation_thenNothingIsApplied() {
+        Throwable exception = assertThrows(
+                ResponseStatusException.class, () -> toDoService.applyBatch(List.of(
+                        new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Start Front End", "Low")),
+                        new ToDoOperation(ToDoOperation.Type.DONE, null, null)))
+        );
+
+        assertEquals("400 BAD_REQUEST \"Operation 1: The id parameter can't be null\"", exception.getMessage());
+        assertThat(toDoService.findAllToDos()).isEmpty();
+    }
+
+    @Test
+    void whenBatchIsEmpty_thenThrowResponseStatusException() {
+        Throwable exception = assertThrows(
+                ResponseStatusException.class, () -> toDoService.applyBatch(List.of())
+        );
+
+        assertEquals("400 BAD_REQUEST \"The batch can't be empty\"", exception.getMessage());
+    }
+
     @Test
     void pagination() {
         ToDo toDoOne = toDoService.addToDo(new ToDo("Create tests", "High", LocalDate.parse("2023-12-17")));
@@ -447,4 +525,31 @@ class ToDoServiceTest {
         System.out.println(toDoService.findAllToDos().size());
         System.out.println(toDoService.pagination(toDoService.findAllToDos(), 2).size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenMarkAsDone_fromAStaleVersion_thenConflict() {
+        ToDo toDoAdded = toDoService.addToDo(new ToDo("Start Front End", "Low"));
+        toDoService.markToDoAsDone(toDoAdded.getId(), toDoAdded.getVersion());
+
+        Throwable exception = assertThrows(
+                ResponseStatusException.class, () -> toDoService.markToDoAsUndone(toDoAdded.getId(), toDoAdded.getVersion())
+        );
+
+        assertEquals("409 CONFLICT \"The to do with the id" + toDoAdded.getId() + " is at version 2, not 1\"", exception.getMessage());
+    }
+
+    @Test
+    void whenBatchUpdatesFromAStaleVersion_thenThatOperationReportsAConflict() {
+        ToDo toDoAdded = toDoService.addToDo(new ToDo("Start Front End", "Low"));
+        ToDo staleUpdate = new ToDo("Start Back End", "High").withVersion(toDoAdded.getVersion());
+        ToDoOperation done = new ToDoOperation(ToDoOperation.Type.DONE, toDoAdded.getId(), null);
+        done.setVersion(toDoAdded.getVersion());
+
+        List<ToDoOperationResult> results = toDoService.applyBatch(List.of(done,
+                new ToDoOperation(ToDoOperation.Type.UPDATE, toDoAdded.getId(), staleUpdate)));
+
+        assertEquals(ToDoOperationResult.Status.APPLIED, results.get(0).getStatus());
+        assertEquals(ToDoOperationResult.Status.CONFLICT, results.get(1).getStatus());
+        assertEquals("Start Front End", toDoService.findAllToDos().get(0).getName());
+    }
+}
@@ -0,0 +1,30 @@
+package todoapp.load;
+
+import java.util.Arrays;
+
+/**
+ * The controller endpoints the load generator drives.
+ */
+enum LoadEndpoint {
+    ADD_TODO("addToDo", "POST /toDo/addToDo"),
+    MARK_DONE("done", "PUT /toDo/{id}/done"),
+    LIST("list", "GET /toDo/getToDosFilteredAndSorted"),
+    STATS("stats", "GET /toDo/getStats");
+
+    private final String key;
+    private final String label;
+
+    LoadEndpoint(String key, String label) {
+        this.key = key;
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    static LoadEndpoint byKey(String key) {
+        return Arrays.stream(values()).filter(endpoint -> endpoint.key.equals(key)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint " + key + " in the load mix"));
+    }
+}
@@ -0,0 +1,108 @@
+package todoapp.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load generator. Request i of a scenario is due at start + i / rate and is
+ * sent asynchronously, so a slow response never delays the requests behind it. Latency is
+ * measured from the due time rather than from the send, which charges any queueing in the
+ * generator or the server to the request, the coordinated omission correction.
+ */
+class LoadGenerator {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random = new Random(42);
+    private final AtomicLong addedCount = new AtomicLong();
+    // ids the done requests pick from, grown by every successful add
+    private final List<String> ids = new CopyOnWriteArrayList<>();
+
+    LoadGenerator(int port, Collection<String> seededIds) {
+        this.baseUrl = "http://localhost:" + port + "/toDo";
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+        this.ids.addAll(seededIds);
+    }
+
+    LoadReport run(LoadScenario scenario) throws InterruptedException {
+        LoadReport report = new LoadReport(scenario);
+        LoadEndpoint[] schedule = weightedSchedule(scenario.weights());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / scenario.requestsPerSecond();
+        long total = (long) scenario.requestsPerSecond() * scenario.durationSeconds();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long dueTime = start + i * intervalNanos;
+            long wait;
+            while ((wait = dueTime - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            LoadEndpoint endpoint = schedule[random.nextInt(schedule.length)];
+            inFlight.add(send(endpoint, scenario.name())
+                    .handle((response, failure) -> {
+                        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueTime);
+                        boolean failed = failure != null || response.statusCode() >= 400;
+                        report.record(endpoint, latencyMicros, failed);
+                        if (!failed && endpoint == LoadEndpoint.ADD_TODO) {
+                            rememberId(response.body());
+                        }
+                        return null;
+                    }));
+        }
+
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException ignored) {
+            // failures were recorded per request
+        }
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(LoadEndpoint endpoint, String scenarioName) {
+        HttpRequest.Builder request = switch (endpoint) {
+            case ADD_TODO -> HttpRequest.newBuilder(URI.create(baseUrl + "/addToDo"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"" + scenarioName + " #" + addedCount.incrementAndGet()
+                            + "\",\"priority\":\"" + (random.nextBoolean() ? "High" : "Low") + "\"}"));
+            case MARK_DONE -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + ids.get(random.nextInt(ids.size())) + "/done"))
+                    .PUT(HttpRequest.BodyPublishers.noBody());
+            case LIST -> HttpRequest.newBuilder(URI.create(baseUrl
+                    + "/getToDosFilteredAndSorted?name=&priority=High&priorityOrder=default&dateOrder=asc&pageNumber="
+                    + (1 + random.nextInt(5))));
+            case STATS -> HttpRequest.newBuilder(URI.create(baseUrl + "/getStats"));
+        };
+        return client.sendAsync(request.timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void rememberId(String body) {
+        try {
+            ids.add(objectMapper.readTree(body).get("id").asText());
+        } catch (Exception ignored) {
+            // only feeds the done requests, the add itself succeeded
+        }
+    }
+
+    private static LoadEndpoint[] weightedSchedule(Map<LoadEndpoint, Integer> weights) {
+        List<LoadEndpoint> schedule = new ArrayList<>();
+        weights.forEach((endpoint, weight) -> schedule.addAll(Collections.nCopies(weight, endpoint)));
+        return schedule.toArray(LoadEndpoint[]::new);
+    }
+}
@@ -0,0 +1,71 @@
+package todoapp.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per endpoint latency histograms, in microseconds, and error counts of one scenario run.
+ */
+class LoadReport {
+
+    private final LoadScenario scenario;
+    private final Map<LoadEndpoint, Histogram> latencies = new EnumMap<>(LoadEndpoint.class);
+    private final Map<LoadEndpoint, LongAdder> errors = new EnumMap<>(LoadEndpoint.class);
+    private volatile long elapsedNanos;
+
+    LoadReport(LoadScenario scenario) {
+        this.scenario = scenario;
+        for (LoadEndpoint endpoint : LoadEndpoint.values()) {
+            latencies.put(endpoint, new ConcurrentHistogram(3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    void record(LoadEndpoint endpoint, long latencyMicros, boolean failed) {
+        latencies.get(endpoint).recordValue(latencyMicros);
+        if (failed) {
+            errors.get(endpoint).increment();
+        }
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    long requests() {
+        return latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    long errors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    Histogram latencies(LoadEndpoint endpoint) {
+        return latencies.get(endpoint);
+    }
+
+    @Override
+    public String toString() {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder report = new StringBuilder(String.format(
+                "%n%s: %d req/s target for %ds, %.1f req/s completed, %d errors%n",
+                scenario.name(), scenario.requestsPerSecond(), scenario.durationSeconds(), requests() / seconds, errors()));
+        report.append(String.format("%-40s %8s %8s %10s %10s %10s %10s%n",
+                "endpoint", "count", "errors", "p50 (ms)", "p99 (ms)", "p99.9 (ms)", "max (ms)"));
+        for (LoadEndpoint endpoint : LoadEndpoint.values()) {
+            Histogram histogram = latencies.get(endpoint);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-40s %8d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    endpoint.label(), histogram.getTotalCount(), errors.get(endpoint).sum(),
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package todoapp.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A traffic mix sent at a fixed arrival rate. Weights are relative, so {ADD_TODO: 1,
+ * LIST: 3} sends three list requests for every add.
+ */
+record LoadScenario(String name, int requestsPerSecond, int durationSeconds, Map<LoadEndpoint, Integer> weights) {
+
+    /**
+     * Parses a mix such as "addToDo=20,done=10,list=60,stats=10".
+     */
+    static Map<LoadEndpoint, Integer> parseMix(String mix) {
+        Map<LoadEndpoint, Integer> weights = new EnumMap<>(LoadEndpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split("=");
+            weights.put(LoadEndpoint.byKey(keyAndWeight[0].trim()), Integer.parseInt(keyAndWeight[1].trim()));
+        }
+        return weights;
+    }
+}
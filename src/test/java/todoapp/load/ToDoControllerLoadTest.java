@@ -0,0 +1,74 @@
+package todoapp.load;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import todoapp.business.ToDoService;
+import todoapp.persistence.model.ToDo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the running app with each scenario and prints throughput, errors and latency
+ * percentiles per endpoint. Excluded from the default build, run it with
+ * mvn -Pload-test test -Dload.rate=500 -Dload.duration=30 -Dload.mix="addToDo=10,done=10,list=70,stats=10",
+ * after load.warmup seconds of the same traffic.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ToDoControllerLoadTest {
+
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+    private static final int DURATION = Integer.getInteger("load.duration", 10);
+    private static final int WARMUP = Integer.getInteger("load.warmup", 5);
+    private static final int SEED_SIZE = Integer.getInteger("load.seed", 10_000);
+    private static final String[] PRIORITIES = {"High", "Medium", "Low"};
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ToDoService toDoService;
+
+    private final List<String> seededIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        toDoService.deleteAllToDos();
+        for (int i = 0; i < SEED_SIZE; i++) {
+            ToDo toDo = toDoService.addToDo(new ToDo("Seeded #" + i, PRIORITIES[i % PRIORITIES.length], LocalDate.of(2023, 1, 1).plusDays(i % 365)));
+            seededIds.add(toDo.getId());
+        }
+    }
+
+    @Test
+    void readHeavy() throws Exception {
+        runScenario("read-heavy", System.getProperty("load.mix", "addToDo=5,done=5,list=80,stats=10"));
+    }
+
+    @Test
+    void writeHeavy() throws Exception {
+        runScenario("write-heavy", System.getProperty("load.mix", "addToDo=45,done=35,list=15,stats=5"));
+    }
+
+    private void runScenario(String name, String mix) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator(port, seededIds);
+        if (WARMUP > 0) {
+            // lets the JIT settle, its report is thrown away
+            generator.run(new LoadScenario(name + " warmup", RATE, WARMUP, LoadScenario.parseMix(mix)));
+        }
+        LoadScenario scenario = new LoadScenario(name, RATE, DURATION, LoadScenario.parseMix(mix));
+        LoadReport report = generator.run(scenario);
+        System.out.println(report);
+
+        assertEquals((long) RATE * DURATION, report.requests());
+        assertEquals(0, report.errors());
+    }
+}
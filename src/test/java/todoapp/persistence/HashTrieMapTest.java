@@ -0,0 +1,102 @@
+package todoapp.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashTrieMapTest {
+
+    // Few distinct hashes, so keys share paths down to the collision nodes
+    private record CollidingKey(int id) {
+        @Override
+        public int hashCode() {
+            return id % 7;
+        }
+    }
+
+    @Test
+    void whenRandomlyChanged_thenItMatchesAHashMap() {
+        Random random = new Random(42);
+        HashTrieMap<Object, Integer> trie = new HashTrieMap<>();
+        Map<Object, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            Object key = random.nextBoolean() ? Integer.valueOf(random.nextInt(2_000)) : new CollidingKey(random.nextInt(40));
+            switch (random.nextInt(4)) {
+                case 0, 1 -> assertEquals(expected.put(key, i), trie.put(key, i));
+                case 2 -> assertEquals(expected.remove(key), trie.remove(key));
+                default -> assertEquals(expected.get(key), trie.get(key));
+            }
+            assertEquals(expected.size(), trie.size());
+        }
+
+        assertEquals(expected, new HashMap<>(trie));
+        List<Integer> values = trie.valuesSnapshot();
+        List<Integer> valuesByIndex = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            valuesByIndex.add(values.get(i));
+        }
+        assertEquals(new ArrayList<>(values), valuesByIndex);
+        assertThat(values).containsExactlyInAnyOrderElementsOf(expected.values());
+    }
+
+    @Test
+    void whenChangedAfterASnapshot_thenTheSnapshotStaysAsItWas() {
+        HashTrieMap<String, Integer> trie = new HashTrieMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            trie.put("key" + i, i);
+        }
+
+        List<Integer> snapshot = trie.valuesSnapshot();
+        Iterator<Map.Entry<String, Integer>> entries = trie.entrySet().iterator();
+        for (int i = 0; i < 1_000; i += 2) {
+            trie.remove("key" + i);
+        }
+        trie.put("extra", -1);
+        trie.clear();
+
+        assertEquals(1_000, snapshot.size());
+        assertThat(snapshot).doesNotHaveDuplicates().allMatch(value -> value >= 0);
+        int entryCount = 0;
+        while (entries.hasNext()) {
+            entries.next();
+            entryCount++;
+        }
+        assertEquals(1_000, entryCount);
+        assertTrue(trie.isEmpty());
+    }
+
+    @Test
+    void whenComputeRaces_thenEachFunctionRunsOnce_andNoUpdateIsLost() throws Exception {
+        HashTrieMap<Integer, Integer> trie = new HashTrieMap<>();
+        AtomicInteger calls = new AtomicInteger();
+        int threads = 4;
+        int increments = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < increments; i++) {
+                    trie.compute(i % 100, (key, count) -> {
+                        calls.incrementAndGet();
+                        return count == null ? 1 : count + 1;
+                    });
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(threads * increments, calls.get());
+        assertEquals(threads * increments, trie.values().stream().mapToInt(Integer::intValue).sum());
+        assertNull(trie.computeIfPresent(-1, (key, count) -> fail("absent keys aren't computed")));
+    }
+}
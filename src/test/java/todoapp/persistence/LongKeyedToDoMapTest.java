@@ -0,0 +1,103 @@
+package todoapp.persistence;
+
+import org.junit.jupiter.api.Test;
+import todoapp.persistence.model.ToDo;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongKeyedToDoMapTest {
+
+    @Test
+    void whenRandomlyChanged_thenItMatchesAHashMap() {
+        Random random = new Random(42);
+        ToDoIds toDoIds = new ToDoIds(3);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            keys.add(toDoIds.next());
+        }
+        for (int i = 0; i < 40; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+        LongKeyedToDoMap map = new LongKeyedToDoMap();
+        Map<String, ToDo> expected = new HashMap<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    ToDo toDo = new ToDo(key, "Task #" + i, "Low", null, null, null, false, null, null, i);
+                    assertSame(expected.put(key, toDo), map.put(key, toDo));
+                }
+                case 2 -> assertSame(expected.remove(key), map.remove(key));
+                default -> assertSame(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        assertEquals(expected, new HashMap<>(map));
+        assertThat(map.values()).containsExactlyInAnyOrderElementsOf(expected.values());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(keys.get(0)));
+    }
+
+    @Test
+    void whenKeyIsNotARenderedId_thenItIsKeptAsIs() {
+        LongKeyedToDoMap map = new LongKeyedToDoMap();
+        String id = ToDoIds.render(new ToDoIds(0).nextId());
+        ToDo toDo = new ToDo("Create tests", "High");
+
+        map.put(id, toDo);
+        map.put(id.toUpperCase(), toDo);
+        map.put("0000000000000", toDo);
+
+        assertEquals(3, map.size());
+        assertThat(map.keySet()).containsExactlyInAnyOrder(id, id.toUpperCase(), "0000000000000");
+        assertNull(map.remove(id.substring(1)));
+        assertNull(map.get(42));
+        assertSame(toDo, map.remove(id.toUpperCase()));
+        assertSame(toDo, map.get(id));
+    }
+
+    @Test
+    void whenComputeRaces_thenEachFunctionRunsOnce_andNoUpdateIsLost() throws Exception {
+        LongKeyedToDoMap map = new LongKeyedToDoMap();
+        ToDoIds toDoIds = new ToDoIds(0);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(toDoIds.next());
+        }
+        AtomicInteger calls = new AtomicInteger();
+        int threads = 4;
+        int increments = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < increments; i++) {
+                    String key = keys.get(i % keys.size());
+                    map.compute(key, (id, toDo) -> {
+                        calls.incrementAndGet();
+                        // a read from inside the function doesn't wait for the write it's part of
+                        assertSame(toDo, map.get(id));
+                        return toDo == null ? new ToDo(id, "Count", null, null, null, null, false, null, null, 1) : toDo.withVersion(toDo.getVersion() + 1);
+                    });
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(threads * increments, calls.get());
+        assertEquals(threads * increments, map.values().stream().mapToLong(ToDo::getVersion).sum());
+        assertNull(map.computeIfPresent(toDoIds.next(), (key, toDo) -> fail("absent keys aren't computed")));
+    }
+}
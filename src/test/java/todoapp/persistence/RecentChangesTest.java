@@ -0,0 +1,58 @@
+package todoapp.persistence;
+
+import org.junit.jupiter.api.Test;
+import todoapp.business.ToDoChange;
+import todoapp.business.ToDoChanges;
+import todoapp.persistence.model.ToDo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentChangesTest {
+
+    @Test
+    void whenPublishedOutOfOrder_thenChangesBecomeVisibleInSequenceOrder() {
+        RecentChanges recentChanges = new RecentChanges(16, 100);
+        List<Long> told = new ArrayList<>();
+        recentChanges.addListener(change -> told.add(change.getSequence()));
+
+        ToDoChange first = recentChanges.reserve(ToDoChange.Type.CREATED, "a", new ToDo("Create tests", "High"));
+        ToDoChange second = recentChanges.reserve(ToDoChange.Type.DELETED, "b", null);
+        recentChanges.publish(second);
+
+        // the first write isn't stored yet, a client resyncing now must come back for it
+        ToDoChanges beforeFirst = recentChanges.since(100);
+        assertTrue(beforeFirst.getChanges().isEmpty());
+        assertEquals(100, beforeFirst.getSequence());
+        assertEquals(100, recentChanges.since(Long.MAX_VALUE).getSequence());
+        assertThat(told).isEmpty();
+
+        recentChanges.publish(first);
+
+        ToDoChanges afterBoth = recentChanges.since(100);
+        assertThat(afterBoth.getChanges()).extracting(ToDoChange::getSequence).containsExactly(101L, 102L);
+        assertEquals(102, afterBoth.getSequence());
+        assertThat(told).containsExactly(101L, 102L);
+    }
+
+    @Test
+    void whenListenerTold_thenTheChangedToDoIsAlreadyStored() throws Exception {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        List<String> readable = new ArrayList<>();
+        repository.addChangeListener(change -> {
+            try {
+                readable.add(repository.getById(change.getId()).getName());
+            } catch (Exception exception) {
+                readable.add(exception.getMessage());
+            }
+        });
+
+        ToDo saved = repository.save(new ToDo("Create tests", "High"));
+        repository.update(saved.getId(), new ToDo("Create more tests", "High"));
+
+        assertThat(readable).containsExactly("Create tests", "Create more tests");
+    }
+}
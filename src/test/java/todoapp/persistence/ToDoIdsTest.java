@@ -0,0 +1,80 @@
+package todoapp.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToDoIdsTest {
+
+    @Test
+    void whenIdsGenerated_thenTheyGrowAndSortAsStrings() {
+        ToDoIds ids = new ToDoIds(7);
+
+        String previous = ids.next();
+        for (int i = 0; i < 100_000; i++) {
+            String next = ids.next();
+            assertEquals(13, next.length());
+            assertTrue(next.compareTo(previous) > 0, next + " should sort after " + previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void whenIdsGeneratedConcurrently_thenTheyAreDistinctPerThreadOrdered() throws Exception {
+        ToDoIds ids = new ToDoIds(0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Long>>> generated = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                generated.add(executor.submit(() -> {
+                    List<Long> mine = new ArrayList<>();
+                    for (int i = 0; i < 50_000; i++) {
+                        mine.add(ids.nextId());
+                    }
+                    return mine;
+                }));
+            }
+
+            Set<Long> all = new HashSet<>();
+            for (Future<List<Long>> future : generated) {
+                List<Long> mine = future.get(30, TimeUnit.SECONDS);
+                for (int i = 1; i < mine.size(); i++) {
+                    assertTrue(mine.get(i) > mine.get(i - 1));
+                }
+                all.addAll(mine);
+            }
+            assertEquals(200_000, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenNodesDiffer_thenTheirIdsDoToo() {
+        assertNotEquals(new ToDoIds(1).nextId() & ToDoIds.MAX_NODE, new ToDoIds(2).nextId() & ToDoIds.MAX_NODE);
+        assertThrows(IllegalArgumentException.class, () -> new ToDoIds(ToDoIds.MAX_NODE + 1));
+        assertThrows(IllegalArgumentException.class, () -> new ToDoIds(-1));
+    }
+
+    @Test
+    void whenRendered_thenParsedBackToTheSameId() {
+        ToDoIds ids = new ToDoIds(5);
+        for (int i = 0; i < 1_000; i++) {
+            long id = ids.nextId();
+            assertEquals(id, ToDoIds.parse(ToDoIds.render(id)));
+        }
+        assertEquals(Long.MAX_VALUE, ToDoIds.parse(ToDoIds.render(Long.MAX_VALUE)));
+
+        assertEquals(ToDoIds.NOT_AN_ID, ToDoIds.parse("3f2c8a1e-5b7d-4c9a-8e6f-1a2b3c4d5e6f"));
+        assertEquals(ToDoIds.NOT_AN_ID, ToDoIds.parse(ToDoIds.render(ids.nextId()).toUpperCase()));
+        assertEquals(ToDoIds.NOT_AN_ID, ToDoIds.parse("zzzzzzzzzzzzz"));
+        assertEquals(ToDoIds.NOT_AN_ID, ToDoIds.parse("0000000000000"));
+        assertEquals(ToDoIds.NOT_AN_ID, ToDoIds.parse("000000000000-"));
+    }
+}
@@ -0,0 +1,136 @@
+package todoapp.persistence.btree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BPlusTreeTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void whenRandomlyChanged_thenItMatchesATreeMap_throughSplitsAndEvictions() throws Exception {
+        Random random = new Random(42);
+        TreeMap<String, String> expected = new TreeMap<>();
+        try (PageFile file = new PageFile(directory.resolve("tree.db"))) {
+            // a cache far smaller than the tree, so most pages are read back from the mapping
+            BPlusTree tree = new BPlusTree(file, new PageCache(file, 8), 0);
+
+            for (int i = 0; i < 30_000; i++) {
+                String key = "key-" + random.nextInt(5_000);
+                switch (random.nextInt(4)) {
+                    case 0, 1 -> {
+                        String value = "value-" + i + "-".repeat(random.nextInt(200));
+                        assertEquals(expected.put(key, value), string(tree.put(bytes(key), bytes(value))));
+                    }
+                    case 2 -> assertEquals(expected.remove(key), string(tree.remove(bytes(key))));
+                    default -> assertEquals(expected.get(key), string(tree.get(bytes(key))));
+                }
+            }
+
+            assertEquals(new ArrayList<>(expected.tailMap("key-2").keySet()), ascending(tree, "key-2"));
+            assertEquals(new ArrayList<>(expected.headMap("key-3", true).descendingKeySet()), descending(tree, "key-3"));
+            assertTrue(file.pageCount() > 100);
+        }
+    }
+
+    @Test
+    void whenReopened_thenTheTreeIsReadFromTheFile() throws Exception {
+        Path path = directory.resolve("tree.db");
+        try (PageFile file = new PageFile(path)) {
+            BPlusTree tree = new BPlusTree(file, new PageCache(file, 16), 1);
+            for (int i = 0; i < 10_000; i++) {
+                tree.put(bytes(String.format("%05d", i)), bytes("value-" + i));
+            }
+        }
+
+        try (PageFile file = new PageFile(path)) {
+            BPlusTree tree = new BPlusTree(file, new PageCache(file, 16), 1);
+            assertEquals("value-1234", string(tree.get(bytes("01234"))));
+            assertEquals(10_000, ascending(tree, "").size());
+        }
+    }
+
+    @Test
+    void whenOlderKeysAreRemoved_thenTheirPagesAreReused_andTheFileStopsGrowing() throws Exception {
+        TreeSet<String> expected = new TreeSet<>();
+        try (PageFile file = new PageFile(directory.resolve("tree.db"))) {
+            BPlusTree tree = new BPlusTree(file, new PageCache(file, 16), 0);
+            int pagesAfterFirstRound = 0;
+            int pagesAfterTwoRounds = 0;
+
+            // ids grow with time, so every round fills new leaves and leaves the old ones sparse
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 5_000; i++) {
+                    String key = String.format("%02d-%05d", round, i);
+                    tree.put(bytes(key), bytes("value-" + key + "-".repeat(40)));
+                    expected.add(key);
+                }
+                if (round > 0) {
+                    for (int i = 0; i < 5_000; i++) {
+                        String key = String.format("%02d-%05d", round - 1, i);
+                        if (i % 50 != 0) {
+                            assertNotNull(tree.remove(bytes(key)));
+                            expected.remove(key);
+                        }
+                    }
+                } else {
+                    pagesAfterFirstRound = file.pageCount();
+                }
+                if (round == 1) {
+                    pagesAfterTwoRounds = file.pageCount();
+                }
+            }
+
+            // two rounds are live at once, after that only the survivors take new pages
+            assertTrue(file.pageCount() < pagesAfterTwoRounds + pagesAfterFirstRound / 2,
+                    file.pageCount() + " pages, " + pagesAfterTwoRounds + " after two rounds");
+            assertEquals(new ArrayList<>(expected), ascending(tree, ""));
+            assertEquals(new ArrayList<>(expected.descendingSet()), descending(tree, "99"));
+
+            for (String key : expected) {
+                assertNotNull(tree.remove(bytes(key)));
+            }
+            int pagesWhenEmpty = file.pageCount();
+            for (int i = 0; i < 5_000; i++) {
+                tree.put(bytes(String.format("%05d", i)), bytes("value-" + i + "-".repeat(40)));
+            }
+            assertEquals(pagesWhenEmpty, file.pageCount());
+            assertEquals(5_000, ascending(tree, "").size());
+        }
+    }
+
+    @Test
+    void whenEntryDoesntFitAPage_thenIllegalArgumentException() throws Exception {
+        try (PageFile file = new PageFile(directory.resolve("tree.db"))) {
+            BPlusTree tree = new BPlusTree(file, new PageCache(file, 16), 0);
+            assertThrows(IllegalArgumentException.class, () -> tree.put(bytes("key"), new byte[BPlusTree.MAX_ENTRY_SIZE]));
+        }
+    }
+
+    private static List<String> ascending(BPlusTree tree, String from) throws Exception {
+        List<String> keys = new ArrayList<>();
+        tree.ascending(bytes(from), (key, value) -> keys.add(string(key)));
+        return keys;
+    }
+
+    private static List<String> descending(BPlusTree tree, String from) throws Exception {
+        List<String> keys = new ArrayList<>();
+        tree.descending(bytes(from), (key, value) -> keys.add(string(key)));
+        return keys;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
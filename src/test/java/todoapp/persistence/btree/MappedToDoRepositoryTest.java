@@ -0,0 +1,160 @@
+package todoapp.persistence.btree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import todoapp.business.ToDoChange;
+import todoapp.business.ToDoPage;
+import todoapp.business.ToDoQuery;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.ToDoIds;
+import todoapp.persistence.exception.ToDoAlreadyExistsException;
+import todoapp.persistence.exception.ToDoConflictException;
+import todoapp.persistence.exception.ToDoNotFoundException;
+import todoapp.persistence.model.ToDo;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedToDoRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedToDoRepository open(int cachePages) throws Exception {
+        return new MappedToDoRepository(directory.resolve("todos.db"), cachePages, new ToDoIds(0), MemoryImpl.DEFAULT_RETAINED_CHANGES);
+    }
+
+    @Test
+    void whenChanged_thenVersionsNamesAndConflictsFollowTheInMemoryRules() throws Exception {
+        try (MappedToDoRepository repository = open(64)) {
+            ToDo saved = repository.save(new ToDo("Create tests", "High"));
+            repository.save(new ToDo("Start Front End", "Low"));
+            long sequence = repository.changesSince(Long.MAX_VALUE).getSequence();
+
+            ToDo done = repository.markAsDone(saved.getId(), saved.getCreationDate().plusMinutes(30), saved.getVersion());
+            Throwable conflict = assertThrows(ToDoConflictException.class, () -> repository.markAsUndone(saved.getId(), saved.getVersion()));
+            assertThrows(ToDoAlreadyExistsException.class, () -> repository.update(saved.getId(), new ToDo("Start Front End", "Low")));
+            assertThrows(ToDoAlreadyExistsException.class, () -> repository.save(new ToDo("Create tests", "Low")));
+            ToDo renamed = repository.update(saved.getId(), new ToDo("Create more tests", "Low"));
+            ToDo reusingName = repository.save(new ToDo("Create tests", "Medium"));
+            assertThrows(ToDoNotFoundException.class, () -> repository.deleteById("missing"));
+
+            assertEquals(2, done.getVersion());
+            assertEquals("The to do with the id" + saved.getId() + " is at version 2, not 1", conflict.getMessage());
+            assertEquals(3, renamed.getVersion());
+            assertEquals("Create tests", reusingName.getName());
+            assertEquals(30, repository.averageTimeToComplete("Low"));
+            assertEquals(3, repository.count());
+            assertThat(repository.findByNameContaining("MORE")).extracting(ToDo::getId).containsExactly(saved.getId());
+            assertThat(repository.changesSince(sequence).getChanges()).extracting(ToDoChange::getType)
+                    .containsExactly(ToDoChange.Type.DONE, ToDoChange.Type.UPDATED, ToDoChange.Type.CREATED);
+        }
+    }
+
+    @Test
+    void whenReopened_thenToDosAndStatisticsAreReadFromTheFile() throws Exception {
+        String id;
+        try (MappedToDoRepository repository = open(64)) {
+            ToDo saved = repository.save(new ToDo("Create tests", "High", LocalDate.parse("2023-12-03")));
+            repository.markAsDone(saved.getId(), saved.getCreationDate().plusMinutes(45));
+            id = repository.save(new ToDo("Start Front End", "Low")).getId();
+            repository.deleteById(saved.getId());
+            repository.save(new ToDo("Start Back End", "High", LocalDate.parse("2023-12-01")));
+            repository.markAsDone(id, repository.getById(id).getCreationDate().plusMinutes(15));
+        }
+
+        try (MappedToDoRepository repository = open(64)) {
+            assertEquals(2, repository.count());
+            assertTrue(repository.getById(id).isDoneUndoneFlag());
+            assertEquals(15, repository.averageTimeToComplete(null));
+            assertThrows(ToDoAlreadyExistsException.class, () -> repository.save(new ToDo("Start Back End", "Low")));
+            assertThat(repository.findAll()).extracting(ToDo::getName).containsExactlyInAnyOrder("Start Front End", "Start Back End");
+
+            repository.deleteAll();
+            assertEquals(0, repository.count());
+            assertThat(repository.findAll()).isEmpty();
+            repository.save(new ToDo("Create tests", "High"));
+            assertEquals(1, repository.count());
+        }
+    }
+
+    @Test
+    void whenQueried_thenPagesMatchTheInMemoryRepository() throws Exception {
+        MemoryImpl memory = new MemoryImpl(MemorySettings.defaults());
+        String[] priorities = {"High", "Medium", "Low", "Someday"};
+        Random random = new Random(42);
+        // far fewer cached pages than the trees hold
+        try (MappedToDoRepository repository = open(8)) {
+            for (int i = 0; i < 2_000; i++) {
+                ToDo toDo = random.nextInt(3) == 0
+                        ? new ToDo("Task #" + i, priorities[random.nextInt(priorities.length)])
+                        : new ToDo("Task #" + i, priorities[random.nextInt(priorities.length)], LocalDate.parse("2023-12-01").plusDays(random.nextInt(30)));
+                ToDo inMemory = memory.save(toDo);
+                ToDo inFile = repository.save(toDo);
+                if (i % 4 == 0) {
+                    memory.markAsDone(inMemory.getId(), inMemory.getCreationDate().plusMinutes(i));
+                    repository.markAsDone(inFile.getId(), inFile.getCreationDate().plusMinutes(i));
+                }
+                if (i % 10 == 0) {
+                    memory.deleteById(inMemory.getId());
+                    repository.deleteById(inFile.getId());
+                }
+            }
+
+            List<ToDoQuery> queries = new ArrayList<>();
+            for (String priorityOrder : new String[]{"default", "asc", "desc"}) {
+                for (String dateOrder : new String[]{"default", "asc", "desc"}) {
+                    queries.add(new ToDoQuery("", "default", null, priorityOrder, dateOrder, 20, 15));
+                    queries.add(new ToDoQuery("#1", "Low", null, priorityOrder, dateOrder, 0, 10));
+                    queries.add(new ToDoQuery("", "Someday", true, priorityOrder, dateOrder, 5, 50));
+                }
+            }
+            for (ToDoQuery query : queries) {
+                ToDoPage expected = memory.findByQuery(query);
+                ToDoPage actual = repository.findByQuery(query);
+                assertEquals(expected.getTotalCount(), actual.getTotalCount());
+                if (query.isSorted()) {
+                    assertThat(actual.getToDos()).extracting(ToDo::getName)
+                            .containsExactlyElementsOf(expected.getToDos().stream().map(ToDo::getName).toList());
+                } else {
+                    assertEquals(expected.getToDos().size(), actual.getToDos().size());
+                }
+            }
+            assertEquals(memory.count(), repository.count());
+            assertEquals(memory.averageTimeToComplete(null), repository.averageTimeToComplete(null));
+            assertThat(repository.cacheMisses()).isGreaterThan(0);
+        }
+    }
+
+    @Test
+    void whenStreamed_thenRecordsAreReadLeafByLeaf_andWritesGetInBetween() throws Exception {
+        try (MappedToDoRepository repository = open(16)) {
+            List<String> savedIds = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                savedIds.add(repository.save(new ToDo("Task #" + i, "Low")).getId());
+            }
+
+            List<String> streamedIds = new ArrayList<>();
+            try (Stream<ToDo> toDos = repository.streamAll()) {
+                Iterator<ToDo> iterator = toDos.iterator();
+                streamedIds.add(iterator.next().getId());
+                // the stream holds no lock, and reaches the leaves these change later on
+                repository.deleteById(savedIds.get(savedIds.size() - 1));
+                String added = repository.save(new ToDo("Task #2000", "High")).getId();
+                iterator.forEachRemaining(toDo -> streamedIds.add(toDo.getId()));
+
+                assertThat(streamedIds).contains(added).doesNotContain(savedIds.get(savedIds.size() - 1));
+            }
+            assertThat(streamedIds).hasSize(2_000).isSorted();
+        }
+    }
+}
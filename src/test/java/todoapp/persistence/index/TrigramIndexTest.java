@@ -0,0 +1,41 @@
+package todoapp.persistence.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    @Test
+    void whenAddsRaceRemovesThatEmptyAPosting_thenNoAddedIdIsLost() throws Exception {
+        TrigramIndex index = new TrigramIndex();
+        AtomicBoolean running = new AtomicBoolean(true);
+        // keeps emptying and dropping the postings of "abc"
+        Thread toggler = new Thread(() -> {
+            while (running.get()) {
+                index.add("toggled", "abc");
+                index.remove("toggled", "abc");
+            }
+        });
+        toggler.start();
+
+        AtomicReference<String> lost = new AtomicReference<>();
+        try {
+            for (int i = 0; i < 200_000 && lost.get() == null; i++) {
+                index.add("id-" + i, "abc");
+                if (!index.candidates("abc").contains("id-" + i)) {
+                    lost.set("id-" + i);
+                }
+                index.remove("id-" + i, "abc");
+            }
+        } finally {
+            running.set(false);
+            toggler.join();
+        }
+
+        assertNull(lost.get());
+    }
+}
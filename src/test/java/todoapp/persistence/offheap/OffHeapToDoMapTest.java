@@ -0,0 +1,121 @@
+package todoapp.persistence.offheap;
+
+import org.junit.jupiter.api.Test;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapToDoMapTest {
+
+    @Test
+    void whenStored_thenEveryFieldIsDecodedAsWritten() {
+        OffHeapToDoMap map = new OffHeapToDoMap();
+        ToDo done = new ToDo("a", "Créer les tests ✓", "High", LocalDate.parse("2023-12-03"), LocalDateTime.parse("2023-12-02T09:30:30.5"),
+                LocalDateTime.parse("2023-12-02T10:15:30.123456789"), true, 45L, 2L, 7);
+        ToDo empty = new ToDo("b", null, null, null, null, null, false, null, null, 0);
+
+        map.put("a", done);
+        map.put("b", empty);
+        ToDo read = map.get("a");
+        ToDo readEmpty = map.get("b");
+
+        assertEquals(done.toString(), read.toString());
+        assertEquals(empty.toString(), readEmpty.toString());
+        assertNotSame(read, map.get("a"));
+        assertThat(map.keySet()).containsExactlyInAnyOrder("a", "b");
+        assertThat(map.values()).extracting(ToDo::getId).containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void whenRemovedOrReplaced_thenSlotsAreReused() {
+        OffHeapToDoMap map = new OffHeapToDoMap();
+        for (int i = 0; i < 10_000; i++) {
+            map.put("id-" + i, new ToDo("Task #" + i, "Low"));
+        }
+        long reserved = map.reservedBytes();
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10_000; i++) {
+                int index = i;
+                map.computeIfPresent("id-" + i, (id, toDo) -> toDo.withVersion(toDo.getVersion() + 1));
+                assertEquals("Task #" + index, map.remove("id-" + i).getName());
+                map.put("id-" + i, new ToDo("Task #" + i, "Medium"));
+            }
+        }
+
+        assertEquals(reserved, map.reservedBytes());
+        assertEquals(10_000, map.size());
+        assertEquals("Medium", map.get("id-42").getPriority());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("id-42"));
+    }
+
+    @Test
+    void whenReadWhileRewritten_thenEveryReadIsOneWholeVersion() throws Exception {
+        OffHeapToDoMap map = new OffHeapToDoMap();
+        List<String> ids = List.of("a", "b", "c");
+        for (String id : ids) {
+            map.put(id, named(id, 0));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> torn = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread reader = new Thread(() -> {
+                while (running.get()) {
+                    for (String id : ids) {
+                        ToDo toDo = map.get(id);
+                        // a name of another length than the version says means a slot reused under the read
+                        if (!toDo.getName().equals(named(id, toDo.getVersion()).getName())) {
+                            torn.set(toDo.toString());
+                        }
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        for (int version = 1; version < 50_000; version++) {
+            for (String id : ids) {
+                map.put(id, named(id, version));
+            }
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(torn.get());
+    }
+
+    @Test
+    void whenMemoryImplStoresOffHeap_thenItBehavesLikeTheHeapMap() throws Exception {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withStorage(OffHeapToDoMap::new));
+        ToDo saved = repository.save(new ToDo("Create tests", "High", LocalDate.parse("2023-12-03")));
+        repository.save(new ToDo("Start Front End", "Low"));
+
+        ToDo done = repository.markAsDone(saved.getId(), saved.getCreationDate().plusMinutes(30), saved.getVersion());
+        repository.deleteById(repository.findByNameContaining("front").get(0).getId());
+
+        assertEquals(2, done.getVersion());
+        assertEquals(done.toString(), repository.getById(saved.getId()).toString());
+        assertEquals(30, repository.averageTimeToComplete(null));
+        assertThat(repository.findAll()).extracting(ToDo::getName).containsExactly("Create tests");
+    }
+
+    private static ToDo named(String id, long version) {
+        return new ToDo(id + "-" + "x".repeat((int) (version % 300)), "Low").withVersion(version);
+    }
+}
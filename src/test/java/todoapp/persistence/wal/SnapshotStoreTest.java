@@ -0,0 +1,156 @@
+package todoapp.persistence.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+
+    private static final long SEGMENT_SIZE = 512;
+
+    @TempDir
+    Path directory;
+
+    private WriteAheadLog openLog() throws Exception {
+        return new WriteAheadLog(directory, Durability.BATCH, SEGMENT_SIZE, 10);
+    }
+
+    @Test
+    void whenRestartedAfterSnapshot_thenSnapshotAndLogTailAreRestored_andOldSegmentsDeleted() throws Exception {
+        WriteAheadLog log = openLog();
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log).withSnapshots(new SnapshotStore(directory)));
+        List<ToDo> toDos = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            toDos.add(repository.save(new ToDo("Task " + i, "Low")));
+        }
+        int segmentsBefore = log.segments().size();
+        long sequence = repository.snapshot();
+
+        repository.update(toDos.get(0).getId(), new ToDo("Task 0 renamed", "High"));
+        repository.markAsDone(toDos.get(1).getId(), toDos.get(1).getCreationDate().plusMinutes(30));
+        repository.deleteById(toDos.get(2).getId());
+        ToDo added = repository.save(new ToDo("Task 40", "Medium"));
+        log.close();
+
+        assertEquals(40, sequence);
+        assertThat(log.segments().size()).isLessThan(segmentsBefore);
+        assertThat(new SnapshotStore(directory).snapshots()).hasSize(1);
+
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(openLog()).withSnapshots(new SnapshotStore(directory)));
+
+        assertThat(restarted.findAll()).hasSize(40);
+        assertEquals("Task 0 renamed", restarted.getById(toDos.get(0).getId()).getName());
+        assertTrue(restarted.getById(toDos.get(1).getId()).isDoneUndoneFlag());
+        assertEquals(30, restarted.averageTimeToComplete(null));
+        assertEquals("Task 40", restarted.getById(added.getId()).getName());
+        assertThrows(IllegalArgumentException.class, () -> restarted.save(new ToDo("Task 39", "Low")));
+        assertNotNull(restarted.save(new ToDo("Task 0", "Low")));
+    }
+
+    @Test
+    void whenSnapshotTakenDuringWrites_thenRestartMatchesTheFinalState() throws Exception {
+        WriteAheadLog log = openLog();
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log).withSnapshots(new SnapshotStore(directory)));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            int threadNumber = thread;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 300; i++) {
+                    ToDo toDo = repository.save(new ToDo("Task " + threadNumber + "-" + i, "Low"));
+                    repository.update(toDo.getId(), new ToDo("Task " + threadNumber + "-" + i + " updated", "High"));
+                    if (i % 3 == 0) {
+                        repository.deleteById(toDo.getId());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int i = 0; i < 5; i++) {
+            repository.snapshot();
+        }
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        log.close();
+
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(openLog()).withSnapshots(new SnapshotStore(directory)));
+
+        Map<String, String> expected = new HashMap<>();
+        repository.findAll().forEach(toDo -> expected.put(toDo.getId(), toDo.getName()));
+        Map<String, String> restored = new HashMap<>();
+        restarted.findAll().forEach(toDo -> restored.put(toDo.getId(), toDo.getName()));
+        assertEquals(expected, restored);
+        assertThat(restarted.findByNameContaining("updated")).hasSize(800);
+    }
+
+    @Test
+    void whenSnapshotRunsBetweenAnAppendAndItsStore_thenRestartStillHasTheToDo() throws Exception {
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch resumed = new CountDownLatch(1);
+        WriteAheadLog log = new WriteAheadLog(directory, Durability.BATCH, SEGMENT_SIZE, 10) {
+            @Override
+            public long append(LogRecord.Type type, ToDo toDo) {
+                long sequence = super.append(type, toDo);
+                if (toDo.getName().equals("Paused")) {
+                    appended.countDown();
+                    try {
+                        resumed.await();
+                    } catch (InterruptedException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                }
+                return sequence;
+            }
+        };
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log).withSnapshots(new SnapshotStore(directory)));
+        repository.save(new ToDo("Create tests", "High"));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<ToDo> paused = executor.submit(() -> repository.save(new ToDo("Paused", "Low")));
+        assertTrue(appended.await(10, TimeUnit.SECONDS));
+        Future<Long> snapshot = executor.submit(repository::snapshot);
+        try {
+            snapshot.get(200, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException waitingForTheWrite) {
+            // the snapshot waits for the paused write to be stored
+        }
+        resumed.countDown();
+        snapshot.get(10, TimeUnit.SECONDS);
+        paused.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        log.close();
+
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(openLog()).withSnapshots(new SnapshotStore(directory)));
+
+        assertThat(restarted.findAll()).extracting(ToDo::getName).containsExactlyInAnyOrder("Create tests", "Paused");
+    }
+
+    @Test
+    void whenSnapshotIsCorrupt_thenStartupFails() throws Exception {
+        WriteAheadLog log = openLog();
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log).withSnapshots(new SnapshotStore(directory)));
+        repository.save(new ToDo("Create tests", "High"));
+        repository.snapshot();
+        log.close();
+
+        Path snapshot = new SnapshotStore(directory).snapshots().get(0);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 10] ^= 0x7F;
+        Files.write(snapshot, bytes);
+
+        assertThrows(UncheckedIOException.class, () -> new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(openLog()).withSnapshots(new SnapshotStore(directory))));
+    }
+}
@@ -0,0 +1,330 @@
+package todoapp.persistence.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import todoapp.business.ToDoOperation;
+import todoapp.business.ToDoOperationResult;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(Durability.class)
+    void whenRestarted_thenReplayRebuildsTheRepository(Durability durability) throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, durability, 1 << 20, 10);
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        ToDo done = repository.save(new ToDo("Create tests", "High"));
+        ToDo updated = repository.save(new ToDo("Start Front End", "Low"));
+        ToDo deleted = repository.save(new ToDo("Start Back End", "Medium"));
+        ToDo undone = repository.save(new ToDo("Get groceries", "Low"));
+        done = repository.markAsDone(done.getId(), done.getCreationDate().plusMinutes(42));
+        repository.markAsDone(undone.getId(), undone.getCreationDate().plusMinutes(7));
+        repository.markAsUndone(undone.getId());
+        repository.update(updated.getId(), new ToDo("Start Front End v2", "High", LocalDate.parse("2023-12-03")));
+        repository.deleteById(deleted.getId());
+        log.close();
+
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(new WriteAheadLog(directory, durability, 1 << 20, 10)));
+
+        assertThat(restarted.findAll()).hasSize(3);
+        ToDo restoredDone = restarted.getById(done.getId());
+        assertTrue(restoredDone.isDoneUndoneFlag());
+        assertEquals(done.getDoneDate(), restoredDone.getDoneDate());
+        assertEquals(42, restoredDone.getTimeToComplete());
+        assertEquals(done.getVersion(), restoredDone.getVersion());
+        assertFalse(restarted.getById(undone.getId()).isDoneUndoneFlag());
+        assertEquals("Start Front End v2", restarted.getById(updated.getId()).getName());
+        assertEquals(LocalDate.parse("2023-12-03"), restarted.getById(updated.getId()).getDueDate());
+        assertEquals(done.getCreationDate(), restoredDone.getCreationDate());
+        assertThat(restarted.findByNameContaining("v2")).hasSize(1);
+        assertEquals(42, restarted.averageTimeToComplete("High"));
+        assertThrows(IllegalArgumentException.class, () -> restarted.save(new ToDo("Create tests", "Low")));
+    }
+
+    @Test
+    void whenDeleteAllLogged_thenRestartIsEmpty_andLaterWritesSurvive() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, Durability.BATCH, 1 << 20, 10);
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        repository.save(new ToDo("Create tests", "High"));
+        repository.deleteAll();
+        ToDo survivor = repository.save(new ToDo("Create tests", "Low"));
+        log.close();
+
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(new WriteAheadLog(directory, Durability.BATCH, 1 << 20, 10)));
+
+        assertThat(restarted.findAll()).extracting(ToDo::getId).containsExactly(survivor.getId());
+    }
+
+    @Test
+    void whenSegmentsRollOver_thenReplayReadsThemInOrder() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, Durability.BATCH, 512, 10);
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        for (int i = 0; i < 50; i++) {
+            ToDo toDo = repository.save(new ToDo("Task " + i, "Low"));
+            if (i % 2 == 0) {
+                repository.deleteById(toDo.getId());
+            }
+        }
+        log.close();
+
+        assertThat(log.segments().size()).isGreaterThan(1);
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(new WriteAheadLog(directory, Durability.BATCH, 512, 10)));
+        assertThat(restarted.findAll()).hasSize(25);
+    }
+
+    @Test
+    void whenBatchApplied_thenItIsLoggedWithOneCommit_andReplayed() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, Durability.BATCH, 1 << 20, 10);
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        ToDo existing = repository.save(new ToDo("Create tests", "High"));
+        List<ToDoOperationResult> results = repository.applyBatch(List.of(
+                new ToDoOperation(ToDoOperation.Type.ADD, null, new ToDo("Start Front End", "Low")),
+                new ToDoOperation(ToDoOperation.Type.DONE, existing.getId(), null),
+                new ToDoOperation(ToDoOperation.Type.DELETE, "missing", null)), existing.getCreationDate().plusMinutes(5));
+        log.close();
+
+        assertEquals(ToDoOperationResult.Status.NOT_FOUND, results.get(2).getStatus());
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(new WriteAheadLog(directory, Durability.BATCH, 1 << 20, 10)));
+        assertThat(restarted.findAll()).hasSize(2);
+        assertTrue(restarted.getById(existing.getId()).isDoneUndoneFlag());
+        assertEquals(5, restarted.averageTimeToComplete(null));
+    }
+
+    @Test
+    void whenTailIsTorn_thenReplayStopsAtLastValidRecord_andTruncates() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, Durability.FSYNC, 1 << 20, 10);
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        repository.save(new ToDo("Create tests", "High"));
+        repository.save(new ToDo("Start Front End", "Low"));
+        log.close();
+
+        List<Path> segments = log.segments();
+        Path lastSegment = segments.get(segments.size() - 1);
+        long validSize = Files.size(lastSegment);
+        Files.write(lastSegment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        WriteAheadLog reopened = new WriteAheadLog(directory, Durability.FSYNC, 1 << 20, 10);
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(reopened));
+        reopened.close();
+
+        assertThat(restarted.findAll()).hasSize(2);
+        assertEquals(validSize, Files.size(lastSegment));
+    }
+
+    @Test
+    void whenAppendFails_thenNothingOfTheWriteIsLeftBehind() throws Exception {
+        FailingLog log = new FailingLog(directory);
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        ToDo stored = repository.save(new ToDo("Create tests", "High"));
+
+        log.failing = true;
+        assertThrows(UncheckedIOException.class, () -> repository.save(new ToDo("Start Front End", "Low")));
+        assertThrows(UncheckedIOException.class, () -> repository.update(stored.getId(), new ToDo("Create more tests", "Low")));
+        assertThrows(UncheckedIOException.class, () -> repository.markAsDone(stored.getId(), stored.getCreationDate().plusMinutes(5)));
+        assertThrows(UncheckedIOException.class, () -> repository.deleteById(stored.getId()));
+        assertThrows(UncheckedIOException.class, repository::deleteAll);
+        log.failing = false;
+
+        assertThat(repository.findAll()).extracting(ToDo::toString).containsExactly(stored.toString());
+        assertThat(repository.findByNameContaining("more")).isEmpty();
+        assertThat(repository.findByNameContaining("tests")).extracting(ToDo::getId).containsExactly(stored.getId());
+        assertEquals(0, repository.averageTimeToComplete(null));
+        repository.save(new ToDo("Start Front End", "Low"));
+        repository.update(stored.getId(), new ToDo("Create more tests", "Low"));
+        assertThat(repository.findAll()).hasSize(2);
+    }
+
+    enum ChannelFailure { PARTIAL_WRITE, FORCE }
+
+    @ParameterizedTest
+    @EnumSource(ChannelFailure.class)
+    void whenTheChannelFailsMidAppend_thenTheRejectedChangeIsNotReplayed_andLaterRecordsAre(ChannelFailure failure) throws Exception {
+        FailingChannelLog log = new FailingChannelLog(directory);
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(log));
+        ToDo before = repository.save(new ToDo("Create tests", "High"));
+
+        log.failure = failure;
+        assertThrows(UncheckedIOException.class, () -> repository.save(new ToDo("Start Front End", "Low")));
+        log.failure = null;
+        ToDo after = repository.save(new ToDo("Start Back End", "Medium"));
+        log.close();
+
+        MemoryImpl restarted = new MemoryImpl(MemorySettings.defaults().withWriteAheadLog(new WriteAheadLog(directory, Durability.FSYNC, 1 << 20, 10)));
+        assertThat(restarted.findAll()).extracting(ToDo::getId).containsExactlyInAnyOrder(before.getId(), after.getId());
+        assertThat(restarted.findByNameContaining("Front")).isEmpty();
+    }
+
+    // Hands out segment channels that fail the way the test asks
+    private static class FailingChannelLog extends WriteAheadLog {
+
+        private volatile ChannelFailure failure;
+
+        private FailingChannelLog(Path directory) throws IOException {
+            super(directory, Durability.FSYNC, 1 << 20, 10);
+        }
+
+        @Override
+        FileChannel openChannel(Path segment) throws IOException {
+            return new FailingChannel(super.openChannel(segment));
+        }
+
+        private class FailingChannel extends FileChannel {
+
+            private final FileChannel channel;
+
+            private FailingChannel(FileChannel channel) {
+                this.channel = channel;
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                if (failure == ChannelFailure.PARTIAL_WRITE) {
+                    if (source.remaining() > 1) {
+                        ByteBuffer half = source.slice(source.position(), source.remaining() / 2);
+                        int written = channel.write(half);
+                        source.position(source.position() + written);
+                        return written;
+                    }
+                    throw new IOException("No space left on device");
+                }
+                return channel.write(source);
+            }
+
+            @Override
+            public void force(boolean metaData) throws IOException {
+                if (failure == ChannelFailure.FORCE) {
+                    throw new IOException("Input/output error");
+                }
+                channel.force(metaData);
+            }
+
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                return channel.read(destination);
+            }
+
+            @Override
+            public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+                return channel.read(destinations, offset, length);
+            }
+
+            @Override
+            public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+                return channel.write(sources, offset, length);
+            }
+
+            @Override
+            public long position() throws IOException {
+                return channel.position();
+            }
+
+            @Override
+            public FileChannel position(long newPosition) throws IOException {
+                channel.position(newPosition);
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public FileChannel truncate(long size) throws IOException {
+                channel.truncate(size);
+                return this;
+            }
+
+            @Override
+            public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+                return channel.transferTo(position, count, target);
+            }
+
+            @Override
+            public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+                return channel.transferFrom(source, position, count);
+            }
+
+            @Override
+            public int read(ByteBuffer destination, long position) throws IOException {
+                return channel.read(destination, position);
+            }
+
+            @Override
+            public int write(ByteBuffer source, long position) throws IOException {
+                return channel.write(source, position);
+            }
+
+            @Override
+            public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+                return channel.map(mode, position, size);
+            }
+
+            @Override
+            public FileLock lock(long position, long size, boolean shared) throws IOException {
+                return channel.lock(position, size, shared);
+            }
+
+            @Override
+            public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+                return channel.tryLock(position, size, shared);
+            }
+
+            @Override
+            protected void implCloseChannel() throws IOException {
+                channel.close();
+            }
+        }
+    }
+
+    private static class FailingLog extends WriteAheadLog {
+
+        private volatile boolean failing;
+
+        private FailingLog(Path directory) throws IOException {
+            super(directory, Durability.BATCH, 1 << 20, 10);
+        }
+
+        @Override
+        public long append(LogRecord.Type type, ToDo toDo) {
+            failIfAsked();
+            return super.append(type, toDo);
+        }
+
+        @Override
+        public long append(LogRecord.Type type, String id) {
+            failIfAsked();
+            return super.append(type, id);
+        }
+
+        private void failIfAsked() {
+            if (failing) {
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            }
+        }
+    }
+}
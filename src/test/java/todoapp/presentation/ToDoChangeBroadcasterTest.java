@@ -0,0 +1,201 @@
+package todoapp.presentation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import todoapp.business.DueDateTracker;
+import todoapp.business.ToDoService;
+import todoapp.persistence.MemoryImpl;
+import todoapp.persistence.MemorySettings;
+import todoapp.persistence.model.ToDo;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class ToDoChangeBroadcasterTest {
+
+    private ToDoService toDoService;
+    // Sends run only when the test says so, to play a subscriber that isn't keeping up
+    private final Queue<Runnable> pendingSends = new ArrayDeque<>();
+    private ToDoChangeBroadcaster broadcaster;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void createBroadcaster() {
+        MemoryImpl repository = new MemoryImpl(MemorySettings.defaults());
+        toDoService = new ToDoService(repository, new DueDateTracker(repository, Clock.systemDefaultZone()));
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        broadcaster = new ToDoChangeBroadcaster(toDoService, objectMapper, 3, 60_000, 60_000, Runnable::run, pendingSends::add,
+                Executors.newSingleThreadScheduledExecutor());
+        mockMvc = MockMvcBuilders.standaloneSetup(new ToDoChangeController(toDoService, broadcaster)).build();
+    }
+
+    @AfterEach
+    void closeBroadcaster() {
+        broadcaster.close();
+    }
+
+    private MvcResult subscribe() throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.get("/toDo/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private void runPendingSends() {
+        Runnable send;
+        while ((send = pendingSends.poll()) != null) {
+            send.run();
+        }
+    }
+
+    private static List<String> eventNames(MvcResult result) throws Exception {
+        return Arrays.stream(result.getResponse().getContentAsString().split("\n"))
+                .filter(line -> line.startsWith("event:"))
+                .map(line -> line.substring("event:".length()))
+                .toList();
+    }
+
+    @Test
+    void whenToDosChange_thenSubscribersGetOneEventPerChange_inOrder() throws Exception {
+        MvcResult result = subscribe();
+
+        ToDo toDo = toDoService.addToDo(new ToDo("Create tests", "High"));
+        toDoService.markToDoAsDone(toDo.getId());
+        toDoService.deleteToDo(toDo.getId());
+        runPendingSends();
+
+        String body = result.getResponse().getContentAsString();
+        assertEquals(List.of("change", "change", "change"), eventNames(result));
+        assertTrue(body.indexOf("\"type\":\"CREATED\"") < body.indexOf("\"type\":\"DONE\""));
+        assertTrue(body.indexOf("\"type\":\"DONE\"") < body.indexOf("\"type\":\"DELETED\""));
+        assertTrue(body.contains("\"doneUndoneFlag\":true"));
+        assertTrue(body.contains("id:"));
+    }
+
+    @Test
+    void whenSubscriberFallsBehind_thenItsBufferIsDropped_andItIsToldToResync() throws Exception {
+        MvcResult result = subscribe();
+
+        for (int i = 0; i < 5; i++) {
+            toDoService.addToDo(new ToDo("Task " + i, "Low"));
+        }
+        runPendingSends();
+
+        // the fourth change overflowed the buffer of 3, the fifth one follows the resync
+        assertEquals(List.of("resync", "change"), eventNames(result));
+        assertTrue(result.getResponse().getContentAsString().contains("\"name\":\"Task 4\""));
+    }
+
+    @Test
+    void whenSubscriberStopsReading_thenItIsDropped_andTheOthersKeepGettingChanges() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        ToDoChangeBroadcaster broadcaster = new ToDoChangeBroadcaster(toDoService, objectMapper, 3, 60_000, 50,
+                Runnable::run, send -> new Thread(send).start(), Executors.newSingleThreadScheduledExecutor());
+        CountDownLatch stalledSendStarted = new CountDownLatch(1);
+        CountDownLatch clientReads = new CountDownLatch(1);
+        broadcaster.subscribe(new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                stalledSendStarted.countDown();
+                try {
+                    clientReads.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Semaphore received = new Semaphore(0);
+        broadcaster.subscribe(new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                received.release();
+            }
+        });
+
+        toDoService.addToDo(new ToDo("Create tests", "High"));
+        assertTrue(stalledSendStarted.await(10, TimeUnit.SECONDS));
+        assertTrue(received.tryAcquire(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        toDoService.addToDo(new ToDo("Start Front End", "Low"));
+
+        assertTrue(received.tryAcquire(10, TimeUnit.SECONDS));
+        assertEquals(1, broadcaster.subscriberCount());
+        clientReads.countDown();
+        broadcaster.close();
+    }
+
+    @Test
+    void whenSubscriberStopsReading_andNoChangeFollows_thenTheSweepDropsIt() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        ToDoChangeBroadcaster broadcaster = new ToDoChangeBroadcaster(toDoService, objectMapper, 3, 60_000, 50,
+                Runnable::run, Executors.newFixedThreadPool(1), Executors.newSingleThreadScheduledExecutor());
+        CountDownLatch clientReads = new CountDownLatch(1);
+        broadcaster.subscribe(new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                try {
+                    clientReads.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        toDoService.addToDo(new ToDo("Create tests", "High"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (broadcaster.subscriberCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, broadcaster.subscriberCount());
+        clientReads.countDown();
+        broadcaster.close();
+    }
+
+    @Test
+    void whenNobodySubscribed_thenChangesAreNotQueued() {
+        toDoService.addToDo(new ToDo("Create tests", "High"));
+
+        assertEquals(0, broadcaster.subscriberCount());
+        assertTrue(pendingSends.isEmpty());
+    }
+
+    @Test
+    void whenChangesAskedSinceASequence_thenTheDeltasAreReturnedAsJson() throws Exception {
+        long start = toDoService.getChangesSince(Long.MAX_VALUE).getSequence();
+        toDoService.addToDo(new ToDo("Create tests", "High"));
+        toDoService.addToDo(new ToDo("Start Front End", "Low"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/changes").param("since", Long.toString(start + 1)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.resync").value(false))
+                .andExpect(jsonPath("$.sequence").value(start + 2))
+                .andExpect(jsonPath("$.changes", hasSize(1)))
+                .andExpect(jsonPath("$.changes[0].type").value("CREATED"))
+                .andExpect(jsonPath("$.changes[0].toDo.name").value("Start Front End"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/changes").param("since", "0"))
+                .andExpect(jsonPath("$.resync").value(true))
+                .andExpect(jsonPath("$.changes", hasSize(0)));
+    }
+}
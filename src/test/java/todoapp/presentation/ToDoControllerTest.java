@@ -6,16 +6,21 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import todoapp.business.ToDoOperationResult;
+import todoapp.business.ToDoPage;
 import todoapp.business.ToDoService;
 import todoapp.persistence.model.ToDo;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.*;
@@ -41,7 +46,7 @@ class ToDoControllerTest {
     void whenGetAllToDos_withNoToDosAdded_thenHttp200_andReturnEmptyArray() throws Exception {
         ArrayList<ToDo> toDosList = new ArrayList<>();
 
-        Mockito.doReturn(toDosList).when(toDoService).findAllToDos();
+        Mockito.doReturn(toDosList.stream()).when(toDoService).streamAllToDos();
 
         mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getAll"))
                 .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
@@ -54,13 +59,76 @@ class ToDoControllerTest {
         ToDo toDoOne = toDoService.addToDo(new ToDo("Create tests", "High"));
         toDosList.add(toDoOne);
 
-        Mockito.doReturn(toDosList).when(toDoService).findAllToDos();
+        Mockito.doReturn(toDosList.stream()).when(toDoService).streamAllToDos();
 
         mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getAll"))
                 .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
                 .andExpect(jsonPath("$", hasSize(1)));
     }
 
+    @Test
+    void whenGetAllToDos_thenItemsAreStreamedAsJsonArray() throws Exception {
+        ToDo toDoOne = new ToDo("Create tests", "High").withId("idOne");
+        ToDo toDoTwo = new ToDo("Start Front End", "Low").withId("idTwo");
+
+        Mockito.doReturn(Stream.of(toDoOne, toDoTwo)).when(toDoService).streamAllToDos();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getAll"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value("idOne"))
+                .andExpect(jsonPath("$[1].name").value("Start Front End"));
+    }
+
+    @Test
+    void whenGetAllToDos_acceptingNdjson_thenOneToDoPerLine() throws Exception {
+        ToDo toDoOne = new ToDo("Create tests", "High").withId("idOne");
+        ToDo toDoTwo = new ToDo("Start Front End", "Low").withId("idTwo");
+
+        Mockito.doReturn(Stream.of(toDoOne, toDoTwo)).when(toDoService).streamAllToDos();
+
+        String body = mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getAll").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{") && lines[0].contains("\"id\":\"idOne\""));
+        assertTrue(lines[1].startsWith("{") && lines[1].contains("\"id\":\"idTwo\""));
+    }
+
+    @Test
+    void whenGetAllToDos_withMalformedAccept_thenJsonArray() throws Exception {
+        ToDo toDo = new ToDo("Create tests", "High").withId("idOne");
+
+        Mockito.doReturn(Stream.of(toDo)).when(toDoService).streamAllToDos();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getAll").header(HttpHeaders.ACCEPT, "application/x-ndjson;;q=x, /json"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value("idOne"));
+    }
+
+    @Test
+    void whenBatchPosted_thenHttp200_andOneResultPerOperation() throws Exception {
+        ToDo added = new ToDo("Custom Task", "High").withId("addedId");
+        Mockito.doReturn(List.of(ToDoOperationResult.applied(added), ToDoOperationResult.notFound("The to do with the idmissing was not found")))
+                .when(toDoService).applyBatch(Mockito.anyList());
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/toDo/batch")
+                        .content("[{\"type\": \"ADD\", \"toDo\": {\"name\": \"Custom Task\", \"priority\": \"High\"}},"
+                                + " {\"type\": \"DONE\", \"id\": \"missing\"}]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status").value("APPLIED"))
+                .andExpect(jsonPath("$[0].toDo.id").value("addedId"))
+                .andExpect(jsonPath("$[1].status").value("NOT_FOUND"));
+    }
+
     @Test
     void whenAddToDo_thenGetHttp200() throws Exception {
         this.mockMvc.perform(MockMvcRequestBuilders.post("/toDo/addToDo")
@@ -71,8 +139,7 @@ class ToDoControllerTest {
     // deleteToDo
     @Test
     void whenAddedToDo_thenDeleteToDo_Http200() throws Exception {
-        ToDo toDo = new ToDo("Custom", "High");
-        toDo.setId("customId");
+        ToDo toDo = new ToDo("Custom", "High").withId("customId");
 
         this.mockMvc.perform(MockMvcRequestBuilders
                 .delete("/toDo/delete/{id}", toDo.getId())
@@ -82,8 +149,7 @@ class ToDoControllerTest {
 
     @Test
     void whenMarkToDoAsDone_thenHttp200()throws Exception {
-        ToDo toDo = new ToDo("Custom", "High");
-        toDo.setId("customId");
+        ToDo toDo = new ToDo("Custom", "High").withId("customId");
         this.mockMvc.perform(MockMvcRequestBuilders
                         .put("/toDo/{id}/done", toDo.getId())
                         .contentType(MediaType.APPLICATION_JSON))
@@ -92,8 +158,7 @@ class ToDoControllerTest {
 
     @Test
     void whenMarkToDoAsUndone_thenHttp200()throws Exception {
-        ToDo toDo = new ToDo("Custom", "High");
-        toDo.setId("customId");
+        ToDo toDo = new ToDo("Custom", "High").withId("customId");
         this.mockMvc.perform(MockMvcRequestBuilders
                         .put("/toDo/{id}/undone", toDo.getId())
                         .contentType(MediaType.APPLICATION_JSON))
@@ -106,10 +171,63 @@ class ToDoControllerTest {
                 .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()));
     }
 
+    @Test
+    void whenGetOverdueToDos_thenHttp200_andReturnThem() throws  Exception {
+        Mockito.doReturn(List.of(new ToDo("Create tests", "High"))).when(toDoService).getOverdueToDos();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/overdue"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
     @Test
     void whenGetToDosFilteredAndSorted_thenHttp200() throws  Exception {
+        Mockito.doReturn(new ToDoPage(new ArrayList<>(), 0)).when(toDoService)
+                .getToDoPage("", "default", true, "default", "desc", 1);
+
         mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getToDosFilteredAndSorted?name=&priority=default&doneUnDoneFlag=true&priorityOrder=default&dateOrder=desc&pageNumber=1"))
                 .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()));
     }
-}
 
+    @Test
+    void whenGetToDosFilteredAndSorted_thenTotalCountHeaderReturned() throws  Exception {
+        ArrayList<ToDo> toDosList = new ArrayList<>();
+        toDosList.add(new ToDo("Create tests", "High"));
+        Mockito.doReturn(new ToDoPage(toDosList, 11)).when(toDoService)
+                .getToDoPage("", "High", null, "default", "default", 2);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getToDosFilteredAndSorted?name=&priority=High&priorityOrder=default&dateOrder=default&pageNumber=2"))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.header().string(ToDoController.TOTAL_COUNT_HEADER, "11"))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void whenTagStillCurrent_thenHttp304_withoutReadingTheData() throws Exception {
+        Mockito.doReturn("v-7").when(toDoService).getVersionTag();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getStats").header(HttpHeaders.IF_NONE_MATCH, "\"v-7\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"v-7\""));
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getAll").header(HttpHeaders.IF_NONE_MATCH, "\"v-7\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getToDosFilteredAndSorted?name=&priority=High&priorityOrder=default&dateOrder=default&pageNumber=1")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"v-7\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        Mockito.verify(toDoService, Mockito.never()).getStatistics();
+        Mockito.verify(toDoService, Mockito.never()).streamAllToDos();
+        Mockito.verify(toDoService, Mockito.never()).getToDoPage(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    void whenTagChanged_thenHttp200_withTheNewTag() throws Exception {
+        Mockito.doReturn("v-8").when(toDoService).getVersionTag();
+        Mockito.doReturn(List.of(1L, 2L, 3L, 4L)).when(toDoService).getStatistics();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/toDo/getStats").header(HttpHeaders.IF_NONE_MATCH, "\"v-7\""))
+                .andExpect(MockMvcResultMatchers.status().is(HttpStatus.OK.value()))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"v-8\""))
+                .andExpect(jsonPath("$", hasSize(4)));
+    }
+}